@@ -19,6 +19,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -34,6 +35,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Abstract base class for REST controllers. Provides some utility classes for a uniform handling of REST requests. Also,
@@ -56,6 +58,11 @@ public abstract class AbstractRestController {
 	 */
 	public static final String FORM_TYPE = "application/x-www-form-urlencoded";
 
+	/**
+	 * Constant for newline-delimited JSON content type.
+	 */
+	public static final String NDJSON_TYPE = "application/x-ndjson";
+
 	private Log log;
 
 	@Autowired
@@ -193,6 +200,27 @@ public abstract class AbstractRestController {
 		}
 	}
 
+	/**
+	 * Wraps the given list in a result object and builds a Response object. The response will contain a JSON object which
+	 * contains a field with name <code>result</code> and the JSON representation of the list, in the format the list builder
+	 * has been created for, as value.
+	 *
+	 * @param result
+	 *            List to wrap in a result object.
+	 *
+	 * @return A ResponseEntity object with status <code>OK</code> and the wrapping object as content.
+	 */
+	protected static final ResponseEntity<String> wrapResultList(JSONListBuilder result) {
+		JSONObject obj = new JSONObject();
+		try {
+			obj.put("result", result.toJSON());
+			return ResponseEntity.ok(obj.toString());
+		}
+		catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Creates a Response carrying a standard JSON error object describing the given Throwable. The response will carry the status
 	 * code <code>SC_BAD_REQUEST</code> (400).
@@ -265,6 +293,21 @@ public abstract class AbstractRestController {
 		}
 	}
 
+	/**
+	 * Converts the given response into a streaming response, e.g. to return an error object from an endpoint which otherwise
+	 * streams its response.
+	 *
+	 * @param response
+	 *            Response to convert.
+	 *
+	 * @return A streaming response with the same status, headers and body as the given response.
+	 */
+	protected static final ResponseEntity<StreamingResponseBody> toStreamingResponse(ResponseEntity<String> response) {
+		String body = response.getBody();
+		return ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders())
+				.body(body == null ? null : out -> out.write(body.getBytes(StandardCharsets.UTF_8)));
+	}
+
 	protected static final JSONObject createLinkObject(HttpServletRequest request, String rel, String hrefPath) {
 		JSONObject obj = new JSONObject();
 		obj.put("rel", rel);
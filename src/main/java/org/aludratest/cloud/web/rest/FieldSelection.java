@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Selection of fields which a client requested via the <code>fields</code> request parameter. Endpoints query this selection
+ * <b>before</b> computing a field value, so expensive parts of a response are not computed at all when they are not requested.
+ * <br>
+ * The parameter value is a comma-separated list of field names. Fields of nested objects can be selected using dotted paths,
+ * e.g. <code>fields=name,request.jobName</code>. Selecting a field selects all of its nested fields. If the parameter is absent
+ * or empty, all fields are selected.
+ *
+ * @author falbrech
+ *
+ */
+public final class FieldSelection {
+
+	/**
+	 * Name of the request parameter containing the field selection.
+	 */
+	public static final String FIELDS_PARAM = "fields";
+
+	private static final FieldSelection ALL = new FieldSelection(null);
+
+	private final Set<String> paths;
+
+	private FieldSelection(Set<String> paths) {
+		this.paths = paths;
+	}
+
+	/**
+	 * Returns a selection which includes all fields.
+	 *
+	 * @return A selection which includes all fields.
+	 */
+	public static FieldSelection all() {
+		return ALL;
+	}
+
+	/**
+	 * Parses the given value of the <code>fields</code> request parameter.
+	 *
+	 * @param fields
+	 *            Comma-separated list of field paths, may be <code>null</code>.
+	 * @return The field selection described by the parameter value, or a selection including all fields if the value is
+	 *         <code>null</code> or empty.
+	 */
+	public static FieldSelection parse(String fields) {
+		if (StringUtils.isEmpty(fields)) {
+			return ALL;
+		}
+
+		Set<String> paths = new HashSet<>();
+		for (String path : StringUtils.commaDelimitedListToStringArray(fields)) {
+			path = path.trim();
+			if (!path.isEmpty()) {
+				paths.add(path);
+			}
+		}
+
+		return paths.isEmpty() ? ALL : new FieldSelection(Collections.unmodifiableSet(paths));
+	}
+
+	/**
+	 * Checks if all fields are selected.
+	 *
+	 * @return <code>true</code> if all fields are selected, <code>false</code> otherwise.
+	 */
+	public boolean isAll() {
+		return paths == null;
+	}
+
+	/**
+	 * Checks if the given field, or at least one of its nested fields, is selected.
+	 *
+	 * @param field
+	 *            Name of the field to check.
+	 * @return <code>true</code> if the field has to be computed, <code>false</code> otherwise.
+	 */
+	public boolean includes(String field) {
+		if (paths == null || paths.contains(field)) {
+			return true;
+		}
+
+		String prefix = field + ".";
+		return paths.stream().anyMatch(p -> p.startsWith(prefix));
+	}
+
+	/**
+	 * Returns the selection for the fields of the nested object stored in the given field.
+	 *
+	 * @param field
+	 *            Name of the field containing the nested object.
+	 * @return The selection for the fields of the nested object. If the field itself is selected, all nested fields are
+	 *         selected.
+	 */
+	public FieldSelection nested(String field) {
+		if (paths == null || paths.contains(field)) {
+			return ALL;
+		}
+
+		String prefix = field + ".";
+		Set<String> nestedPaths = new HashSet<>();
+		for (String path : paths) {
+			if (path.startsWith(prefix) && path.length() > prefix.length()) {
+				nestedPaths.add(path.substring(prefix.length()));
+			}
+		}
+
+		return new FieldSelection(Collections.unmodifiableSet(nestedPaths));
+	}
+
+	/**
+	 * Checks if any fields other than the given ones are selected. Useful to determine if a generic source of fields (which
+	 * can produce arbitrary fields) has to be queried at all.
+	 *
+	 * @param knownFields
+	 *            Fields which are computed separately by the caller.
+	 * @return <code>true</code> if all fields are selected, or at least one selected field is not contained in the given
+	 *         fields, <code>false</code> otherwise.
+	 */
+	public boolean includesOtherThan(String... knownFields) {
+		if (paths == null) {
+			return true;
+		}
+
+		Set<String> known = new HashSet<>();
+		Collections.addAll(known, knownFields);
+		return paths.stream().map(p -> p.contains(".") ? p.substring(0, p.indexOf('.')) : p)
+				.anyMatch(p -> !known.contains(p));
+	}
+
+}
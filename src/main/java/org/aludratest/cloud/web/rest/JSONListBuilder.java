@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Builder for JSON lists returned by REST endpoints. Depending on the requested list format, rows are either rendered as an array
+ * of JSON objects (the default), or in a compact <i>columnar</i> form:
+ *
+ * <pre>
+ * { "columns": [ "name", "source" ], "rows": [ [ "user1", "local" ], [ "user2", "ldap" ] ] }
+ * </pre>
+ *
+ * In columnar mode, no JSON object is created per row, and every field name is serialized only once. Fields which are not set
+ * for a row are rendered as <code>null</code>.
+ *
+ * @author falbrech
+ *
+ */
+public abstract class JSONListBuilder {
+
+	/**
+	 * Name of the request parameter selecting the list format.
+	 */
+	public static final String FORMAT_PARAM = "format";
+
+	/**
+	 * Value of the <code>format</code> parameter for the default list format (array of objects).
+	 */
+	public static final String FORMAT_OBJECTS = "objects";
+
+	/**
+	 * Value of the <code>format</code> parameter for the columnar list format.
+	 */
+	public static final String FORMAT_COLUMNAR = "columnar";
+
+	private JSONListBuilder() {
+	}
+
+	/**
+	 * Creates a new list builder for the given list format.
+	 *
+	 * @param format
+	 *            Requested list format, usually the value of the <code>format</code> request parameter. <code>null</code> or
+	 *            an empty string select the default format.
+	 * @return A new list builder for the given format.
+	 * @throws IllegalArgumentException
+	 *             If the given format is unknown.
+	 */
+	public static JSONListBuilder forFormat(String format) throws IllegalArgumentException {
+		return isColumnar(format) ? new ColumnarListBuilder() : new ObjectListBuilder();
+	}
+
+	/**
+	 * Checks if the given list format is the columnar format.
+	 *
+	 * @param format
+	 *            Requested list format, usually the value of the <code>format</code> request parameter. <code>null</code> or
+	 *            an empty string select the default format.
+	 * @return <code>true</code> if the format is the columnar format, <code>false</code> if it is the default format.
+	 * @throws IllegalArgumentException
+	 *             If the given format is unknown.
+	 */
+	public static boolean isColumnar(String format) throws IllegalArgumentException {
+		if (format == null || format.isEmpty() || FORMAT_OBJECTS.equals(format)) {
+			return false;
+		}
+		if (FORMAT_COLUMNAR.equals(format)) {
+			return true;
+		}
+		throw new IllegalArgumentException("Unsupported list format: " + format);
+	}
+
+	/**
+	 * Returns a row which writes its fields directly into the given JSON object. Useful to share row building code between
+	 * list and single object responses.
+	 *
+	 * @param target
+	 *            JSON object to write the fields to.
+	 * @return A row writing to the given JSON object.
+	 */
+	public static Row objectRow(JSONObject target) {
+		return new Row() {
+			@Override
+			public Row put(String key, Object value) {
+				if (value != null) {
+					target.put(key, value);
+				}
+				return this;
+			}
+		};
+	}
+
+	/**
+	 * Adds a new, empty row to the list.
+	 *
+	 * @return The new row, to be filled by the caller.
+	 */
+	public abstract Row addRow();
+
+	/**
+	 * Returns the number of rows added to this list so far.
+	 *
+	 * @return The number of rows added to this list so far.
+	 */
+	public abstract int size();
+
+	/**
+	 * Builds the JSON representation of this list.
+	 *
+	 * @return A <code>JSONArray</code> for the default format, or a <code>JSONObject</code> for the columnar format.
+	 */
+	public abstract Object toJSON();
+
+	/**
+	 * A single row of a list. Field values follow the same rules as values passed to {@link JSONObject#put(String, Object)};
+	 * <code>null</code> values are ignored.
+	 */
+	public interface Row {
+
+		/**
+		 * Sets a field of this row.
+		 *
+		 * @param key
+		 *            Name of the field.
+		 * @param value
+		 *            Value of the field, may be <code>null</code>.
+		 * @return This row, for chaining.
+		 */
+		Row put(String key, Object value);
+
+	}
+
+	private static final class ObjectListBuilder extends JSONListBuilder {
+
+		private JSONArray array = new JSONArray();
+
+		@Override
+		public Row addRow() {
+			JSONObject obj = new JSONObject();
+			array.put(obj);
+			return objectRow(obj);
+		}
+
+		@Override
+		public int size() {
+			return array.length();
+		}
+
+		@Override
+		public Object toJSON() {
+			return array;
+		}
+	}
+
+	private static final class ColumnarListBuilder extends JSONListBuilder {
+
+		private List<String> columns = new ArrayList<>();
+
+		private Map<String, Integer> columnIndex = new HashMap<>();
+
+		private List<List<Object>> rows = new ArrayList<>();
+
+		@Override
+		public Row addRow() {
+			List<Object> values = new ArrayList<>(columns.size());
+			rows.add(values);
+			return new Row() {
+				@Override
+				public Row put(String key, Object value) {
+					if (value == null) {
+						return this;
+					}
+					Integer index = columnIndex.get(key);
+					if (index == null) {
+						index = Integer.valueOf(columns.size());
+						columns.add(key);
+						columnIndex.put(key, index);
+					}
+					while (values.size() <= index.intValue()) {
+						values.add(JSONObject.NULL);
+					}
+					values.set(index.intValue(), JSONObject.wrap(value));
+					return this;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return rows.size();
+		}
+
+		@Override
+		public Object toJSON() {
+			JSONArray rowsArray = new JSONArray();
+			for (List<Object> values : rows) {
+				JSONArray row = new JSONArray();
+				for (int i = 0; i < columns.size(); i++) {
+					row.put(i < values.size() ? values.get(i) : JSONObject.NULL);
+				}
+				rowsArray.put(row);
+			}
+
+			JSONObject result = new JSONObject();
+			result.put("columns", new JSONArray(columns));
+			result.put("rows", rowsArray);
+			return result;
+		}
+	}
+
+}
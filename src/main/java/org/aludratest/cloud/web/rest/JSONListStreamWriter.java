@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONWriter;
+
+/**
+ * Writes a JSON list incrementally to a {@link JSONWriter}, in one of the formats supported by {@link JSONListBuilder}. Use
+ * this instead of {@link JSONListBuilder} for potentially large lists which shall not be buffered in memory completely. <br>
+ * As the rows are written immediately, the columns for the columnar format must be known in advance. Row fields which are not
+ * contained in the columns are not written in columnar format.
+ *
+ * @author falbrech
+ *
+ */
+public final class JSONListStreamWriter {
+
+	private JSONWriter writer;
+
+	private List<String> columns;
+
+	private int rowCount;
+
+	/**
+	 * Starts writing a list at the current position of the given writer.
+	 *
+	 * @param writer
+	 *            JSON writer to write the list to.
+	 * @param columnar
+	 *            <code>true</code> to write the columnar format, <code>false</code> to write an array of objects.
+	 * @param columns
+	 *            Columns of the list, used for the columnar format only.
+	 */
+	public JSONListStreamWriter(JSONWriter writer, boolean columnar, List<String> columns) {
+		this.writer = writer;
+		if (columnar) {
+			this.columns = columns;
+			writer.object().key("columns").value(new JSONArray(columns)).key("rows");
+		}
+		writer.array();
+	}
+
+	/**
+	 * Writes a single row of the list.
+	 *
+	 * @param row
+	 *            JSON object containing the fields of the row.
+	 */
+	public void writeRow(JSONObject row) {
+		if (columns == null) {
+			writer.value(row);
+		}
+		else {
+			JSONArray values = new JSONArray();
+			for (String column : columns) {
+				values.put(row.has(column) ? row.get(column) : JSONObject.NULL);
+			}
+			writer.value(values);
+		}
+		rowCount++;
+	}
+
+	/**
+	 * Returns the number of rows written so far.
+	 *
+	 * @return The number of rows written so far.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Finishes the list. The writer is positioned after the list afterwards.
+	 */
+	public void end() {
+		writer.endArray();
+		if (columns != null) {
+			writer.endObject();
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configures Spring MVC to process asynchronous results, especially <code>StreamingResponseBody</code> results, using the
+ * {@link BlockingCallExecutor}. Without this configuration, Spring MVC would start a new, unbounded thread per streamed
+ * response.
+ *
+ * @author falbrech
+ *
+ */
+@Configuration
+public class AsyncSupportConfiguration implements WebMvcConfigurer {
+
+	private BlockingCallExecutor blockingCalls;
+
+	@Autowired
+	public AsyncSupportConfiguration(BlockingCallExecutor blockingCalls) {
+		this.blockingCalls = blockingCalls;
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(blockingCalls.getTaskExecutor());
+	}
+
+}
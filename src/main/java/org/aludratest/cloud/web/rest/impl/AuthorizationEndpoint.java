@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.aludratest.cloud.module.ResourceModule;
+import org.aludratest.cloud.module.ResourceModuleRegistry;
+import org.aludratest.cloud.resource.ResourceType;
+import org.aludratest.cloud.resource.user.ResourceTypeAuthorization;
+import org.aludratest.cloud.resource.user.SimpleResourceTypeAuthorization;
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.user.admin.UserDatabaseRegistry;
+import org.aludratest.cloud.web.rest.AbstractRestController;
+import org.aludratest.cloud.web.rest.JSONListBuilder;
+import org.aludratest.cloud.web.rest.JSONListStreamWriter;
+import org.json.JSONObject;
+import org.json.JSONWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * REST endpoint for querying and managing the resource type authorizations of multiple users at once.
+ *
+ * @author falbrech
+ *
+ */
+@RestController
+public class AuthorizationEndpoint extends AbstractRestController {
+
+	private static final List<String> MATRIX_COLUMNS = Arrays.asList("user", "resourceType", "maxResources", "niceLevel");
+
+	private UserDatabaseRegistry userDatabaseRegistry;
+
+	private ResourceModuleRegistry resourceModuleRegistry;
+
+	private ResourceAuthorizationIndex authorizationIndex;
+
+	private UserLookupCache userCache;
+
+	private BlockingCallExecutor blockingCalls;
+
+	@Autowired
+	public AuthorizationEndpoint(UserDatabaseRegistry userDatabaseRegistry, ResourceModuleRegistry resourceModuleRegistry,
+			ResourceAuthorizationIndex authorizationIndex, UserLookupCache userCache,
+			BlockingCallExecutor blockingCalls) {
+		this.userDatabaseRegistry = userDatabaseRegistry;
+		this.resourceModuleRegistry = resourceModuleRegistry;
+		this.authorizationIndex = authorizationIndex;
+		this.userCache = userCache;
+		this.blockingCalls = blockingCalls;
+	}
+
+	/**
+	 * Returns the resource type authorizations of all users, as a list with one row per user and resource type. Each row
+	 * contains the fields <code>user</code>, <code>resourceType</code>, <code>maxResources</code> and <code>niceLevel</code>.
+	 * The list is sorted by user name, and is written incrementally to the response.
+	 *
+	 * @param format
+	 *            Optional list format, e.g. <code>columnar</code> for a compact representation. See {@link JSONListBuilder}.
+	 * @param types
+	 *            Optional resource type names to restrict the result to.
+	 * @param prefix
+	 *            Optional prefix the user names must start with.
+	 * @return A JSON object containing the list of authorizations, or HTTP status 400 if an unknown resource type has been
+	 *         specified.
+	 */
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/authorizations", method = RequestMethod.GET, produces = JSON_TYPE)
+	public CompletableFuture<ResponseEntity<StreamingResponseBody>> getResourceAuthorizations(
+			@RequestParam(name = JSONListBuilder.FORMAT_PARAM, required = false) String format,
+			@RequestParam(name = "type", required = false) List<String> types,
+			@RequestParam(name = "prefix", required = false) String prefix) {
+		return blockingCalls.execute(() -> doGetResourceAuthorizations(format, types, prefix));
+	}
+
+	private ResponseEntity<StreamingResponseBody> doGetResourceAuthorizations(String format, List<String> types,
+			String prefix) {
+		boolean columnar;
+		try {
+			columnar = JSONListBuilder.isColumnar(format);
+			if (types != null) {
+				List<String> unknownTypes = types.stream().filter(t -> findResourceType(t) == null)
+						.collect(Collectors.toList());
+				if (!unknownTypes.isEmpty()) {
+					throw new IllegalArgumentException("Unknown resource types: " + String.join(", ", unknownTypes));
+				}
+			}
+		}
+		catch (IllegalArgumentException e) {
+			return toStreamingResponse(createErrorObject(e));
+		}
+
+		Map<String, Map<String, ResourceTypeAuthorization>> allAuthorizations;
+		try {
+			allAuthorizations = authorizationIndex.getAllAuthorizations();
+		}
+		catch (StoreException e) {
+			getLog().error("Could not load resource authorization database", e);
+			return toStreamingResponse(createErrorObject(
+					new RuntimeException("Could not load resource authorization database"),
+					HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+		}
+
+		String[] userNames = allAuthorizations.keySet().stream()
+				.filter(u -> prefix == null || u.startsWith(prefix)).sorted().toArray(String[]::new);
+
+		StreamingResponseBody body = out -> {
+			Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			JSONWriter writer = new JSONWriter(w);
+			writer.object().key("result").object();
+			writer.key("authorizations");
+			JSONListStreamWriter list = new JSONListStreamWriter(writer, columnar, MATRIX_COLUMNS);
+
+			for (String userName : userNames) {
+				for (Map.Entry<String, ResourceTypeAuthorization> auth : allAuthorizations.get(userName).entrySet()) {
+					if (types == null || types.contains(auth.getKey())) {
+						JSONObject row = new JSONObject();
+						row.put("user", userName);
+						row.put("resourceType", auth.getKey());
+						row.put("maxResources", auth.getValue().getMaxResources());
+						row.put("niceLevel", auth.getValue().getNiceLevel());
+						list.writeRow(row);
+					}
+				}
+			}
+			list.end();
+
+			writer.endObject().endObject();
+			w.flush();
+		};
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+	}
+
+	/**
+	 * Sets the resource type authorizations of multiple users. The request body is a JSON object mapping user names to objects
+	 * which map resource type names to authorizations, e.g.
+	 *
+	 * <pre>
+	 * { "ci-user1": { "selenium": { "maxResources": 2, "niceLevel": 0 } }, "ci-user2": { ... } }
+	 * </pre>
+	 *
+	 * All users and resource types are validated before any change is applied. The changes are grouped by resource type, so
+	 * the authorization configuration of each affected resource type is loaded and saved exactly once.
+	 *
+	 * @param authorizations
+	 *            Authorizations to set, per user and resource type.
+	 * @return A JSON object containing the number of updated users per resource type, or HTTP status 400 and a JSON error
+	 *         object listing all unknown users or resource types.
+	 */
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/authorizations/batch", method = RequestMethod.POST, consumes = JSON_TYPE, produces = JSON_TYPE)
+	public CompletableFuture<ResponseEntity<String>> setResourceAuthorizations(
+			@RequestBody Map<String, Map<String, ResourceTypeAuthorizationDto>> authorizations) {
+		return blockingCalls.execute(() -> doSetResourceAuthorizations(authorizations));
+	}
+
+	private ResponseEntity<String> doSetResourceAuthorizations(
+			Map<String, Map<String, ResourceTypeAuthorizationDto>> authorizations) {
+		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
+		if (users == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		// validate everything first, and report all problems at once
+		List<String> unknownTypes = new ArrayList<>();
+		List<String> unknownUsers = new ArrayList<>();
+		Map<String, ResourceType> resourceTypes = new LinkedHashMap<>();
+		Map<ResourceType, Map<User, ResourceTypeAuthorization>> changesByType = new LinkedHashMap<>();
+
+		try {
+			for (Map.Entry<String, Map<String, ResourceTypeAuthorizationDto>> userAuths : authorizations.entrySet()) {
+				User user = userCache.findUser(users, userAuths.getKey());
+				if (user == null) {
+					unknownUsers.add(userAuths.getKey());
+				}
+				if (userAuths.getValue() == null) {
+					continue;
+				}
+
+				for (Map.Entry<String, ResourceTypeAuthorizationDto> typeAuth : userAuths.getValue().entrySet()) {
+					ResourceType resourceType = resourceTypes.computeIfAbsent(typeAuth.getKey(), this::findResourceType);
+					if (resourceType == null) {
+						if (!unknownTypes.contains(typeAuth.getKey())) {
+							unknownTypes.add(typeAuth.getKey());
+						}
+					}
+					else if (user != null && typeAuth.getValue() != null) {
+						changesByType.computeIfAbsent(resourceType, rt -> new LinkedHashMap<>()).put(user,
+								new SimpleResourceTypeAuthorization(typeAuth.getValue().getMaxResources(),
+										typeAuth.getValue().getNiceLevel()));
+					}
+				}
+			}
+		}
+		catch (StoreException e) {
+			getLog().error("Could not query user database", e);
+			return createErrorObject(new RuntimeException("Could not query user database"),
+					HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+
+		if (!unknownUsers.isEmpty() || !unknownTypes.isEmpty()) {
+			StringBuilder message = new StringBuilder();
+			if (!unknownUsers.isEmpty()) {
+				message.append("Unknown users: ").append(String.join(", ", unknownUsers));
+			}
+			if (!unknownTypes.isEmpty()) {
+				message.append(message.length() > 0 ? "; " : "").append("Unknown resource types: ")
+						.append(String.join(", ", unknownTypes));
+			}
+			return createErrorObject(new IllegalArgumentException(message.toString()));
+		}
+
+		JSONObject updated = new JSONObject();
+		for (Map.Entry<ResourceType, Map<User, ResourceTypeAuthorization>> typeChanges : changesByType.entrySet()) {
+			try {
+				authorizationIndex.update(typeChanges.getKey(), config -> typeChanges.getValue()
+						.forEach((user, auth) -> UserEndpoint.setAuthorization(config, user, auth)));
+			}
+			catch (StoreException e) {
+				getLog().error("Could not load or save resource authorization database", e);
+				// previous resource types have already been saved; report these to the client
+				JSONObject error = new JSONObject();
+				error.put("updatedTypes", updated);
+				error.put("failedType", typeChanges.getKey().getName());
+				error.put("message", "Could not update resource authorization database");
+				return wrapResultObject(error, HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+			updated.put(typeChanges.getKey().getName(), typeChanges.getValue().size());
+		}
+
+		JSONObject result = new JSONObject();
+		result.put("updatedTypes", updated);
+		return wrapResultObject(result);
+	}
+
+	private ResourceType findResourceType(String name) {
+		ResourceModule module = resourceModuleRegistry.getResourceModule(name);
+		return module == null ? null : module.getResourceType();
+	}
+
+}
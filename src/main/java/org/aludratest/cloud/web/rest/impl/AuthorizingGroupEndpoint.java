@@ -15,9 +15,16 @@
  */
 package org.aludratest.cloud.web.rest.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.websocket.server.PathParam;
@@ -30,19 +37,24 @@ import org.aludratest.cloud.resourcegroup.ResourceGroup;
 import org.aludratest.cloud.resourcegroup.ResourceGroupManager;
 import org.aludratest.cloud.user.StoreException;
 import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
 import org.aludratest.cloud.user.admin.UserDatabaseRegistry;
 import org.aludratest.cloud.web.rest.AbstractRestController;
+import org.aludratest.cloud.web.rest.JSONListBuilder;
+import org.aludratest.cloud.web.rest.impl.GroupUsersCache.CachedList;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -57,16 +69,37 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 
 	private static final String LIMIT_USERS_KEY = "limitUsers";
 
+	private static final String ACTION_ADD = "add";
+
+	private static final String ACTION_REMOVE = "remove";
+
 	private static final String LIMIT_USERS_DESCRIPTION = "Determines if the access to this group is limited to the users being configured to have access.";
 
 	private ResourceGroupManager groupManager;
 
 	private UserDatabaseRegistry userDatabaseRegistry;
 
+	private BlockingCallExecutor blockingCalls;
+
+	private UserLookupCache userCache;
+
+	private UserResolver userResolver;
+
+	private GroupMembershipIndex membershipIndex;
+
+	private GroupUsersCache usersCache;
+
 	@Autowired
-	public AuthorizingGroupEndpoint(ResourceGroupManager groupManager, UserDatabaseRegistry userDatabaseRegistry) {
+	public AuthorizingGroupEndpoint(ResourceGroupManager groupManager, UserDatabaseRegistry userDatabaseRegistry,
+			BlockingCallExecutor blockingCalls, UserLookupCache userCache, UserResolver userResolver,
+			GroupMembershipIndex membershipIndex, GroupUsersCache usersCache) {
 		this.groupManager = groupManager;
 		this.userDatabaseRegistry = userDatabaseRegistry;
+		this.blockingCalls = blockingCalls;
+		this.userCache = userCache;
+		this.userResolver = userResolver;
+		this.membershipIndex = membershipIndex;
+		this.usersCache = usersCache;
 	}
 
 	@Override
@@ -89,10 +122,17 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 	/**
 	 * Lists all users which are allowed to access the resources of a given resource group. If the given resource group is not
 	 * found or no resource group which is capable of setting the "limit users" flag, HTTP status 404 is returned. If the
-	 * "limit users" flag is not active for the resource group, an empty array is contained in the result object.
+	 * "limit users" flag is not active for the resource group, an empty array is contained in the result object. <br>
+	 * The serialized list is cached until the users of the group are modified, and is returned with an <code>ETag</code>
+	 * header derived from the list content. Clients can pass this value in an <code>If-None-Match</code> header to receive
+	 * HTTP status 304 if the list has not changed.
 	 *
 	 * @param groupId
 	 *            Registration ID of the resource group in the application's resource group manager.
+	 * @param format
+	 *            Optional list format, e.g. <code>columnar</code> for a compact representation. See {@link JSONListBuilder}.
+	 * @param ifNoneMatch
+	 *            Optional value of the <code>If-None-Match</code> request header.
 	 *
 	 * @return JSON response listing all users having access to the resources of the resource group, an empty list when the
 	 *         "limit users" flag is not active, or HTTP status 404 if no group with the given registration was found, or the
@@ -100,11 +140,72 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups/{groupId}/users", method = RequestMethod.GET, produces = JSON_TYPE)
-	public ResponseEntity<String> getUsers(@PathVariable(name = "groupId", required = true) int groupId) {
-		return getUsers(groupId, HttpStatus.OK);
+	public CompletableFuture<ResponseEntity<String>> getUsers(
+			@PathVariable(name = "groupId", required = true) int groupId,
+			@RequestParam(name = JSONListBuilder.FORMAT_PARAM, required = false) String format,
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		return blockingCalls.execute(() -> doGetUsers(groupId, format, ifNoneMatch));
+	}
+
+	private ResponseEntity<String> doGetUsers(int groupId, String format, String ifNoneMatch) {
+		boolean columnar;
+		try {
+			columnar = JSONListBuilder.isColumnar(format);
+		}
+		catch (IllegalArgumentException e) {
+			return createErrorObject(e);
+		}
+		return getUsers(groupId, columnar, HttpStatus.OK, ifNoneMatch);
 	}
 
 	private ResponseEntity<String> getUsers(int groupId, HttpStatus returnStatus) {
+		return getUsers(groupId, false, returnStatus, null);
+	}
+
+	/**
+	 * Returns the serialized list of authorized users of the group, from the cache if possible. If the given
+	 * <code>If-None-Match</code> header matches the <code>ETag</code> of the list, HTTP status 304 is returned instead.
+	 */
+	private ResponseEntity<String> getUsers(int groupId, boolean columnar, HttpStatus returnStatus, String ifNoneMatch) {
+		String format = columnar ? JSONListBuilder.FORMAT_COLUMNAR : JSONListBuilder.FORMAT_OBJECTS;
+		long version = usersCache.getVersion(groupId);
+
+		CachedList list = usersCache.get(groupId, version, format);
+		if (list != null && groupManager.getResourceGroup(groupId) == null) {
+			return ResponseEntity.notFound().build();
+		}
+		if (list == null) {
+			ResponseEntity<String> response = getUsers(groupId,
+					JSONListBuilder.forFormat(columnar ? JSONListBuilder.FORMAT_COLUMNAR : null), HttpStatus.OK);
+			if (response.getStatusCode() != HttpStatus.OK) {
+				return response;
+			}
+			list = usersCache.put(groupId, version, format, response.getBody());
+		}
+
+		if (returnStatus == HttpStatus.OK && matchesETag(ifNoneMatch, list.getETag())) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(list.getETag()).build();
+		}
+		return ResponseEntity.status(returnStatus).eTag(list.getETag()).body(list.getBody());
+	}
+
+	private static boolean matchesETag(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(eTag) || tag.equals("*")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private ResponseEntity<String> getUsers(int groupId, JSONListBuilder list, HttpStatus returnStatus) {
 		ResourceGroup group = groupManager.getResourceGroup(groupId);
 		if (group == null || !(group instanceof Configurable) || !(group instanceof AuthorizingResourceGroup)) {
 			return ResponseEntity.notFound().build();
@@ -131,16 +232,12 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 		}
 
 		JSONObject result = new JSONObject();
-		JSONArray array = new JSONArray();
 
 		for (User user : users) {
-			JSONObject o = new JSONObject();
-			o.put("source", user.getSource());
-			o.put("name", user.getName());
-			array.put(o);
+			list.addRow().put("source", user.getSource()).put("name", user.getName());
 		}
 
-		result.put("users", array);
+		result.put("users", list.toJSON());
 		return wrapResultObject(result, returnStatus);
 	}
 
@@ -162,9 +259,10 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups/{groupId}/users", method = RequestMethod.PUT, consumes = FORM_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> addUser(@PathVariable(name = "groupId", required = true) int groupId,
-			@RequestParam("user") String user) throws JSONException {
-		return doUserAction(groupId, user, false);
+	public CompletableFuture<ResponseEntity<String>> addUser(
+			@PathVariable(name = "groupId", required = true) int groupId,
+			@RequestParam("user") String user) {
+		return blockingCalls.execute(() -> doUserAction(groupId, user, false));
 	}
 
 	/**
@@ -180,9 +278,10 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups/{groupId}/users/{user}", method = RequestMethod.DELETE)
-	public ResponseEntity<String> removeUser(@PathVariable(name = "groupId", required = true) int groupId,
+	public CompletableFuture<ResponseEntity<String>> removeUser(
+			@PathVariable(name = "groupId", required = true) int groupId,
 			@PathParam("user") String user) {
-		return doUserAction(groupId, user, true);
+		return blockingCalls.execute(() -> doUserAction(groupId, user, true));
 	}
 
 	/**
@@ -198,14 +297,19 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 	 * @param userNames
 	 *            Array of user names who shall make up the list.
 	 * @return The new list of users having access to the resources of the given
-	 *         resource group, or HTTP status 404 if, for <b>any</b> user in the
-	 *         array, no user with the given user name was found, or the group does
-	 *         not support the "limit users" flag.
+	 *         resource group, HTTP status 400 and an error object listing all user
+	 *         names which were not found, or HTTP status 404 if the group does not
+	 *         support the "limit users" flag.
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups/{groupId}/users", method = RequestMethod.POST, consumes = JSON_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> setUsers(@PathVariable(name = "groupId", required = true) int groupId,
+	public CompletableFuture<ResponseEntity<String>> setUsers(
+			@PathVariable(name = "groupId", required = true) int groupId,
 			@RequestBody(required = true) String[] userNames) {
+		return blockingCalls.execute(() -> doSetUsers(groupId, userNames));
+	}
+
+	private ResponseEntity<String> doSetUsers(int groupId, String[] userNames) {
 		ResourceGroup group = groupManager.getResourceGroup(groupId);
 		if (group == null || !(group instanceof Configurable) || !(group instanceof AuthorizingResourceGroup)) {
 			return ResponseEntity.notFound().build();
@@ -226,47 +330,235 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
 		}
 
-		for (String userName : userNames) {
-			// user must also exist
-			User userObject;
-			try {
-				userObject = userDatabaseRegistry.getSelectedUserDatabase().findUser(userName);
-			} catch (StoreException e) {
-				LOG.error("Exception when querying user database", e);
-				// do not reveal exception details to client
-				return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-			}
-			if (userObject == null) {
-				return createErrorObject(
-						new IllegalArgumentException("User " + userName + " not found in current user database."));
-			}
+		// all users must also exist; resolve them at once, and report all unknown ones
+		Set<String> newUserNames = new LinkedHashSet<>(Arrays.asList(userNames));
+		Map<String, User> newUsers;
+		try {
+			newUsers = userResolver.resolveUsers(userDatabaseRegistry.getSelectedUserDatabase(), newUserNames);
+		} catch (StoreException e) {
+			LOG.error("Exception when querying user database", e);
+			// do not reveal exception details to client
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+		if (newUsers.size() < newUserNames.size()) {
+			String unknownUsers = newUserNames.stream().filter(u -> !newUsers.containsKey(u))
+					.collect(Collectors.joining(", "));
+			return createErrorObject(
+					new IllegalArgumentException("Users not found in current user database: " + unknownUsers));
+		}
 
-			if (!oldUsers.stream().filter(u -> u.getName().equals(userName)).findAny().isPresent()) {
-				admin.addAuthorizedUser(userObject);
+		Set<String> oldUserNames = oldUsers.stream().map(User::getName).collect(Collectors.toSet());
+		List<String> addedUsers = new ArrayList<>();
+		for (User user : newUsers.values()) {
+			if (!oldUserNames.contains(user.getName())) {
+				admin.addAuthorizedUser(user);
+				addedUsers.add(user.getName());
 			}
 		}
 
 		// now, remove the ones no longer wanted
-		List<String> newUsers = Arrays.asList(userNames);
+		List<String> removedUsers = new ArrayList<>();
 		for (User user : oldUsers) {
-			if (!newUsers.contains(user.getName())) {
+			if (!newUserNames.contains(user.getName())) {
 				admin.removeAuthorizedUser(user);
+				removedUsers.add(user.getName());
 			}
 		}
 
 		try {
 			admin.commit();
+			usersCache.invalidate(groupId);
+			membershipIndex.usersAdded(groupId, addedUsers);
+			membershipIndex.usersRemoved(groupId, removedUsers);
 			return getUsers(groupId, HttpStatus.CREATED);
 		} catch (ConfigException e) {
 			return createErrorObject(e);
 		}
 	}
 
+	/**
+	 * Adds users to or removes users from the authorized users of multiple resource groups at once. Each operation is a JSON
+	 * object with the fields <code>groupId</code>, <code>user</code> and <code>action</code> (<code>add</code> or
+	 * <code>remove</code>). As with {@link #addUser(int, String)}, adding a user activates the <code>limitUsers</code> flag of
+	 * the group. <br>
+	 * Each user is looked up only once, and all operations for a group are committed together, so each affected group is
+	 * committed only once. If the commit for a group fails, all operations for this group fail.
+	 *
+	 * @param operations
+	 *            Operations to perform.
+	 * @return A JSON object containing the status of each operation, in the order of the request. The status is one of
+	 *         <code>ok</code>, <code>invalidAction</code>, <code>unknownUser</code>, <code>unknownGroup</code>,
+	 *         <code>notImplemented</code> or <code>error</code>.
+	 */
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/groups/users/batch", method = RequestMethod.POST, consumes = JSON_TYPE, produces = JSON_TYPE)
+	public CompletableFuture<ResponseEntity<String>> modifyGroupUsers(
+			@RequestBody(required = true) List<GroupUserOperationDto> operations) {
+		return blockingCalls.execute(() -> doModifyGroupUsers(operations));
+	}
+
+	private ResponseEntity<String> doModifyGroupUsers(List<GroupUserOperationDto> operations) {
+		Set<String> userNames = operations.stream().map(GroupUserOperationDto::getUser).filter(u -> u != null)
+				.collect(Collectors.toSet());
+		Map<String, User> users;
+		try {
+			users = userResolver.resolveUsers(userDatabaseRegistry.getSelectedUserDatabase(), userNames);
+		}
+		catch (StoreException e) {
+			LOG.error("Exception when querying user database", e);
+			// do not reveal exception details to client
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+
+		JSONObject[] results = new JSONObject[operations.size()];
+		Map<Integer, List<Integer>> operationsByGroup = new LinkedHashMap<>();
+		for (int i = 0; i < operations.size(); i++) {
+			GroupUserOperationDto op = operations.get(i);
+			JSONObject result = new JSONObject();
+			result.put("groupId", op.getGroupId());
+			result.put("user", op.getUser());
+			result.put("action", op.getAction());
+			results[i] = result;
+
+			if (!ACTION_ADD.equals(op.getAction()) && !ACTION_REMOVE.equals(op.getAction())) {
+				result.put("status", "invalidAction");
+			}
+			else if (!users.containsKey(op.getUser())) {
+				result.put("status", "unknownUser");
+			}
+			else {
+				operationsByGroup.computeIfAbsent(Integer.valueOf(op.getGroupId()), g -> new ArrayList<>())
+						.add(Integer.valueOf(i));
+			}
+		}
+
+		for (Map.Entry<Integer, List<Integer>> groupOps : operationsByGroup.entrySet()) {
+			int groupId = groupOps.getKey().intValue();
+			String status = applyGroupOperations(groupId, groupOps.getValue(), operations, users);
+			for (Integer index : groupOps.getValue()) {
+				results[index.intValue()].put("status", status);
+			}
+		}
+
+		JSONObject result = new JSONObject();
+		result.put("operations", new JSONArray(Arrays.asList(results)));
+		return wrapResultObject(result);
+	}
+
+	private String applyGroupOperations(int groupId, List<Integer> indices, List<GroupUserOperationDto> operations,
+			Map<String, User> users) {
+		ResourceGroup group = groupManager.getResourceGroup(groupId);
+		if (group == null || !(group instanceof Configurable) || !(group instanceof AuthorizingResourceGroup)) {
+			return "unknownGroup";
+		}
+		AuthorizingResourceGroupAdmin admin = ((Configurable) group).getAdminInterface(AuthorizingResourceGroupAdmin.class);
+		if (admin == null) {
+			return "notImplemented";
+		}
+
+		boolean added = false;
+		for (Integer index : indices) {
+			GroupUserOperationDto op = operations.get(index.intValue());
+			User user = users.get(op.getUser());
+			if (ACTION_ADD.equals(op.getAction())) {
+				admin.addAuthorizedUser(user);
+				added = true;
+			}
+			else {
+				admin.removeAuthorizedUser(user);
+			}
+		}
+		if (added) {
+			admin.setLimitingUsers(true);
+		}
+
+		try {
+			admin.commit();
+		}
+		catch (ConfigException e) {
+			LOG.warn("Could not commit user changes for group " + groupId, e);
+			return "error";
+		}
+
+		usersCache.invalidate(groupId);
+		if (added) {
+			membershipIndex.limitingUsersChanged(groupId, true);
+		}
+		// apply in request order, so the last operation for a user wins, as it does for the group
+		for (Integer index : indices) {
+			GroupUserOperationDto op = operations.get(index.intValue());
+			if (ACTION_ADD.equals(op.getAction())) {
+				membershipIndex.usersAdded(groupId, Collections.singleton(op.getUser()));
+			}
+			else {
+				membershipIndex.usersRemoved(groupId, Collections.singleton(op.getUser()));
+			}
+		}
+		return "ok";
+	}
+
+	/**
+	 * Lists all resource groups the given user may use. These are all groups which do not limit their users, and all groups
+	 * limiting their users for which the user is configured as authorized user.
+	 *
+	 * @param userName
+	 *            Name of the user.
+	 * @param format
+	 *            Optional list format, e.g. <code>columnar</code> for a compact representation. See {@link JSONListBuilder}.
+	 * @return JSON response listing the ID, name and <code>limitUsers</code> flag of all groups the user may use, or HTTP
+	 *         status 404 if no user with the given name exists in the current user database.
+	 */
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/users/{userName}/groups", method = RequestMethod.GET, produces = JSON_TYPE)
+	public CompletableFuture<ResponseEntity<String>> getUserGroups(@PathVariable("userName") String userName,
+			@RequestParam(name = JSONListBuilder.FORMAT_PARAM, required = false) String format) {
+		return blockingCalls.execute(() -> doGetUserGroups(userName, format));
+	}
+
+	private ResponseEntity<String> doGetUserGroups(String userName, String format) {
+		JSONListBuilder list;
+		try {
+			list = JSONListBuilder.forFormat(format);
+		}
+		catch (IllegalArgumentException e) {
+			return createErrorObject(e);
+		}
+
+		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
+		if (users == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		try {
+			if (userCache.findUser(users, userName) == null) {
+				return ResponseEntity.notFound().build();
+			}
+
+			for (Integer groupId : membershipIndex.getAccessibleGroupIds(userName)) {
+				ResourceGroup group = groupManager.getResourceGroup(groupId.intValue());
+				if (group != null) {
+					list.addRow().put("id", groupId).put("name", groupManager.getResourceGroupName(groupId.intValue()))
+							.put(LIMIT_USERS_KEY, Boolean.valueOf(group instanceof AuthorizingResourceGroup
+									&& ((AuthorizingResourceGroup) group).isLimitingUsers()));
+				}
+			}
+		}
+		catch (StoreException e) {
+			LOG.error("Exception when querying user database", e);
+			// do not reveal exception details to client
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+
+		JSONObject result = new JSONObject();
+		result.put("groups", list.toJSON());
+		return wrapResultObject(result);
+	}
+
 	/**
 	 * Retrieves all user authorization specific configuration elements for the given resource group. <br>
 	 * Currently, this only contains the <code>limitUsers</code> flag, indicating if limiting the access to this group shall be
 	 * limited to a list users or not. To specify the list, use the endpoints of {@link #addUser(int, String)} and
-	 * {@link #removeUser(int, String)}. To view the list, use the endpoint of {@link #getUsers(int)}.
+	 * {@link #removeUser(int, String)}. To view the list, use the endpoint of {@link #getUsers(int, String, String)}.
 	 *
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
@@ -305,8 +597,13 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups/{groupId}/config/users", method = RequestMethod.POST, consumes = FORM_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> setAuthorizationConfig(@PathVariable(name = "groupId", required = true) int groupId,
+	public CompletableFuture<ResponseEntity<String>> setAuthorizationConfig(
+			@PathVariable(name = "groupId", required = true) int groupId,
 			@RequestParam(name = LIMIT_USERS_KEY, required = false) Boolean limitUsers) {
+		return blockingCalls.execute(() -> doSetAuthorizationConfig(groupId, limitUsers));
+	}
+
+	private ResponseEntity<String> doSetAuthorizationConfig(int groupId, Boolean limitUsers) {
 		ResourceGroup group = groupManager.getResourceGroup(groupId);
 		if (group == null || !(group instanceof Configurable) || !(group instanceof AuthorizingResourceGroup)) {
 			return ResponseEntity.notFound().build();
@@ -321,6 +618,8 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 			admin.setLimitingUsers(limitUsers.booleanValue());
 			try {
 				admin.commit();
+				usersCache.invalidate(groupId);
+				membershipIndex.limitingUsersChanged(groupId, limitUsers.booleanValue());
 			} catch (ConfigException e) {
 				return createErrorObject(e);
 			}
@@ -329,7 +628,7 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 		return getAuthorizationConfig(groupId);
 	}
 
-	private ResponseEntity<String> doUserAction(int groupId, String user, boolean delete) throws JSONException {
+	private ResponseEntity<String> doUserAction(int groupId, String user, boolean delete) {
 		ResourceGroup group = groupManager.getResourceGroup(groupId);
 		if (group == null || !(group instanceof Configurable) || !(group instanceof AuthorizingResourceGroup)) {
 			return ResponseEntity.notFound().build();
@@ -338,7 +637,7 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 		// user must also exist
 		User userObject;
 		try {
-			userObject = userDatabaseRegistry.getSelectedUserDatabase().findUser(user);
+			userObject = userCache.findUser(userDatabaseRegistry.getSelectedUserDatabase(), user);
 		}
 		catch (StoreException e) {
 			LOG.error("Exception when querying user database", e);
@@ -365,12 +664,14 @@ public class AuthorizingGroupEndpoint extends AbstractRestController {
 
 		try {
 			admin.commit();
+			usersCache.invalidate(groupId);
 			if (delete) {
+				membershipIndex.usersRemoved(groupId, Collections.singleton(userObject.getName()));
 				return ResponseEntity.noContent().build();
 			}
-			else {
-				return getUsers(groupId, HttpStatus.CREATED);
-			}
+			membershipIndex.limitingUsersChanged(groupId, true);
+			membershipIndex.usersAdded(groupId, Collections.singleton(userObject.getName()));
+			return getUsers(groupId, HttpStatus.CREATED);
 		}
 		catch (ConfigException e) {
 			return createErrorObject(e);
@@ -0,0 +1,853 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.aludratest.cloud.web.rest.AbstractRestController;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.method.support.HandlerMethodArgumentResolverComposite;
+import org.springframework.web.method.support.InvocableHandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ServletRequestDataBinderFactory;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * REST endpoint for executing multiple <code>GET</code> requests to other API endpoints within a single HTTP request.
+ * Accessible via <code>/api/batch</code>. <br>
+ * The batch request is authenticated once; the sub-requests are executed in parallel within the security context of the
+ * batch request, so the access control of each target endpoint (e.g. <code>@PreAuthorize</code> annotations) is still
+ * enforced per sub-request. The handler interceptors of each target endpoint are also applied; servlet filters are only
+ * applied to the batch request itself. <br>
+ * Sub-requests are executed on a small, bounded thread pool. A single batch uses at most
+ * {@value #MAX_PARALLEL_SUB_REQUESTS} threads of it, so large batches cannot starve other clients' batches. If the pool is
+ * exhausted, the affected sub-requests are answered with HTTP status 503. <br>
+ * The container may recycle the batch request as soon as the asynchronous processing ends (including timeouts and client
+ * disconnects). Sub-requests therefore work on a copy of the relevant request data, and are cancelled when the batch
+ * request completes.
+ *
+ * @author falbrech
+ *
+ */
+@RestController
+public class BatchEndpoint extends AbstractRestController {
+
+	private static final String BATCH_ENDPOINT = "/api/batch";
+
+	private static final int MAX_SUB_REQUESTS = 50;
+
+	private static final int EXECUTOR_THREADS = 8;
+
+	private static final int EXECUTOR_QUEUE_SIZE = 100;
+
+	private static final int MAX_PARALLEL_SUB_REQUESTS = 4;
+
+	private RequestMappingHandlerMapping handlerMapping;
+
+	private RequestMappingHandlerAdapter handlerAdapter;
+
+	private ThreadPoolExecutor executor;
+
+	@Autowired
+	public BatchEndpoint(@Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping handlerMapping,
+			RequestMappingHandlerAdapter handlerAdapter) {
+		this.handlerMapping = handlerMapping;
+		this.handlerAdapter = handlerAdapter;
+		executor = new ThreadPoolExecutor(EXECUTOR_THREADS, EXECUTOR_THREADS, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(EXECUTOR_QUEUE_SIZE), new NamedThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Executes the given <code>GET</code> sub-requests in parallel and returns their results in one combined response. Each
+	 * sub-request is described by an object with a <code>path</code> (e.g. <code>/api/groups/1?format=columnar</code>) and an
+	 * optional <code>id</code> for the client's correlation. The result contains an array of responses in the same order as the
+	 * sub-requests, each with the <code>id</code>, <code>path</code>, HTTP <code>status</code> and the JSON <code>body</code>
+	 * of the sub-request.
+	 *
+	 * @param subRequests
+	 *            List of sub-requests to execute.
+	 * @param request
+	 *            The HTTP request of the batch.
+	 *
+	 * @return A JSON object containing the results of all sub-requests, or HTTP status 400 if the list of sub-requests is
+	 *         invalid (e.g. contains <code>null</code> entries).
+	 */
+	@PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN')")
+	@RequestMapping(value = BATCH_ENDPOINT, method = RequestMethod.POST, consumes = JSON_TYPE, produces = JSON_TYPE)
+	public CompletableFuture<ResponseEntity<String>> executeBatch(@RequestBody List<BatchRequestDto> subRequests,
+			HttpServletRequest request) {
+		if (subRequests.size() > MAX_SUB_REQUESTS) {
+			return CompletableFuture.completedFuture(createErrorObject(
+					new IllegalArgumentException("A batch must not contain more than " + MAX_SUB_REQUESTS + " requests")));
+		}
+
+		// validate all paths first
+		for (BatchRequestDto subRequest : subRequests) {
+			if (subRequest == null) {
+				return CompletableFuture.completedFuture(
+						createErrorObject(new IllegalArgumentException("Batch requests must not be null")));
+			}
+			String path = subRequest.getPath();
+			if (StringUtils.isEmpty(path) || !path.startsWith("/api/") || path.startsWith(BATCH_ENDPOINT)) {
+				return CompletableFuture.completedFuture(
+						createErrorObject(new IllegalArgumentException("Invalid batch request path: " + path)));
+			}
+		}
+
+		// the lanes must not touch the container's request and response objects
+		BatchRequestData batchData = new BatchRequestData(request);
+
+		// distribute sub-requests round-robin on a limited number of lanes, each executed sequentially on one thread
+		int count = subRequests.size();
+		int lanes = Math.min(MAX_PARALLEL_SUB_REQUESTS, count);
+		JSONObject[] results = new JSONObject[count];
+		CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+		Future<?>[] laneTasks = new Future<?>[lanes];
+		AtomicBoolean cancelled = new AtomicBoolean();
+		for (int lane = 0; lane < lanes; lane++) {
+			int first = lane;
+			CompletableFuture<Void> laneFuture = new CompletableFuture<>();
+			laneFutures[lane] = laneFuture;
+			// sub-requests run in the security context of the batch request
+			Runnable task = new DelegatingSecurityContextRunnable(() -> {
+				try {
+					for (int i = first; i < count && !cancelled.get(); i += lanes) {
+						results[i] = executeSubRequest(subRequests.get(i), batchData);
+					}
+					laneFuture.complete(null);
+				}
+				catch (RuntimeException | Error e) {
+					laneFuture.completeExceptionally(e);
+				}
+			}, SecurityContextHolder.getContext());
+			try {
+				laneTasks[lane] = executor.submit(task);
+			}
+			catch (RejectedExecutionException e) {
+				for (int i = first; i < count; i += lanes) {
+					results[i] = createSubResult(subRequests.get(i),
+							ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+				}
+				laneFuture.complete(null);
+			}
+		}
+
+		CompletableFuture<ResponseEntity<String>> result = CompletableFuture.allOf(laneFutures).thenApply(v -> {
+			JSONObject json = new JSONObject();
+			json.put("responses", new JSONArray(results));
+			return wrapResultObject(json);
+		});
+
+		// stop the lanes when the batch request ends early, e.g. on async timeout or client disconnect
+		WebAsyncUtils.getAsyncManager(request).registerDeferredResultInterceptor(result,
+				new DeferredResultProcessingInterceptor() {
+					@Override
+					public <T> void afterCompletion(NativeWebRequest webRequest, DeferredResult<T> deferredResult) {
+						cancelled.set(true);
+						for (Future<?> laneTask : laneTasks) {
+							if (laneTask != null) {
+								laneTask.cancel(true);
+							}
+						}
+					}
+				});
+
+		return result;
+	}
+
+	private JSONObject executeSubRequest(BatchRequestDto subRequest, BatchRequestData batchData) {
+		ResponseEntity<?> response;
+		try {
+			response = dispatch(new SubRequest(batchData, subRequest.getPath()), new SubResponse());
+		}
+		catch (AccessDeniedException e) {
+			response = ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		catch (HttpRequestMethodNotSupportedException e) {
+			response = ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED).build();
+		}
+		catch (HttpMediaTypeNotAcceptableException e) {
+			response = ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+		}
+		catch (ServletRequestBindingException | MethodArgumentTypeMismatchException e) {
+			response = createErrorObject(e);
+		}
+		catch (Exception e) {
+			getLog().error("Could not execute batch sub-request " + subRequest.getPath(), e);
+			// do not reveal exception details to client
+			response = ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+
+		return createSubResult(subRequest, response);
+	}
+
+	private JSONObject createSubResult(BatchRequestDto subRequest, ResponseEntity<?> response) {
+		JSONObject result = new JSONObject();
+		result.putOpt("id", subRequest.getId());
+		result.put("path", subRequest.getPath());
+		result.put("status", response.getStatusCodeValue());
+		Object body = response.getBody();
+		if (body instanceof StreamingResponseBody) {
+			try {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				((StreamingResponseBody) body).writeTo(baos);
+				body = new String(baos.toByteArray(), StandardCharsets.UTF_8);
+			}
+			catch (IOException e) {
+				getLog().error("Could not render response of batch sub-request " + subRequest.getPath(), e);
+				result.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
+				body = null;
+			}
+		}
+		if (body != null) {
+			try {
+				result.put("body", new JSONObject(body.toString()));
+			}
+			catch (JSONException e) {
+				result.put("body", body.toString());
+			}
+		}
+
+		return result;
+	}
+
+	private ResponseEntity<?> dispatch(SubRequest request, SubResponse response) throws Exception {
+		HandlerExecutionChain chain = handlerMapping.getHandler(request);
+		if (chain == null || !(chain.getHandler() instanceof HandlerMethod)) {
+			return ResponseEntity.notFound().build();
+		}
+
+		// apply interceptors like the DispatcherServlet does
+		HandlerInterceptor[] interceptors = chain.getInterceptors();
+		int appliedInterceptors = 0;
+		Exception failure = null;
+		try {
+			if (interceptors != null) {
+				for (HandlerInterceptor interceptor : interceptors) {
+					if (!interceptor.preHandle(request, response, chain.getHandler())) {
+						return ResponseEntity.status(response.getStatus()).build();
+					}
+					appliedInterceptors++;
+				}
+			}
+
+			ResponseEntity<?> result = invoke(request, chain);
+
+			for (int i = appliedInterceptors - 1; i >= 0; i--) {
+				interceptors[i].postHandle(request, response, chain.getHandler(), null);
+			}
+			return result;
+		}
+		catch (Exception e) {
+			failure = e;
+			throw e;
+		}
+		finally {
+			for (int i = appliedInterceptors - 1; i >= 0; i--) {
+				try {
+					interceptors[i].afterCompletion(request, response, chain.getHandler(), failure);
+				}
+				catch (Exception e) {
+					getLog().error("Handler interceptor afterCompletion threw exception", e);
+				}
+			}
+		}
+	}
+
+	private ResponseEntity<?> invoke(SubRequest request, HandlerExecutionChain chain) throws Exception {
+		HandlerMethod handlerMethod = ((HandlerMethod) chain.getHandler()).createWithResolvedBean();
+
+		// the resolved bean is the (security) proxy of the endpoint, so method security is applied
+		InvocableHandlerMethod invocable = new InvocableHandlerMethod(handlerMethod);
+		HandlerMethodArgumentResolverComposite resolvers = new HandlerMethodArgumentResolverComposite();
+		resolvers.addResolvers(handlerAdapter.getArgumentResolvers());
+		invocable.setHandlerMethodArgumentResolvers(resolvers);
+		invocable.setDataBinderFactory(new ServletRequestDataBinderFactory(null, handlerAdapter.getWebBindingInitializer()));
+		invocable.setParameterNameDiscoverer(new DefaultParameterNameDiscoverer());
+
+		Object returnValue = invocable.invokeForRequest(new ServletWebRequest(request), new ModelAndViewContainer());
+		if (returnValue instanceof CompletionStage) {
+			try {
+				returnValue = ((CompletionStage<?>) returnValue).toCompletableFuture().get();
+			}
+			catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+		if (!(returnValue instanceof ResponseEntity)) {
+			getLog().warn("Endpoint for " + request.getRequestURI() + " does not return a ResponseEntity, cannot use in batch");
+			return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+		}
+
+		return (ResponseEntity<?>) returnValue;
+	}
+
+	/**
+	 * Creates an object implementing the given servlet API interface which is not backed by the container. All methods
+	 * return <code>null</code>, <code>false</code>, 0 or an empty enumeration, respectively.
+	 */
+	private static <T> T detached(Class<T> servletInterface) {
+		return servletInterface.cast(Proxy.newProxyInstance(BatchEndpoint.class.getClassLoader(),
+				new Class<?>[] { servletInterface }, (proxy, method, args) -> {
+					Class<?> type = method.getReturnType();
+					switch (method.getName()) {
+						case "equals":
+							return Boolean.valueOf(proxy == args[0]);
+						case "hashCode":
+							return Integer.valueOf(System.identityHashCode(proxy));
+						case "toString":
+							return "Detached " + servletInterface.getSimpleName();
+						default:
+							break;
+					}
+					if (type == boolean.class) {
+						return Boolean.FALSE;
+					}
+					if (type == int.class) {
+						return Integer.valueOf(0);
+					}
+					if (type == long.class) {
+						return Long.valueOf(0);
+					}
+					if (type == Enumeration.class) {
+						return Collections.emptyEnumeration();
+					}
+					return null;
+				}));
+	}
+
+	/**
+	 * Copy of the data of the batch request which is relevant for its sub-requests. Taken on the request thread, so the
+	 * sub-requests never access the container's request object, which may already be recycled while they are running.
+	 */
+	private static final class BatchRequestData {
+
+		private final HttpHeaders headers = new HttpHeaders();
+
+		private final String contextPath;
+
+		private final String scheme;
+
+		private final String serverName;
+
+		private final int serverPort;
+
+		private final boolean secure;
+
+		private final String remoteAddr;
+
+		private final String remoteHost;
+
+		private final List<Locale> locales;
+
+		private final Principal userPrincipal;
+
+		private final String remoteUser;
+
+		private final String authType;
+
+		private final ServletContext servletContext;
+
+		private BatchRequestData(HttpServletRequest request) {
+			Enumeration<String> headerNames = request.getHeaderNames();
+			if (headerNames != null) {
+				for (String name : Collections.list(headerNames)) {
+					headers.put(name, Collections.list(request.getHeaders(name)));
+				}
+			}
+			contextPath = request.getContextPath();
+			scheme = request.getScheme();
+			serverName = request.getServerName();
+			serverPort = request.getServerPort();
+			secure = request.isSecure();
+			remoteAddr = request.getRemoteAddr();
+			remoteHost = request.getRemoteHost();
+			locales = Collections.list(request.getLocales());
+			userPrincipal = request.getUserPrincipal();
+			remoteUser = request.getRemoteUser();
+			authType = request.getAuthType();
+			servletContext = request.getServletContext();
+		}
+	}
+
+	/**
+	 * Request describing a <code>GET</code> sub-request of a batch, based on a copy of the batch request's data. Request
+	 * attributes are kept locally, so parallel sub-requests do not interfere with each other or with the batch request.
+	 */
+	private static class SubRequest extends HttpServletRequestWrapper {
+
+		private BatchRequestData batchData;
+
+		private String path;
+
+		private String queryString;
+
+		private Map<String, String[]> parameters = new LinkedHashMap<>();
+
+		private Map<String, Object> attributes = Collections.synchronizedMap(new HashMap<>());
+
+		public SubRequest(BatchRequestData batchData, String pathAndQuery) {
+			super(detached(HttpServletRequest.class));
+			this.batchData = batchData;
+			UriComponents uri = UriComponentsBuilder.fromUriString(pathAndQuery).build();
+			path = uri.getPath();
+			queryString = uri.getQuery();
+
+			MultiValueMap<String, String> params = uri.getQueryParams();
+			for (Map.Entry<String, List<String>> param : params.entrySet()) {
+				String[] values = new String[param.getValue().size()];
+				for (int i = 0; i < values.length; i++) {
+					String value = param.getValue().get(i);
+					values[i] = value == null ? "" : decode(value);
+				}
+				parameters.put(decode(param.getKey()), values);
+			}
+		}
+
+		private static String decode(String value) {
+			try {
+				return UriUtils.decode(value, "UTF-8");
+			}
+			catch (IllegalArgumentException e) {
+				return value;
+			}
+		}
+
+		@Override
+		public String getMethod() {
+			return "GET";
+		}
+
+		@Override
+		public String getRequestURI() {
+			return getContextPath() + path;
+		}
+
+		@Override
+		public StringBuffer getRequestURL() {
+			StringBuffer url = new StringBuffer(batchData.scheme).append("://").append(batchData.serverName);
+			if (!("http".equals(batchData.scheme) && batchData.serverPort == 80)
+					&& !("https".equals(batchData.scheme) && batchData.serverPort == 443)) {
+				url.append(':').append(batchData.serverPort);
+			}
+			return url.append(getRequestURI());
+		}
+
+		@Override
+		public String getContextPath() {
+			return batchData.contextPath;
+		}
+
+		@Override
+		public String getScheme() {
+			return batchData.scheme;
+		}
+
+		@Override
+		public String getServerName() {
+			return batchData.serverName;
+		}
+
+		@Override
+		public int getServerPort() {
+			return batchData.serverPort;
+		}
+
+		@Override
+		public boolean isSecure() {
+			return batchData.secure;
+		}
+
+		@Override
+		public String getProtocol() {
+			return "HTTP/1.1";
+		}
+
+		@Override
+		public String getRemoteAddr() {
+			return batchData.remoteAddr;
+		}
+
+		@Override
+		public String getRemoteHost() {
+			return batchData.remoteHost;
+		}
+
+		@Override
+		public Locale getLocale() {
+			return batchData.locales.isEmpty() ? Locale.getDefault() : batchData.locales.get(0);
+		}
+
+		@Override
+		public Enumeration<Locale> getLocales() {
+			return Collections.enumeration(
+					batchData.locales.isEmpty() ? Collections.singletonList(Locale.getDefault()) : batchData.locales);
+		}
+
+		@Override
+		public Principal getUserPrincipal() {
+			return batchData.userPrincipal;
+		}
+
+		@Override
+		public String getRemoteUser() {
+			return batchData.remoteUser;
+		}
+
+		@Override
+		public String getAuthType() {
+			return batchData.authType;
+		}
+
+		@Override
+		public ServletContext getServletContext() {
+			return batchData.servletContext;
+		}
+
+		@Override
+		public DispatcherType getDispatcherType() {
+			return DispatcherType.REQUEST;
+		}
+
+		@Override
+		public String getServletPath() {
+			return path;
+		}
+
+		@Override
+		public String getPathInfo() {
+			return null;
+		}
+
+		@Override
+		public String getQueryString() {
+			return queryString;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			if (HttpHeaders.ACCEPT.equalsIgnoreCase(name)) {
+				return JSON_TYPE;
+			}
+			return batchData.headers.getFirst(name);
+		}
+
+		@Override
+		public Enumeration<String> getHeaders(String name) {
+			if (HttpHeaders.ACCEPT.equalsIgnoreCase(name)) {
+				return Collections.enumeration(Collections.singletonList(JSON_TYPE));
+			}
+			List<String> values = batchData.headers.get(name);
+			return Collections.enumeration(values == null ? Collections.emptyList() : values);
+		}
+
+		@Override
+		public Enumeration<String> getHeaderNames() {
+			return Collections.enumeration(batchData.headers.keySet());
+		}
+
+		@Override
+		public int getIntHeader(String name) {
+			String value = getHeader(name);
+			return value == null ? -1 : Integer.parseInt(value);
+		}
+
+		@Override
+		public long getDateHeader(String name) {
+			return batchData.headers.getFirstDate(name);
+		}
+
+		@Override
+		public String getContentType() {
+			return null;
+		}
+
+		@Override
+		public int getContentLength() {
+			return 0;
+		}
+
+		@Override
+		public String getParameter(String name) {
+			String[] values = parameters.get(name);
+			return values == null || values.length == 0 ? null : values[0];
+		}
+
+		@Override
+		public Map<String, String[]> getParameterMap() {
+			return Collections.unmodifiableMap(parameters);
+		}
+
+		@Override
+		public Enumeration<String> getParameterNames() {
+			return Collections.enumeration(parameters.keySet());
+		}
+
+		@Override
+		public String[] getParameterValues(String name) {
+			return parameters.get(name);
+		}
+
+		@Override
+		public Object getAttribute(String name) {
+			return attributes.get(name);
+		}
+
+		@Override
+		public Enumeration<String> getAttributeNames() {
+			synchronized (attributes) {
+				return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+			}
+		}
+
+		@Override
+		public void setAttribute(String name, Object o) {
+			if (o == null) {
+				attributes.remove(name);
+			}
+			else {
+				attributes.put(name, o);
+			}
+		}
+
+		@Override
+		public void removeAttribute(String name) {
+			attributes.remove(name);
+		}
+
+		@Override
+		public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
+			// ignore; sub-requests have no body
+		}
+	}
+
+	/**
+	 * Response passed to the handler interceptors of a sub-request. Only the status is recorded; headers and output are
+	 * discarded. Not backed by the response of the batch request, so nothing is written to it.
+	 */
+	private static class SubResponse extends HttpServletResponseWrapper {
+
+		private int status = HttpServletResponse.SC_OK;
+
+		public SubResponse() {
+			super(detached(HttpServletResponse.class));
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+		}
+
+		@Override
+		public int getStatus() {
+			return status;
+		}
+
+		@Override
+		public void sendError(int sc) {
+			status = sc;
+		}
+
+		@Override
+		public void sendError(int sc, String msg) {
+			status = sc;
+		}
+
+		@Override
+		public void sendRedirect(String location) {
+			status = HttpServletResponse.SC_FOUND;
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+		}
+
+		@Override
+		public void setIntHeader(String name, int value) {
+		}
+
+		@Override
+		public void addIntHeader(String name, int value) {
+		}
+
+		@Override
+		public void setDateHeader(String name, long date) {
+		}
+
+		@Override
+		public void addDateHeader(String name, long date) {
+		}
+
+		@Override
+		public void setContentType(String type) {
+		}
+
+		@Override
+		public void setContentLength(int len) {
+		}
+
+		@Override
+		public void setContentLengthLong(long len) {
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return new ServletOutputStream() {
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+				}
+			};
+		}
+
+		@Override
+		public PrintWriter getWriter() {
+			return new PrintWriter(new Writer() {
+				@Override
+				public void write(char[] cbuf, int off, int len) {
+				}
+
+				@Override
+				public void flush() {
+				}
+
+				@Override
+				public void close() {
+				}
+			});
+		}
+
+		@Override
+		public boolean isCommitted() {
+			return false;
+		}
+
+		@Override
+		public void flushBuffer() {
+		}
+
+		@Override
+		public void reset() {
+			status = HttpServletResponse.SC_OK;
+		}
+
+		@Override
+		public void resetBuffer() {
+		}
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "acm-batch-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executes endpoint logic which blocks on the user database or the resource type authorization store (e.g. when these are
+ * backed by LDAP or a database). <br>
+ * If the asynchronous mode is activated via the <code>acm.api.async.enabled</code> property, the calls are executed on a
+ * dedicated, bounded thread pool, and the servlet container thread is released while the call blocks. Otherwise, calls are
+ * executed directly on the calling thread. The pool size and queue capacity can be configured via the
+ * <code>acm.api.async.threads</code> and <code>acm.api.async.queueSize</code> properties. When the queue is full, calls are
+ * answered with HTTP status 503. <br>
+ * The same applies to streamed response bodies (see {@link #getTaskExecutor()}), which usually continue to query the user
+ * database while writing the response.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class BlockingCallExecutor {
+
+	private static final Log LOG = LogFactory.getLog(BlockingCallExecutor.class);
+
+	private static final String ENABLED_PROPERTY = "acm.api.async.enabled";
+
+	private static final String THREADS_PROPERTY = "acm.api.async.threads";
+
+	private static final String QUEUE_SIZE_PROPERTY = "acm.api.async.queueSize";
+
+	private static final int DEFAULT_THREADS = 32;
+
+	private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+	private ThreadPoolExecutor executor;
+
+	private LongAdder queueWaitTimeMs = new LongAdder();
+
+	private LongAdder startedCalls = new LongAdder();
+
+	private LongAdder rejectedCalls = new LongAdder();
+
+	@Autowired
+	public BlockingCallExecutor(Environment environment) {
+		this(environment.getProperty(ENABLED_PROPERTY, Boolean.class, Boolean.FALSE).booleanValue(),
+				environment.getProperty(THREADS_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_THREADS)).intValue(),
+				environment.getProperty(QUEUE_SIZE_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_QUEUE_SIZE))
+						.intValue());
+	}
+
+	public BlockingCallExecutor(boolean enabled, int threads, int queueSize) {
+		if (enabled) {
+			executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+					new NamedThreadFactory());
+			executor.allowCoreThreadTimeOut(true);
+			LOG.info("Executing blocking API calls asynchronously using " + threads + " threads");
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks if blocking calls are executed asynchronously.
+	 *
+	 * @return <code>true</code> if blocking calls are executed on the dedicated thread pool, <code>false</code> if they are
+	 *         executed on the calling thread.
+	 */
+	public boolean isAsync() {
+		return executor != null;
+	}
+
+	/**
+	 * Returns the executor to use for asynchronous request processing of Spring MVC, e.g. for writing
+	 * <code>StreamingResponseBody</code> results. In asynchronous mode, this is the bounded thread pool of this object;
+	 * otherwise, the work is executed directly on the container thread, like all other blocking calls.
+	 *
+	 * @return The executor to use for asynchronous request processing, never <code>null</code>.
+	 */
+	public AsyncTaskExecutor getTaskExecutor() {
+		return new TaskExecutorAdapter(executor != null ? executor : new SyncTaskExecutor());
+	}
+
+	/**
+	 * Executes the given blocking endpoint logic. The security context of the calling thread is also used for the execution.
+	 *
+	 * @param <T>
+	 *            Type of the response body.
+	 * @param call
+	 *            Endpoint logic to execute.
+	 * @return A future for the response of the endpoint logic. The future is already completed when the asynchronous mode is
+	 *         not active.
+	 */
+	public <T> CompletableFuture<ResponseEntity<T>> execute(Supplier<ResponseEntity<T>> call) {
+		if (executor == null) {
+			return CompletableFuture.completedFuture(call.get());
+		}
+
+		CompletableFuture<ResponseEntity<T>> future = new CompletableFuture<>();
+		long submitTime = System.currentTimeMillis();
+		Runnable task = new DelegatingSecurityContextRunnable(() -> {
+			queueWaitTimeMs.add(System.currentTimeMillis() - submitTime);
+			startedCalls.increment();
+			try {
+				future.complete(call.get());
+			}
+			catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+
+		try {
+			executor.execute(task);
+		}
+		catch (RejectedExecutionException e) {
+			rejectedCalls.increment();
+			future.complete(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+		}
+
+		return future;
+	}
+
+	/**
+	 * Returns statistics about the thread pool used for asynchronous execution.
+	 *
+	 * @return A JSON object containing statistics about the thread pool.
+	 */
+	public JSONObject getStatistics() {
+		JSONObject result = new JSONObject();
+		result.put("async", isAsync());
+		if (executor == null) {
+			return result;
+		}
+
+		long started = startedCalls.sum();
+		result.put("poolSize", executor.getPoolSize());
+		result.put("maxPoolSize", executor.getMaximumPoolSize());
+		result.put("largestPoolSize", executor.getLargestPoolSize());
+		result.put("activeThreads", executor.getActiveCount());
+		result.put("queuedCalls", executor.getQueue().size());
+		result.put("remainingQueueCapacity", executor.getQueue().remainingCapacity());
+		result.put("startedCalls", started);
+		result.put("completedCalls", executor.getCompletedTaskCount());
+		result.put("rejectedCalls", rejectedCalls.sum());
+		result.put("averageQueueWaitTimeMs", started == 0 ? 0 : queueWaitTimeMs.sum() / started);
+		return result;
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "acm-api-blocking-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package org.aludratest.cloud.web.rest.impl;
 
+import java.util.Map;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.aludratest.cloud.config.ConfigException;
@@ -29,7 +31,9 @@ import org.aludratest.cloud.resourcegroup.ResourceGroup;
 import org.aludratest.cloud.resourcegroup.ResourceGroupManager;
 import org.aludratest.cloud.resourcegroup.ResourceGroupManagerAdmin;
 import org.aludratest.cloud.web.rest.AbstractRestController;
-import org.json.JSONArray;
+import org.aludratest.cloud.web.rest.FieldSelection;
+import org.aludratest.cloud.web.rest.JSONListBuilder;
+import org.aludratest.cloud.web.rest.JSONListBuilder.Row;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -59,32 +63,66 @@ public class GroupEndpoint extends AbstractRestController {
 	@Autowired
 	private ResourceRequestMapper resourceRequestMapper;
 
+	@Autowired
+	private GroupMembershipIndex membershipIndex;
+
+	@Autowired
+	private GroupUsersCache groupUsersCache;
+
 	/**
 	 * Returns a JSON object enumerating all resource groups registered in the application's current resource group manager.
 	 *
+	 * @param request
+	 *            The HTTP request for link generation.
+	 * @param format
+	 *            Optional list format, e.g. <code>columnar</code> for a compact representation. See {@link JSONListBuilder}.
+	 * @param fields
+	 *            Optional comma-separated list of group fields to return. See {@link FieldSelection}.
+	 *
 	 * @return A JSON object enumerating all resource groups registered in the application's current resource group manager.
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups", method = RequestMethod.GET, produces = JSON_TYPE)
-	public ResponseEntity<String> getAllGroups(HttpServletRequest request) {
+	public ResponseEntity<String> getAllGroups(HttpServletRequest request,
+			@RequestParam(name = JSONListBuilder.FORMAT_PARAM, required = false) String format,
+			@RequestParam(name = FieldSelection.FIELDS_PARAM, required = false) String fields) {
+		JSONListBuilder groups;
+		try {
+			groups = JSONListBuilder.forFormat(format);
+		}
+		catch (IllegalArgumentException e) {
+			return createErrorObject(e);
+		}
+
+		FieldSelection groupFields = FieldSelection.parse(fields);
 		JSONObject result = new JSONObject();
-		JSONArray arr = new JSONArray();
 
 		for (int groupId : groupManager.getAllResourceGroupIds()) {
 			ResourceGroup group = groupManager.getResourceGroup(groupId);
 
-			JSONObject obj = new JSONObject();
-			obj.put("id", groupId);
-			obj.put("name", groupManager.getResourceGroupName(groupId));
-			obj.put("type", group.getResourceType().getName());
-			obj.put("resourceCount", group.getResourceCollection().getResourceCount());
+			Row row = groups.addRow();
+			if (groupFields.includes("id")) {
+				row.put("id", groupId);
+			}
+			if (groupFields.includes("name")) {
+				row.put("name", groupManager.getResourceGroupName(groupId));
+			}
+			if (groupFields.includes("type")) {
+				row.put("type", group.getResourceType().getName());
+			}
+			if (groupFields.includes("resourceCount")) {
+				row.put("resourceCount", group.getResourceCollection().getResourceCount());
+			}
 			// links as array (Restful Objects standard)
-			obj.append("links", createLinkObject(request, "self", "/api/groups/" + groupId));
-			decorateLinks(obj, request, buildLinkContextObject(group, groupId));
-			arr.put(obj);
+			if (groupFields.includes("links")) {
+				JSONObject links = new JSONObject();
+				links.append("links", createLinkObject(request, "self", "/api/groups/" + groupId));
+				decorateLinks(links, request, buildLinkContextObject(group, groupId));
+				row.put("links", links.get("links"));
+			}
 		}
 
-		result.put("groups", arr);
+		result.put("groups", groups.toJSON());
 		return wrapResultObject(result);
 	}
 
@@ -95,74 +133,135 @@ public class GroupEndpoint extends AbstractRestController {
 	 *            Registration ID of the resource group in the application's resource group manager.
 	 * @param request
 	 *            The HTTP request for link generation.
+	 * @param format
+	 *            Optional list format for the resources of the group, e.g. <code>columnar</code> for a compact representation.
+	 *            See {@link JSONListBuilder}.
+	 * @param fields
+	 *            Optional comma-separated list of group fields to return. Fields of the resources can be selected via
+	 *            <code>resources.<i>field</i></code>. See {@link FieldSelection}.
 	 *
 	 * @return A JSON object describing the given resource group and its resources.
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups/{groupId}", method = RequestMethod.GET, produces = JSON_TYPE)
 	public ResponseEntity<String> getGroup(@PathVariable(name = "groupId", required = true) int groupId,
-			HttpServletRequest request) {
-		return getGroup(groupId, request, HttpStatus.OK);
+			HttpServletRequest request,
+			@RequestParam(name = JSONListBuilder.FORMAT_PARAM, required = false) String format,
+			@RequestParam(name = FieldSelection.FIELDS_PARAM, required = false) String fields) {
+		JSONListBuilder resources;
+		try {
+			resources = JSONListBuilder.forFormat(format);
+		}
+		catch (IllegalArgumentException e) {
+			return createErrorObject(e);
+		}
+		return getGroup(groupId, request, resources, FieldSelection.parse(fields), HttpStatus.OK);
 	}
 
 	private ResponseEntity<String> getGroup(int groupId, HttpServletRequest request, HttpStatus returnStatus) {
+		return getGroup(groupId, request, JSONListBuilder.forFormat(null), FieldSelection.all(), returnStatus);
+	}
+
+	private ResponseEntity<String> getGroup(int groupId, HttpServletRequest request, JSONListBuilder resources,
+			FieldSelection fields, HttpStatus returnStatus) {
 		ResourceGroup group = groupManager.getResourceGroup(groupId);
 		if (group == null) {
 			return ResponseEntity.notFound().build();
 		}
 
 		JSONObject result = new JSONObject();
-		result.put("id", groupId);
-		result.put("name", groupManager.getResourceGroupName(groupId));
-		result.put("type", group.getResourceType().getName());
-		result.put("resourceCount", group.getResourceCollection().getResourceCount());
+		if (fields.includes("id")) {
+			result.put("id", groupId);
+		}
+		if (fields.includes("name")) {
+			result.put("name", groupManager.getResourceGroupName(groupId));
+		}
+		if (fields.includes("type")) {
+			result.put("type", group.getResourceType().getName());
+		}
+		if (fields.includes("resourceCount")) {
+			result.put("resourceCount", group.getResourceCollection().getResourceCount());
+		}
+
+		if (fields.includes("resources")) {
+			FieldSelection resourceFields = fields.nested("resources");
 
-		JSONArray resources = new JSONArray();
+			// find resource module for resource type; only needed if other than the generic fields are requested
+			JSONResourceWriter writer = null;
+			if (resourceFields.includesOtherThan("state", "label", "request")) {
+				ResourceModule module = resourceModuleRegistry.getResourceModule(group.getResourceType());
+				writer = module == null ? null
+						: module.getResourceWriterFactory().getResourceWriter(JSONResourceWriter.class);
+			}
 
-		// find resource module for resource type
-		ResourceModule module = resourceModuleRegistry.getResourceModule(group.getResourceType());
-		JSONResourceWriter writer = module == null ? null
-				: module.getResourceWriterFactory().getResourceWriter(JSONResourceWriter.class);
+			for (ResourceStateHolder rsh : group.getResourceCollection()) {
+				writeResource(resources.addRow(), rsh, writer, resourceFields);
+			}
 
-		for (ResourceStateHolder rsh : group.getResourceCollection()) {
-			resources.put(buildResourceObject(rsh, writer));
+			result.put("resources", resources.toJSON());
 		}
 
-		result.put("resources", resources);
-
-		result.append("links", createLinkObject(request, "self", "/api/groups/" + groupId));
-		decorateLinks(result, request, buildLinkContextObject(group, groupId));
+		if (fields.includes("links")) {
+			result.append("links", createLinkObject(request, "self", "/api/groups/" + groupId));
+			decorateLinks(result, request, buildLinkContextObject(group, groupId));
+		}
 
 		return wrapResultObject(result, returnStatus);
 	}
 
-	private JSONObject buildResourceObject(ResourceStateHolder rsh, JSONResourceWriter writer) {
-		JSONObject resObj = new JSONObject();
+	private void writeResource(Row resObj, ResourceStateHolder rsh, JSONResourceWriter writer, FieldSelection fields) {
+		// writer is only passed when fields other than the generic ones are requested. Resource writers always produce all
+		// their fields, so copy only the selected ones.
 		if (writer != null && (rsh instanceof Resource) && writer.canWrite((Resource) rsh)) {
-			resObj = writer.writeToJSON((Resource) rsh);
+			JSONObject written = writer.writeToJSON((Resource) rsh);
+			boolean all = fields.isAll();
+			for (String key : written.keySet()) {
+				if (all || fields.includes(key)) {
+					resObj.put(key, written.get(key));
+				}
+			}
 		}
 
-		resObj.put("state", rsh.getState().toString());
-		resObj.put("label", rsh.toString());
+		if (fields.includes("state")) {
+			resObj.put("state", rsh.getState().toString());
+		}
+		if (fields.includes("label")) {
+			resObj.put("label", rsh.toString());
+		}
 
 		// render some infos about the request, if present
-		if (rsh instanceof Resource) {
+		if ((rsh instanceof Resource) && fields.includes("request")) {
 			ResourceRequest request = resourceRequestMapper.getRequestFor((Resource) rsh);
 			if (request != null) {
-				JSONObject reqObj = new JSONObject();
-				reqObj.put("user", request.getRequestingUser().getName());
-				reqObj.putOpt("jobName", request.getJobName());
-
-				// build attributes object
-				JSONObject attrObj = new JSONObject(request.getCustomAttributes());
-				if (!attrObj.keySet().isEmpty()) {
-					reqObj.put("attributes", attrObj);
-				}
-				resObj.put("request", reqObj);
+				resObj.put("request", writeRequest(request, fields.nested("request")));
 			}
 		}
+	}
 
-		return resObj;
+	private static JSONObject writeRequest(ResourceRequest request, FieldSelection fields) {
+		JSONObject reqObj = new JSONObject();
+		if (fields.includes("user")) {
+			reqObj.put("user", request.getRequestingUser().getName());
+		}
+		if (fields.includes("jobName")) {
+			reqObj.putOpt("jobName", request.getJobName());
+		}
+
+		// build attributes object
+		if (fields.includes("attributes")) {
+			FieldSelection attrFields = fields.nested("attributes");
+			Map<String, Object> attributes = request.getCustomAttributes();
+			JSONObject attrObj = new JSONObject();
+			for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+				if (attrFields.includes(entry.getKey())) {
+					attrObj.put(entry.getKey(), JSONObject.wrap(entry.getValue()));
+				}
+			}
+			if (!attrObj.keySet().isEmpty()) {
+				reqObj.put("attributes", attrObj);
+			}
+		}
+		return reqObj;
 	}
 
 	/**
@@ -175,7 +274,8 @@ public class GroupEndpoint extends AbstractRestController {
 	 * @param request
 	 *            The HTTP request for link generation.
 	 *
-	 * @return A JSON object describing the new resource group, including its registration ID, as used by {@link #getGroup(int)}
+	 * @return A JSON object describing the new resource group, including its registration ID, as used by
+	 *         {@link #getGroup(int, HttpServletRequest, String, String)}
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/groups", method = RequestMethod.PUT, consumes = FORM_TYPE, produces = JSON_TYPE)
@@ -201,6 +301,7 @@ public class GroupEndpoint extends AbstractRestController {
 		try {
 			int groupId = admin.createResourceGroup(module.getResourceType(), name);
 			admin.commit();
+			membershipIndex.groupAdded(groupId);
 			return getGroup(groupId, request, HttpStatus.CREATED);
 		}
 		catch (ConfigException e) {
@@ -272,6 +373,8 @@ public class GroupEndpoint extends AbstractRestController {
 		try {
 			admin.deleteResourceGroup(groupId);
 			admin.commit();
+			membershipIndex.groupRemoved(groupId);
+			groupUsersCache.invalidate(groupId);
 			return ResponseEntity.noContent().build();
 		}
 		catch (ConfigException e) {
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import org.aludratest.cloud.config.Configurable;
+import org.aludratest.cloud.resourcegroup.AuthorizingResourceGroup;
+import org.aludratest.cloud.resourcegroup.AuthorizingResourceGroupAdmin;
+import org.aludratest.cloud.resourcegroup.ResourceGroup;
+import org.aludratest.cloud.resourcegroup.ResourceGroupManager;
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory index of the resource groups each user may use. The index is built from the configured authorized users of all
+ * authorizing resource groups on first access, and is kept up to date by the REST endpoints on every commit of a membership
+ * or group change. As a safety net for changes not performed via the REST endpoints (e.g. configuration changes applied by
+ * other clients of the resource group manager), the index is rebuilt after the time configured via the
+ * <code>acm.groupMembershipIndex.ttlSeconds</code> property. A value of <code>0</code> disables the periodic rebuild. While
+ * an expired index is being rebuilt by one thread, other threads continue to use the previous index. <br>
+ * Groups which do not limit their users (including all groups which are not authorizing resource groups at all) are
+ * accessible for every user, and are tracked separately.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class GroupMembershipIndex {
+
+	private static final Log LOG = LogFactory.getLog(GroupMembershipIndex.class);
+
+	private static final String TTL_PROPERTY = "acm.groupMembershipIndex.ttlSeconds";
+
+	private static final int DEFAULT_TTL_SECONDS = 300;
+
+	private ResourceGroupManager groupManager;
+
+	private final long ttlMillis;
+
+	private final LongSupplier clock;
+
+	// null if not loaded; modified only while holding the monitor of this object
+	private volatile Index index;
+
+	private final AtomicBoolean reloading = new AtomicBoolean();
+
+	@Autowired
+	public GroupMembershipIndex(ResourceGroupManager groupManager, Environment environment) {
+		this(groupManager,
+				environment.getProperty(TTL_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_TTL_SECONDS)).intValue() * 1000L,
+				System::currentTimeMillis);
+	}
+
+	GroupMembershipIndex(ResourceGroupManager groupManager, long ttlMillis, LongSupplier clock) {
+		this.groupManager = groupManager;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns the IDs of all resource groups the given user may use.
+	 *
+	 * @param userName
+	 *            Name of the user.
+	 * @return The sorted IDs of all resource groups the user may use, never <code>null</code>.
+	 * @throws StoreException
+	 *             If the index has not been loaded yet, and querying the authorized users of a group failed.
+	 */
+	public SortedSet<Integer> getAccessibleGroupIds(String userName) throws StoreException {
+		Index current = getIndex();
+
+		SortedSet<Integer> result = new TreeSet<>(current.openGroups);
+		for (Integer groupId : current.groupsByUser.getOrDefault(userName, Collections.emptySet())) {
+			// group could have been deleted without notification, e.g. by another client of the group manager
+			if (groupManager.getResourceGroup(groupId.intValue()) != null) {
+				result.add(groupId);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Registers users which have been added to the authorized users of a group.
+	 *
+	 * @param groupId
+	 *            ID of the resource group.
+	 * @param userNames
+	 *            Names of the added users.
+	 */
+	public synchronized void usersAdded(int groupId, Collection<String> userNames) {
+		Index current = index;
+		if (current != null) {
+			for (String userName : userNames) {
+				current.groupsByUser.compute(userName, (u, groups) -> withGroup(groups, groupId, true));
+			}
+		}
+	}
+
+	/**
+	 * Registers users which have been removed from the authorized users of a group.
+	 *
+	 * @param groupId
+	 *            ID of the resource group.
+	 * @param userNames
+	 *            Names of the removed users.
+	 */
+	public synchronized void usersRemoved(int groupId, Collection<String> userNames) {
+		Index current = index;
+		if (current != null) {
+			for (String userName : userNames) {
+				current.groupsByUser.computeIfPresent(userName, (u, groups) -> {
+					Set<Integer> result = withGroup(groups, groupId, false);
+					return result.isEmpty() ? null : result;
+				});
+			}
+		}
+	}
+
+	/**
+	 * Registers a change of the <code>limitUsers</code> flag of a group.
+	 *
+	 * @param groupId
+	 *            ID of the resource group.
+	 * @param limitingUsers
+	 *            New value of the flag.
+	 */
+	public synchronized void limitingUsersChanged(int groupId, boolean limitingUsers) {
+		Index current = index;
+		if (current != null) {
+			if (limitingUsers) {
+				current.openGroups.remove(Integer.valueOf(groupId));
+			}
+			else {
+				current.openGroups.add(Integer.valueOf(groupId));
+			}
+		}
+	}
+
+	/**
+	 * Registers a newly created resource group, and reads its authorized users.
+	 *
+	 * @param groupId
+	 *            ID of the new resource group.
+	 */
+	public synchronized void groupAdded(int groupId) {
+		Index current = index;
+		if (current != null) {
+			try {
+				addGroup(current, groupId);
+			}
+			catch (StoreException e) {
+				LOG.warn("Could not read authorized users of new group, discarding group membership index", e);
+				invalidate();
+			}
+		}
+	}
+
+	/**
+	 * Removes a deleted resource group from the index.
+	 *
+	 * @param groupId
+	 *            ID of the deleted resource group.
+	 */
+	public synchronized void groupRemoved(int groupId) {
+		Index current = index;
+		if (current != null) {
+			current.openGroups.remove(Integer.valueOf(groupId));
+			current.groupsByUser.replaceAll((u, groups) -> withGroup(groups, groupId, false));
+			current.groupsByUser.values().removeIf(Set::isEmpty);
+		}
+	}
+
+	/**
+	 * Discards the index, so it is rebuilt on next access.
+	 */
+	public synchronized void invalidate() {
+		index = null;
+	}
+
+	private Index getIndex() throws StoreException {
+		Index current = index;
+		if (current != null && !isExpired(current)) {
+			return current;
+		}
+
+		if (current != null) {
+			// expired; only one thread rebuilds, the others keep using the previous index meanwhile
+			if (!reloading.compareAndSet(false, true)) {
+				return current;
+			}
+			try {
+				return loadIfRequired();
+			}
+			catch (StoreException | RuntimeException e) {
+				LOG.warn("Could not rebuild group membership index, keeping previous index", e);
+				return current;
+			}
+			finally {
+				reloading.set(false);
+			}
+		}
+
+		return loadIfRequired();
+	}
+
+	private synchronized Index loadIfRequired() throws StoreException {
+		Index current = index;
+		if (current == null || isExpired(current)) {
+			// built aside, so readers never see a partially built index
+			current = new Index(clock.getAsLong());
+			for (int groupId : groupManager.getAllResourceGroupIds()) {
+				addGroup(current, groupId);
+			}
+			index = current;
+		}
+		return current;
+	}
+
+	private boolean isExpired(Index candidate) {
+		return ttlMillis > 0 && clock.getAsLong() - candidate.loadedAt >= ttlMillis;
+	}
+
+	private void addGroup(Index target, int groupId) throws StoreException {
+		ResourceGroup group = groupManager.getResourceGroup(groupId);
+		if (group == null) {
+			return;
+		}
+		if (!(group instanceof AuthorizingResourceGroup) || !((AuthorizingResourceGroup) group).isLimitingUsers()) {
+			target.openGroups.add(Integer.valueOf(groupId));
+		}
+		if (group instanceof AuthorizingResourceGroup && group instanceof Configurable) {
+			AuthorizingResourceGroupAdmin admin = ((Configurable) group)
+					.getAdminInterface(AuthorizingResourceGroupAdmin.class);
+			if (admin != null) {
+				for (User user : admin.getConfiguredAuthorizedUsers()) {
+					target.groupsByUser.compute(user.getName(), (u, groups) -> withGroup(groups, groupId, true));
+				}
+			}
+		}
+	}
+
+	private static Set<Integer> withGroup(Set<Integer> groups, int groupId, boolean add) {
+		Set<Integer> result = groups == null ? new TreeSet<>() : new TreeSet<>(groups);
+		if (add) {
+			result.add(Integer.valueOf(groupId));
+		}
+		else {
+			result.remove(Integer.valueOf(groupId));
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	private static class Index {
+
+		// values are immutable sets, replaced on every change
+		private final Map<String, Set<Integer>> groupsByUser = new ConcurrentHashMap<>();
+
+		private final Set<Integer> openGroups = ConcurrentHashMap.newKeySet();
+
+		private final long loadedAt;
+
+		private Index(long loadedAt) {
+			this.loadedAt = loadedAt;
+		}
+
+	}
+
+}
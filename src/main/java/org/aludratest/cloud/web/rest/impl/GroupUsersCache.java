@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.aludratest.cloud.web.util.ExpiringCache;
+import org.aludratest.cloud.web.util.MonitoredCache;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Cache for the serialized lists of authorized users of authorizing resource groups. Each group has a version, which is
+ * incremented whenever the authorized users of the group are modified via the REST API. Cached lists of older versions are
+ * never returned. <br>
+ * As a safety net for modifications not performed via the REST API, cached lists expire after the time configured via the
+ * <code>acm.groupUsersCache.ttlSeconds</code> property. The <code>ETag</code> of a list is derived from its content, so a
+ * list rebuilt after such a modification gets a new <code>ETag</code>, although its version is unchanged.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class GroupUsersCache implements MonitoredCache {
+
+	private static final String TTL_PROPERTY = "acm.groupUsersCache.ttlSeconds";
+
+	private static final int DEFAULT_TTL_SECONDS = 300;
+
+	private static final int MAX_SIZE = 1000;
+
+	private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+
+	private ExpiringCache<String, CachedList> cache;
+
+	@Autowired
+	public GroupUsersCache(Environment environment) {
+		this(environment.getProperty(TTL_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_TTL_SECONDS)).intValue());
+	}
+
+	GroupUsersCache(int ttlSeconds) {
+		this(ttlSeconds, System::currentTimeMillis);
+	}
+
+	GroupUsersCache(int ttlSeconds, LongSupplier clock) {
+		cache = new ExpiringCache<>(MAX_SIZE, ttlSeconds * 1000L, clock);
+	}
+
+	/**
+	 * Returns the current version of the list of authorized users of the given group.
+	 *
+	 * @param groupId
+	 *            ID of the resource group.
+	 * @return The current version of the list.
+	 */
+	public long getVersion(int groupId) {
+		return versions.getOrDefault(Integer.valueOf(groupId), Long.valueOf(0)).longValue();
+	}
+
+	/**
+	 * Returns the cached serialized list of authorized users of the given group.
+	 *
+	 * @param groupId
+	 *            ID of the resource group.
+	 * @param version
+	 *            Expected version of the list, as returned by {@link #getVersion(int)}.
+	 * @param format
+	 *            List format of the serialized list.
+	 * @return The cached serialized list, or <code>null</code> if no unexpired list of the given version is cached.
+	 */
+	public CachedList get(int groupId, long version, String format) {
+		CachedList list = cache.get(groupId + ":" + format);
+		return list != null && list.version == version ? list : null;
+	}
+
+	/**
+	 * Stores a serialized list of authorized users of the given group. If the version of the list of the group has changed in
+	 * the meantime, the list is not stored.
+	 *
+	 * @param groupId
+	 *            ID of the resource group.
+	 * @param version
+	 *            Version of the list, as returned by {@link #getVersion(int)} <b>before</b> building the list.
+	 * @param format
+	 *            List format of the serialized list.
+	 * @param body
+	 *            Serialized list.
+	 * @return The list object for the given serialized list, also if it has not been stored.
+	 */
+	public CachedList put(int groupId, long version, String format, String body) {
+		CachedList list = new CachedList(version, body,
+				"\"" + format + "-" + DigestUtils.md5DigestAsHex(body.getBytes(StandardCharsets.UTF_8)) + "\"");
+		if (getVersion(groupId) == version) {
+			cache.put(groupId + ":" + format, list);
+		}
+		return list;
+	}
+
+	/**
+	 * Invalidates the cached lists of the given group, and increments the version of its list of authorized users. Must be
+	 * called after every commit modifying the authorized users or the <code>limitUsers</code> flag of the group.
+	 *
+	 * @param groupId
+	 *            ID of the resource group.
+	 */
+	public void invalidate(int groupId) {
+		versions.merge(Integer.valueOf(groupId), Long.valueOf(1), Long::sum);
+	}
+
+	@Override
+	public String getCacheName() {
+		return "groupUsers";
+	}
+
+	@Override
+	public JSONObject getCacheStatistics() {
+		return cache.getStatistics();
+	}
+
+	/**
+	 * A serialized list of authorized users, together with its <code>ETag</code>.
+	 */
+	public static final class CachedList {
+
+		private final long version;
+
+		private final String body;
+
+		private final String eTag;
+
+		private CachedList(long version, String body, String eTag) {
+			this.version = version;
+			this.body = body;
+			this.eTag = eTag;
+		}
+
+		/**
+		 * Returns the serialized list.
+		 *
+		 * @return The serialized list.
+		 */
+		public String getBody() {
+			return body;
+		}
+
+		/**
+		 * Returns the entity tag of the serialized list, which is derived from the list format and the list content.
+		 *
+		 * @return The quoted entity tag, suitable for the <code>ETag</code> header.
+		 */
+		public String getETag() {
+			return eTag;
+		}
+	}
+
+}
@@ -19,6 +19,7 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -31,12 +32,19 @@ import org.aludratest.cloud.resource.ResourceStateHolder;
 import org.aludratest.cloud.resourcegroup.ResourceGroup;
 import org.aludratest.cloud.resourcegroup.ResourceGroupManager;
 import org.aludratest.cloud.web.rest.AbstractRestController;
-import org.json.JSONArray;
+import org.aludratest.cloud.web.rest.FieldSelection;
+import org.aludratest.cloud.web.rest.JSONListBuilder;
+import org.aludratest.cloud.web.rest.JSONListBuilder.Row;
+import org.aludratest.cloud.web.security.AuthenticationBulkhead;
+import org.aludratest.cloud.web.security.RateLimiter;
+import org.aludratest.cloud.web.util.MonitoredCache;
+import org.aludratest.cloud.web.util.StartupTimingReport;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -48,42 +56,89 @@ public class MonitoringEndpoint extends AbstractRestController {
 
 	private ResourceGroupManager groupManager;
 
+	private BlockingCallExecutor blockingCalls;
+
+	private List<MonitoredCache> caches;
+
+	private AuthenticationBulkhead authenticationBulkhead;
+
+	private StartupTimingReport startupTimingReport;
+
+	private RateLimiter rateLimiter;
+
 	@Autowired
-	public MonitoringEndpoint(ResourceManager resourceManager, ResourceGroupManager groupManager) {
+	public MonitoringEndpoint(ResourceManager resourceManager, ResourceGroupManager groupManager,
+			BlockingCallExecutor blockingCalls, List<MonitoredCache> caches, AuthenticationBulkhead authenticationBulkhead,
+			StartupTimingReport startupTimingReport, RateLimiter rateLimiter) {
 		this.resourceManager = resourceManager;
 		this.groupManager = groupManager;
+		this.blockingCalls = blockingCalls;
+		this.caches = caches;
+		this.authenticationBulkhead = authenticationBulkhead;
+		this.startupTimingReport = startupTimingReport;
+		this.rateLimiter = rateLimiter;
 	}
 
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@GetMapping(value = "/api/monitoring/requests", produces = JSON_TYPE)
-	public ResponseEntity<String> getManagedRequests() {
+	public ResponseEntity<String> getManagedRequests(
+			@RequestParam(name = JSONListBuilder.FORMAT_PARAM, required = false) String format,
+			@RequestParam(name = FieldSelection.FIELDS_PARAM, required = false) String fields) {
+		JSONListBuilder requests;
+		try {
+			requests = JSONListBuilder.forFormat(format);
+		}
+		catch (IllegalArgumentException e) {
+			return createErrorObject(e);
+		}
+
+		FieldSelection requestFields = FieldSelection.parse(fields);
+
 		Iterator<? extends ManagedResourceRequest> iter = resourceManager.getManagedRequests();
-		JSONArray requests = new JSONArray();
-		iter.forEachRemaining(r -> requests.put(toJSONObject(r)));
+		iter.forEachRemaining(r -> writeRequest(requests.addRow(), r, requestFields));
 
-		return wrapResultArray(requests);
+		return wrapResultList(requests);
 	}
 
-	private static JSONObject toJSONObject(ManagedResourceRequest request) {
-		JSONObject result = new JSONObject();
-		result.put("state", request.getState());
-		result.put("creationTimestamp", toJSONTimestamp(request.getCreationTimestamp()));
-		result.put("idleTimeMs", request.getIdleTimeMs());
-		Resource resource = getSafeResource(request);
-		if (resource != null) {
-			result.put("assignedResource", resource.toString());
+	private static void writeRequest(Row result, ManagedResourceRequest request, FieldSelection fields) {
+		if (fields.includes("state")) {
+			result.put("state", request.getState());
+		}
+		if (fields.includes("creationTimestamp")) {
+			result.put("creationTimestamp", toJSONTimestamp(request.getCreationTimestamp()));
+		}
+		if (fields.includes("idleTimeMs")) {
+			result.put("idleTimeMs", request.getIdleTimeMs());
+		}
+		// waits for the resource future, so only do this when requested
+		if (fields.includes("assignedResource")) {
+			Resource resource = getSafeResource(request);
+			if (resource != null) {
+				result.put("assignedResource", resource.toString());
+			}
 		}
 
-		JSONObject rq = new JSONObject();
-		rq.put("userName", request.getRequest().getRequestingUser().getName());
-		rq.put("resourceType", request.getRequest().getResourceType().getName());
-		rq.put("jobName", request.getRequest().getJobName());
-		rq.put("niceLevel", request.getRequest().getNiceLevel());
-		rq.put("customAttributes", new JSONObject(request.getRequest().getCustomAttributes()));
-
-		result.put("request", rq);
+		if (fields.includes("request")) {
+			FieldSelection rqFields = fields.nested("request");
+			JSONObject rq = new JSONObject();
+			if (rqFields.includes("userName")) {
+				rq.put("userName", request.getRequest().getRequestingUser().getName());
+			}
+			if (rqFields.includes("resourceType")) {
+				rq.put("resourceType", request.getRequest().getResourceType().getName());
+			}
+			if (rqFields.includes("jobName")) {
+				rq.put("jobName", request.getRequest().getJobName());
+			}
+			if (rqFields.includes("niceLevel")) {
+				rq.put("niceLevel", request.getRequest().getNiceLevel());
+			}
+			if (rqFields.includes("customAttributes")) {
+				rq.put("customAttributes", new JSONObject(request.getRequest().getCustomAttributes()));
+			}
 
-		return result;
+			result.put("request", rq);
+		}
 	}
 
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
@@ -131,6 +186,40 @@ public class MonitoringEndpoint extends AbstractRestController {
 		return wrapResultObject(result);
 	}
 
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@GetMapping(value = "/api/monitoring/executor", produces = JSON_TYPE)
+	public ResponseEntity<String> getExecutorStats() {
+		return wrapResultObject(blockingCalls.getStatistics());
+	}
+
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@GetMapping(value = "/api/monitoring/authentication", produces = JSON_TYPE)
+	public ResponseEntity<String> getAuthenticationStats() {
+		return wrapResultObject(authenticationBulkhead.getStatistics());
+	}
+
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@GetMapping(value = "/api/monitoring/rateLimits", produces = JSON_TYPE)
+	public ResponseEntity<String> getRateLimitStats() {
+		return wrapResultObject(rateLimiter.getStatistics());
+	}
+
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@GetMapping(value = "/api/monitoring/startup", produces = JSON_TYPE)
+	public ResponseEntity<String> getStartupTimes() {
+		return wrapResultObject(startupTimingReport.getReport());
+	}
+
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@GetMapping(value = "/api/monitoring/caches", produces = JSON_TYPE)
+	public ResponseEntity<String> getCacheStats() {
+		JSONObject result = new JSONObject();
+		for (MonitoredCache cache : caches) {
+			result.put(cache.getCacheName(), cache.getCacheStatistics());
+		}
+		return wrapResultObject(result);
+	}
+
 	private static String toJSONTimestamp(ZonedDateTime timestamp) {
 		return jsonFormat.format(timestamp.withZoneSameInstant(ZoneOffset.UTC));
 	}
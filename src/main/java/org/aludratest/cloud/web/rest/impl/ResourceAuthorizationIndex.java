@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.aludratest.cloud.module.ResourceModule;
+import org.aludratest.cloud.module.ResourceModuleRegistry;
+import org.aludratest.cloud.resource.ResourceType;
+import org.aludratest.cloud.resource.user.ResourceTypeAuthorization;
+import org.aludratest.cloud.resource.user.ResourceTypeAuthorizationConfig;
+import org.aludratest.cloud.resource.user.ResourceTypeAuthorizationStore;
+import org.aludratest.cloud.resource.user.SimpleResourceTypeAuthorization;
+import org.aludratest.cloud.resource.user.SimpleResourceTypeAuthorizationConfig;
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory index of the resource type authorizations of all users, stored as user name to resource type name to
+ * authorization. The index is loaded from the resource type authorization store on first access, and is kept up to date by
+ * performing all saves of authorization configurations via {@link #save(ResourceType, ResourceTypeAuthorizationConfig)}. <br>
+ * As a safety net for modifications not performed via this index (e.g. resource modules registered later, or users deleted
+ * from the user database), the index is reloaded from the store after the time configured via the
+ * <code>acm.authorizationIndex.ttlSeconds</code> property. A value of <code>0</code> disables the periodic reload. <br>
+ * Reads never block once the index has been loaded; they always see a consistent snapshot. While an expired index is being
+ * reloaded by one thread, other threads continue to see the previous snapshot.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class ResourceAuthorizationIndex {
+
+	private static final Log LOG = LogFactory.getLog(ResourceAuthorizationIndex.class);
+
+	private static final String TTL_PROPERTY = "acm.authorizationIndex.ttlSeconds";
+
+	private static final int DEFAULT_TTL_SECONDS = 60;
+
+	private ResourceModuleRegistry resourceModuleRegistry;
+
+	private ResourceTypeAuthorizationStore authorizationStore;
+
+	private final long ttlMillis;
+
+	private final LongSupplier clock;
+
+	// guards loading and all modifications of the index
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private volatile Snapshot snapshot;
+
+	@Autowired
+	public ResourceAuthorizationIndex(ResourceModuleRegistry resourceModuleRegistry,
+			ResourceTypeAuthorizationStore authorizationStore, Environment environment) {
+		this(resourceModuleRegistry, authorizationStore,
+				environment.getProperty(TTL_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_TTL_SECONDS)).intValue() * 1000L,
+				System::currentTimeMillis);
+	}
+
+	ResourceAuthorizationIndex(ResourceModuleRegistry resourceModuleRegistry,
+			ResourceTypeAuthorizationStore authorizationStore, long ttlMillis, LongSupplier clock) {
+		this.resourceModuleRegistry = resourceModuleRegistry;
+		this.authorizationStore = authorizationStore;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns the resource type authorizations of the given user.
+	 *
+	 * @param userName
+	 *            Name of the user.
+	 * @return An unmodifiable map from resource type name to the authorization of the user for this resource type. Resource
+	 *         types for which the user is not configured are not contained. Never <code>null</code>.
+	 * @throws StoreException
+	 *             If the index has not been loaded yet, and loading it from the store failed.
+	 */
+	public Map<String, ResourceTypeAuthorization> getAuthorizations(String userName) throws StoreException {
+		Map<String, ResourceTypeAuthorization> result = getIndex().get(userName);
+		return result == null ? Collections.emptyMap() : result;
+	}
+
+	/**
+	 * Returns the resource type authorizations of all users.
+	 *
+	 * @return An unmodifiable snapshot, mapping user names to maps from resource type name to authorization. Never
+	 *         <code>null</code>.
+	 * @throws StoreException
+	 *             If the index has not been loaded yet, and loading it from the store failed.
+	 */
+	public Map<String, Map<String, ResourceTypeAuthorization>> getAllAuthorizations() throws StoreException {
+		return getIndex();
+	}
+
+	/**
+	 * Saves the given authorization configuration to the resource type authorization store, and updates the index
+	 * accordingly.
+	 *
+	 * @param resourceType
+	 *            Resource type to save the configuration for.
+	 * @param config
+	 *            New authorization configuration for the resource type.
+	 * @throws StoreException
+	 *             If the configuration could not be saved. The index is not modified in this case.
+	 */
+	public void save(ResourceType resourceType, ResourceTypeAuthorizationConfig config) throws StoreException {
+		lock.lock();
+		try {
+			doSave(resourceType, config);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void doSave(ResourceType resourceType, ResourceTypeAuthorizationConfig config) throws StoreException {
+		Snapshot current = getSnapshot();
+		Map<String, Map<String, ResourceTypeAuthorization>> index = current.byUser;
+		authorizationStore.saveResourceTypeAuthorizations(resourceType, config);
+
+		// copy on write; saves are rare compared to reads
+		Map<String, Map<String, ResourceTypeAuthorization>> newIndex = new HashMap<>();
+		String typeName = resourceType.getName();
+		for (Map.Entry<String, Map<String, ResourceTypeAuthorization>> entry : index.entrySet()) {
+			Map<String, ResourceTypeAuthorization> auths = entry.getValue();
+			if (auths.containsKey(typeName)) {
+				Map<String, ResourceTypeAuthorization> newAuths = new LinkedHashMap<>(auths);
+				newAuths.remove(typeName);
+				auths = Collections.unmodifiableMap(newAuths);
+			}
+			if (!auths.isEmpty()) {
+				newIndex.put(entry.getKey(), auths);
+			}
+		}
+		addToIndex(newIndex, typeName, config);
+		// the other resource types are only as fresh as the snapshot they were copied from
+		snapshot = new Snapshot(Collections.unmodifiableMap(newIndex), current.loadedAt);
+	}
+
+	/**
+	 * Loads the current authorization configuration of the given resource type from the store, applies the given modification
+	 * to a copy of it, and saves the result. The whole cycle is executed atomically with respect to other modifications
+	 * performed via this index, so concurrent updates of the same resource type do not get lost.
+	 *
+	 * @param resourceType
+	 *            Resource type to modify the configuration of.
+	 * @param modification
+	 *            Modification to apply to the configuration.
+	 * @throws StoreException
+	 *             If the configuration could not be loaded or saved. The index is not modified in this case.
+	 */
+	public void update(ResourceType resourceType, Consumer<SimpleResourceTypeAuthorizationConfig> modification)
+			throws StoreException {
+		lock.lock();
+		try {
+			ResourceTypeAuthorizationConfig authConfig = authorizationStore.loadResourceTypeAuthorizations(resourceType);
+			SimpleResourceTypeAuthorizationConfig newConfig = authConfig != null
+					? new SimpleResourceTypeAuthorizationConfig(authConfig) : new SimpleResourceTypeAuthorizationConfig();
+			modification.accept(newConfig);
+			doSave(resourceType, newConfig);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Discards the index, so it is reloaded from the store on next access. Required if authorization configurations may have
+	 * been modified without using this index, e.g. after deleting a user.
+	 */
+	public void invalidate() {
+		lock.lock();
+		try {
+			snapshot = null;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private Map<String, Map<String, ResourceTypeAuthorization>> getIndex() throws StoreException {
+		Snapshot current = snapshot;
+		if (current != null && !isExpired(current)) {
+			return current.byUser;
+		}
+
+		if (current != null) {
+			// expired; only one thread reloads, the others keep using the previous snapshot meanwhile
+			if (!lock.tryLock()) {
+				return current.byUser;
+			}
+			try {
+				return getSnapshot().byUser;
+			}
+			catch (StoreException e) {
+				LOG.warn("Could not reload resource type authorizations, keeping previous index", e);
+				return current.byUser;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+
+		lock.lock();
+		try {
+			return getSnapshot().byUser;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// must be called while holding the lock
+	private Snapshot getSnapshot() throws StoreException {
+		Snapshot current = snapshot;
+		if (current != null && !isExpired(current)) {
+			return current;
+		}
+
+		long loadedAt = clock.getAsLong();
+		Map<String, Map<String, ResourceTypeAuthorization>> newIndex = new HashMap<>();
+		for (ResourceModule module : resourceModuleRegistry.getAllResourceModules()) {
+			ResourceType resourceType = module.getResourceType();
+			addToIndex(newIndex, resourceType.getName(), authorizationStore.loadResourceTypeAuthorizations(resourceType));
+		}
+		current = new Snapshot(Collections.unmodifiableMap(newIndex), loadedAt);
+		snapshot = current;
+		return current;
+	}
+
+	private boolean isExpired(Snapshot snapshot) {
+		return ttlMillis > 0 && clock.getAsLong() - snapshot.loadedAt >= ttlMillis;
+	}
+
+	private static void addToIndex(Map<String, Map<String, ResourceTypeAuthorization>> index, String typeName,
+			ResourceTypeAuthorizationConfig config) {
+		if (config == null) {
+			return;
+		}
+		List<User> users = config.getConfiguredUsers();
+		if (users == null) {
+			return;
+		}
+		for (User user : users) {
+			ResourceTypeAuthorization auth = config.getResourceTypeAuthorizationForUser(user);
+			if (auth != null) {
+				Map<String, ResourceTypeAuthorization> existing = index.get(user.getName());
+				// copy existing map, as it may be shared with the previous snapshot
+				Map<String, ResourceTypeAuthorization> auths = existing == null ? new LinkedHashMap<>()
+						: new LinkedHashMap<>(existing);
+				// do not keep references to the (possibly mutable) configuration objects
+				auths.put(typeName, new SimpleResourceTypeAuthorization(auth.getMaxResources(), auth.getNiceLevel()));
+				index.put(user.getName(), Collections.unmodifiableMap(auths));
+			}
+		}
+	}
+
+	private static class Snapshot {
+
+		private final Map<String, Map<String, ResourceTypeAuthorization>> byUser;
+
+		private final long loadedAt;
+
+		private Snapshot(Map<String, Map<String, ResourceTypeAuthorization>> byUser, long loadedAt) {
+			this.byUser = byUser;
+			this.loadedAt = loadedAt;
+		}
+
+	}
+
+}
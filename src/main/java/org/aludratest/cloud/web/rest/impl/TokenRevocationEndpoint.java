@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import org.aludratest.cloud.web.rest.AbstractRestController;
+import org.aludratest.cloud.web.security.jwt.JwtRevocationList;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST Endpoint for revoking JWTs issued by this ACM instance. Single tokens are revoked by their ID (the <code>jti</code>
+ * claim); all tokens of a user issued so far are revoked by the user name. Accessible via
+ * <code>/api/tokens/revocations</code>.
+ *
+ * @author falbrech
+ *
+ */
+@RestController
+public class TokenRevocationEndpoint extends AbstractRestController {
+
+	private JwtRevocationList revocationList;
+
+	@Autowired
+	public TokenRevocationEndpoint(JwtRevocationList revocationList) {
+		this.revocationList = revocationList;
+	}
+
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/tokens/revocations", method = RequestMethod.GET, produces = JSON_TYPE)
+	public ResponseEntity<String> getRevocations() {
+		return wrapResultObject(revocationList.toJSON());
+	}
+
+	/**
+	 * Revokes a single token, or all tokens of a user. Exactly one of the parameters must be specified. When revoking all
+	 * tokens of a user, tokens issued within the same second as the revocation are revoked as well, so a new login of the
+	 * user takes effect only from the next second on.
+	 *
+	 * @param tokenId
+	 *            ID of the token to revoke.
+	 * @param userName
+	 *            Name of the user whose tokens shall be revoked.
+	 * @return The created revocation.
+	 */
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/tokens/revocations", method = RequestMethod.POST, consumes = FORM_TYPE, produces = JSON_TYPE)
+	public ResponseEntity<String> revoke(@RequestParam(name = "tokenId", required = false) String tokenId,
+			@RequestParam(name = "user", required = false) String userName) {
+		if (StringUtils.isEmpty(tokenId) == StringUtils.isEmpty(userName)) {
+			return createErrorObject(new IllegalArgumentException("Exactly one of tokenId and user must be specified"));
+		}
+
+		JSONObject result = new JSONObject();
+		if (!StringUtils.isEmpty(tokenId)) {
+			revocationList.revokeToken(tokenId);
+			result.put("tokenId", tokenId);
+		}
+		else {
+			revocationList.revokeUser(userName);
+			result.put("user", userName);
+		}
+
+		getLog().info("JWT revocation created: " + result);
+		return wrapResultObject(result, HttpStatus.CREATED);
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Collects modifications of the custom attributes of a single user and applies them together. Only attributes whose value
+ * actually changes are written. If writing an attribute fails, the attributes already written by this batch are restored to
+ * their previous values, so the user is not left in a partially updated state. <br>
+ * The user database API only offers single attribute writes, so this is the closest to an atomic operation which can be
+ * achieved on the web layer.
+ *
+ * @author falbrech
+ *
+ */
+final class UserAttributeBatch {
+
+	private static final Log LOG = LogFactory.getLog(UserAttributeBatch.class);
+
+	private UserDatabase users;
+
+	private User user;
+
+	private Map<String, String> changes = new LinkedHashMap<>();
+
+	/**
+	 * Creates a new, empty batch.
+	 *
+	 * @param users
+	 *            User database to write the attributes to.
+	 * @param user
+	 *            User to compare the new attribute values with, or <code>null</code> if the user does not exist yet. Must have
+	 *            been loaded directly from the user database, not from a cache, as its values are also used for rollback.
+	 */
+	UserAttributeBatch(UserDatabase users, User user) {
+		this.users = users;
+		this.user = user;
+	}
+
+	/**
+	 * Registers a new value for the given attribute. If the attribute already has this value, it will not be written.
+	 *
+	 * @param key
+	 *            Attribute name.
+	 * @param value
+	 *            New value of the attribute, may be <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If the user database does not support this attribute.
+	 */
+	void set(String key, String value) throws IllegalArgumentException {
+		if (!users.supportsUserAttribute(key)) {
+			throw new IllegalArgumentException("Unsupported user attribute: " + key);
+		}
+		if (Objects.equals(value, user == null ? null : user.getUserAttribute(key))) {
+			changes.remove(key);
+		}
+		else {
+			changes.put(key, value);
+		}
+	}
+
+	/**
+	 * Returns the names of the attributes which will be written by {@link #apply(User)}.
+	 *
+	 * @return The names of the changed attributes, in registration order.
+	 */
+	List<String> getChangedAttributes() {
+		return new ArrayList<>(changes.keySet());
+	}
+
+	/**
+	 * Writes all changed attributes to the user database.
+	 *
+	 * @param target
+	 *            User to write the attributes to. Usually the user passed to the constructor, but may also be a user which
+	 *            has been created after registering the changes.
+	 * @return The values written, per attribute name.
+	 * @throws StoreException
+	 *             If an attribute could not be written. Attributes already written have been restored in this case, as far
+	 *             as possible.
+	 */
+	Map<String, String> apply(User target) throws StoreException {
+		Map<String, String> previous = new LinkedHashMap<>();
+		try {
+			for (Map.Entry<String, String> change : changes.entrySet()) {
+				String oldValue = target.getUserAttribute(change.getKey());
+				users.modifyUserAttribute(target, change.getKey(), change.getValue());
+				previous.put(change.getKey(), oldValue);
+			}
+		}
+		catch (StoreException | RuntimeException e) {
+			rollback(target, previous);
+			throw e;
+		}
+		return new LinkedHashMap<>(changes);
+	}
+
+	private void rollback(User target, Map<String, String> previous) {
+		for (Map.Entry<String, String> entry : previous.entrySet()) {
+			try {
+				users.modifyUserAttribute(target, entry.getKey(), entry.getValue());
+			}
+			catch (StoreException | RuntimeException e) {
+				LOG.error("Could not restore attribute " + entry.getKey() + " of user " + target.getName(), e);
+			}
+		}
+	}
+
+}
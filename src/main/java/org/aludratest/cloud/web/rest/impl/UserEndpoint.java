@@ -15,20 +15,38 @@
  */
 package org.aludratest.cloud.web.rest.impl;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.aludratest.cloud.config.ConfigException;
-import org.aludratest.cloud.module.ResourceModule;
 import org.aludratest.cloud.module.ResourceModuleRegistry;
 import org.aludratest.cloud.resource.ResourceType;
 import org.aludratest.cloud.resource.user.ResourceTypeAuthorization;
-import org.aludratest.cloud.resource.user.ResourceTypeAuthorizationConfig;
-import org.aludratest.cloud.resource.user.ResourceTypeAuthorizationStore;
 import org.aludratest.cloud.resource.user.SimpleResourceTypeAuthorization;
 import org.aludratest.cloud.resource.user.SimpleResourceTypeAuthorizationConfig;
 import org.aludratest.cloud.user.StoreException;
@@ -36,11 +54,18 @@ import org.aludratest.cloud.user.User;
 import org.aludratest.cloud.user.UserDatabase;
 import org.aludratest.cloud.user.admin.UserDatabaseRegistry;
 import org.aludratest.cloud.web.rest.AbstractRestController;
-import org.json.JSONArray;
+import org.aludratest.cloud.web.rest.FieldSelection;
+import org.aludratest.cloud.web.rest.JSONListBuilder;
+import org.aludratest.cloud.web.rest.JSONListBuilder.Row;
+import org.aludratest.cloud.web.rest.JSONListStreamWriter;
+import org.aludratest.cloud.web.security.CredentialCache;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.util.MultiValueMap;
@@ -51,6 +76,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST endpoint for managing the users of the application's selected user database.
@@ -61,52 +87,369 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class UserEndpoint extends AbstractRestController {
 
+	private static final String[] USER_FIELDS = { "name", "source", "isAdmin", "customAttributes" };
+
+	private static final String TEXT_TYPE = "text/plain";
+
+	private static final int MAX_IMPORT_LINE_LENGTH = 65536;
+
+	private static final String MAX_IMPORT_BYTES_PROPERTY = "acm.userImport.maxBytes";
+
+	private static final long DEFAULT_MAX_IMPORT_BYTES = 64L * 1024 * 1024;
+
 	private UserDatabaseRegistry userDatabaseRegistry;
 
 	private ResourceModuleRegistry resourceModuleRegistry;
 
-	private ResourceTypeAuthorizationStore authorizationStore;
+	private BlockingCallExecutor blockingCalls;
+
+	private UserLookupCache userCache;
+
+	private ResourceAuthorizationIndex authorizationIndex;
+
+	private CredentialCache credentialCache;
+
+	private long maxImportBytes;
 
 	@Autowired
 	public UserEndpoint(UserDatabaseRegistry userDatabaseRegistry, ResourceModuleRegistry resourceModuleRegistry,
-			ResourceTypeAuthorizationStore authorizationStore) {
+			BlockingCallExecutor blockingCalls, UserLookupCache userCache,
+			ResourceAuthorizationIndex authorizationIndex, CredentialCache credentialCache, Environment environment) {
+		this(userDatabaseRegistry, resourceModuleRegistry, blockingCalls, userCache, authorizationIndex, credentialCache,
+				environment.getProperty(MAX_IMPORT_BYTES_PROPERTY, Long.class, Long.valueOf(DEFAULT_MAX_IMPORT_BYTES))
+						.longValue());
+	}
+
+	UserEndpoint(UserDatabaseRegistry userDatabaseRegistry, ResourceModuleRegistry resourceModuleRegistry,
+			BlockingCallExecutor blockingCalls, UserLookupCache userCache,
+			ResourceAuthorizationIndex authorizationIndex, CredentialCache credentialCache, long maxImportBytes) {
+		this.maxImportBytes = maxImportBytes;
 		this.userDatabaseRegistry = userDatabaseRegistry;
 		this.resourceModuleRegistry = resourceModuleRegistry;
-		this.authorizationStore = authorizationStore;
+		this.blockingCalls = blockingCalls;
+		this.userCache = userCache;
+		this.authorizationIndex = authorizationIndex;
+		this.credentialCache = credentialCache;
 	}
 
 	/**
-	 * Lists all users existing in the current user database.
+	 * Lists the users existing in the current user database. The list can be filtered and paged. The response is written
+	 * incrementally while iterating the users of the user database, so large user databases are not buffered in memory. <br>
+	 * If a <code>limit</code> is given, the users are returned in pages ordered by user name. If more users match the filter,
+	 * the result contains a <code>nextCursor</code> value (identifying the last returned user), which can be passed as
+	 * <code>cursor</code> parameter to retrieve the next page. Users created or deleted between two page requests do not
+	 * shift the following pages.
 	 *
-	 * @return A JSON object listing all users in the current user database.
+	 * @param format
+	 *            Optional list format, e.g. <code>columnar</code> for a compact representation. See {@link JSONListBuilder}.
+	 * @param fields
+	 *            Optional comma-separated list of user fields to return. See {@link FieldSelection}.
+	 * @param prefix
+	 *            Optional prefix the user names must start with.
+	 * @param admin
+	 *            Optional value the admin flag of the users must have.
+	 * @param source
+	 *            Optional source the users must originate from.
+	 * @param limit
+	 *            Optional maximum number of users to return.
+	 * @param cursor
+	 *            Optional cursor, as returned as <code>nextCursor</code> by a previous request with the same filter.
+	 *
+	 * @return A JSON object listing the matching users in the current user database.
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users", method = RequestMethod.GET, produces = JSON_TYPE)
-	public ResponseEntity<String> getUsers() {
+	public CompletableFuture<ResponseEntity<StreamingResponseBody>> getUsers(
+			@RequestParam(name = JSONListBuilder.FORMAT_PARAM, required = false) String format,
+			@RequestParam(name = FieldSelection.FIELDS_PARAM, required = false) String fields,
+			@RequestParam(name = "prefix", required = false) String prefix,
+			@RequestParam(name = "admin", required = false) Boolean admin,
+			@RequestParam(name = "source", required = false) String source,
+			@RequestParam(name = "limit", required = false) Integer limit,
+			@RequestParam(name = "cursor", required = false) String cursor) {
+		return blockingCalls.execute(() -> doGetUsers(format, fields, prefix, admin, source, limit, cursor));
+	}
+
+	private ResponseEntity<StreamingResponseBody> doGetUsers(String format, String fields, String prefix, Boolean admin,
+			String source, Integer limit, String cursor) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
 		}
 
-		JSONObject result = new JSONObject();
-		result.put("isEditable", !users.isReadOnly());
+		boolean columnar;
+		String after;
+		try {
+			columnar = JSONListBuilder.isColumnar(format);
+			after = decodeCursor(cursor);
+			if (limit != null && limit.intValue() < 1) {
+				throw new IllegalArgumentException("limit must be a positive number");
+			}
+		}
+		catch (IllegalArgumentException e) {
+			return toStreamingResponse(createErrorObject(e));
+		}
 
-		JSONArray arr = new JSONArray();
+		FieldSelection userFields = FieldSelection.parse(fields);
+		List<String> columns = Arrays.stream(USER_FIELDS).filter(userFields::includes).collect(Collectors.toList());
+		Predicate<User> filter = u -> (prefix == null || u.getName().startsWith(prefix))
+				&& (admin == null || u.isAdmin() == admin.booleanValue())
+				&& (source == null || source.equals(u.getSource()))
+				&& (after == null || u.getName().compareTo(after) > 0);
 
+		Iterator<User> iter;
 		try {
-			Iterator<User> iter = users.getAllUsers(null);
-			while (iter.hasNext()) {
-				arr.put(getUserJSON(iter.next()));
+			iter = users.getAllUsers(null);
+		}
+		catch (StoreException e) {
+			getLog().error("Could not retrieve users list", e);
+			return toStreamingResponse(createErrorObject(new RuntimeException("Could not retrieve users list."),
+					HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+		}
+
+		boolean editable = !users.isReadOnly();
+		StreamingResponseBody body = out -> {
+			Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			JSONWriter writer = new JSONWriter(w);
+			writer.object().key("result").object();
+			writer.key("isEditable").value(editable);
+			writer.key("users");
+			JSONListStreamWriter list = new JSONListStreamWriter(writer, columnar, columns);
+
+			String lastName = null;
+			boolean hasMore = false;
+			if (limit == null) {
+				while (iter.hasNext()) {
+					User user = iter.next();
+					if (filter.test(user)) {
+						writeUserRow(list, user, userFields);
+					}
+				}
 			}
+			else {
+				// the user database does not guarantee any order, so keep the first users by name in a bounded heap
+				int max = limit.intValue();
+				PriorityQueue<User> page = new PriorityQueue<>(Math.min(max, 1024) + 1,
+						Comparator.comparing(User::getName).reversed());
+				while (iter.hasNext()) {
+					User user = iter.next();
+					if (filter.test(user)) {
+						page.add(user);
+						if (page.size() > max) {
+							page.poll();
+							hasMore = true;
+						}
+					}
+				}
+				List<User> sorted = new ArrayList<>(page);
+				sorted.sort(Comparator.comparing(User::getName));
+				for (User user : sorted) {
+					writeUserRow(list, user, userFields);
+					lastName = user.getName();
+				}
+			}
+			list.end();
 
-			result.put("users", arr);
-			return wrapResultObject(result);
+			if (hasMore) {
+				writer.key("nextCursor").value(encodeCursor(lastName));
+			}
+			writer.endObject().endObject();
+			w.flush();
+		};
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+	}
+
+	/**
+	 * Exports all users of the current user database as newline-delimited JSON, one user object per line. The output is
+	 * written incrementally while iterating the users, and can be imported again via <code>/api/userdb/import</code>.
+	 * Passwords are not exported. <br>
+	 * The endpoint is located outside of <code>/api/users/</code>, so it cannot collide with the name of a user.
+	 *
+	 * @return A stream of JSON user objects, one per line.
+	 */
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/userdb/export", method = RequestMethod.GET, produces = NDJSON_TYPE)
+	public CompletableFuture<ResponseEntity<StreamingResponseBody>> exportUsers() {
+		return blockingCalls.execute(this::doExportUsers);
+	}
+
+	private ResponseEntity<StreamingResponseBody> doExportUsers() {
+		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
+		if (users == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		Iterator<User> iter;
+		try {
+			iter = users.getAllUsers(null);
 		}
 		catch (StoreException e) {
 			getLog().error("Could not retrieve users list", e);
-			return createErrorObject(new RuntimeException("Could not retrieve users list."),
-					HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			return toStreamingResponse(createErrorObject(new RuntimeException("Could not retrieve users list."),
+					HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+		}
+
+		StreamingResponseBody body = out -> {
+			Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			while (iter.hasNext()) {
+				getUserJSON(iter.next()).write(w);
+				w.write('\n');
+			}
+			w.flush();
+		};
+
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_TYPE)).body(body);
+	}
+
+	/**
+	 * Imports users from newline-delimited JSON, as produced by <code>/api/userdb/export</code>. Each line contains one user
+	 * record; see {@link UserImporter} for the record format. Users not existing yet are created, existing users are updated,
+	 * and only actual differences are written to the user database. <br>
+	 * The request body is completely received before any result is written, as not all clients and containers can handle a
+	 * response being sent while the request body is still being uploaded. To keep the memory consumption independent of the
+	 * size of the import, the request body is spooled to a temporary file and processed line by line from there. The size
+	 * of the request body is limited by the <code>acm.userImport.maxBytes</code> property (64 MB by default). <br>
+	 * The response contains one result object per non-empty input line (including its line number), followed by a final
+	 * <code>summary</code> object.
+	 *
+	 * @param request
+	 *            Current HTTP servlet request, providing the request body.
+	 * @param dryRun
+	 *            If <code>true</code>, only the differences to the current user database are reported, but no changes are
+	 *            applied.
+	 * @return A stream of JSON result objects, one per line, HTTP status 413 if the request body exceeds the maximum import
+	 *         size, or HTTP status 501 if the current user database is read-only and no dry run has been requested.
+	 */
+	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+	@RequestMapping(value = "/api/userdb/import", method = RequestMethod.POST, consumes = { NDJSON_TYPE,
+			TEXT_TYPE }, produces = NDJSON_TYPE)
+	public CompletableFuture<ResponseEntity<StreamingResponseBody>> importUsers(HttpServletRequest request,
+			@RequestParam(name = "dryRun", required = false, defaultValue = "false") boolean dryRun) {
+		return blockingCalls.execute(() -> doImportUsers(request, dryRun));
+	}
+
+	private ResponseEntity<StreamingResponseBody> doImportUsers(HttpServletRequest request, boolean dryRun) {
+		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
+		if (users == null) {
+			return ResponseEntity.notFound().build();
+		}
+		if (users.isReadOnly() && !dryRun) {
+			return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+		}
+
+		ResponseEntity<StreamingResponseBody> tooLarge = toStreamingResponse(createErrorObject(
+				new RuntimeException("The import exceeds the maximum size of " + maxImportBytes + " bytes."),
+				HttpStatus.PAYLOAD_TOO_LARGE.value()));
+		if (request.getContentLengthLong() > maxImportBytes) {
+			return tooLarge;
+		}
+
+		Path spool = null;
+		boolean complete;
+		try {
+			spool = Files.createTempFile("acm-import-", ".ndjson");
+			complete = copy(request.getInputStream(), spool, maxImportBytes);
+		}
+		catch (IOException e) {
+			getLog().warn("Could not receive user import", e);
+			deleteSpool(spool);
+			return toStreamingResponse(createErrorObject(new RuntimeException("Could not receive the request body.")));
+		}
+		if (!complete) {
+			deleteSpool(spool);
+			return tooLarge;
+		}
+
+		UserImporter importer = new UserImporter(users, userCache, credentialCache, dryRun);
+		Path file = spool;
+
+		// executed on the async request thread
+		StreamingResponseBody body = out -> {
+			try (Reader in = new BufferedReader(
+					new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+				importUsers(importer, in, out, dryRun);
+			}
+			finally {
+				deleteSpool(file);
+			}
+		};
+
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_TYPE)).body(body);
+	}
+
+	/**
+	 * Copies the given stream to the given file, but at most the given number of bytes.
+	 *
+	 * @return <code>true</code> if the stream has been copied completely, <code>false</code> if it exceeds the given number
+	 *         of bytes.
+	 */
+	private static boolean copy(InputStream in, Path file, long maxBytes) throws IOException {
+		byte[] buffer = new byte[8192];
+		long total = 0;
+		try (OutputStream out = Files.newOutputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				total += read;
+				if (total > maxBytes) {
+					return false;
+				}
+				out.write(buffer, 0, read);
+			}
+		}
+		return true;
+	}
+
+	private void deleteSpool(Path spool) {
+		if (spool == null) {
+			return;
 		}
+		try {
+			Files.deleteIfExists(spool);
+		}
+		catch (IOException e) {
+			getLog().warn("Could not delete temporary import file " + spool, e);
+		}
+	}
+
+	private void importUsers(UserImporter importer, Reader in, OutputStream out, boolean dryRun) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		StringBuilder line = new StringBuilder();
+		int lineNumber = 0;
+		while (readLine(in, line)) {
+			lineNumber++;
+			if (line.toString().trim().isEmpty()) {
+				continue;
+			}
+
+			JSONObject result;
+			if (line.length() > MAX_IMPORT_LINE_LENGTH) {
+				result = importer.error("Line exceeds maximum length of " + MAX_IMPORT_LINE_LENGTH + " characters");
+			}
+			else {
+				try {
+					result = importer.importUser(new JSONObject(line.toString()));
+				}
+				catch (JSONException e) {
+					result = importer.error("Invalid JSON: " + e.getMessage());
+				}
+			}
+			result.put("line", lineNumber);
+			result.write(w);
+			w.write('\n');
+			// let the client see progress on large imports
+			if (lineNumber % 100 == 0) {
+				w.flush();
+			}
+		}
+
+		JSONObject summary = importer.getSummary();
+		if (!dryRun && summary.getInt(UserImporter.Status.DELETED.jsonName()) > 0) {
+			authorizationIndex.invalidate();
+		}
+		new JSONObject().put("summary", summary).write(w);
+		w.write('\n');
+		w.flush();
 	}
 
 	/**
@@ -114,11 +457,18 @@ public class UserEndpoint extends AbstractRestController {
 	 *
 	 * @param userName
 	 *            User name to retrieve information about.
+	 * @param fields
+	 *            Optional comma-separated list of user fields to return. See {@link FieldSelection}.
 	 * @return A JSON object describing the user, or HTTP status 404 if no user with the given name could be found.
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users/{userName}", method = RequestMethod.GET, produces = JSON_TYPE)
-	public ResponseEntity<String> getUser(@PathVariable("userName") String userName) {
+	public CompletableFuture<ResponseEntity<String>> getUser(@PathVariable("userName") String userName,
+			@RequestParam(name = FieldSelection.FIELDS_PARAM, required = false) String fields) {
+		return blockingCalls.execute(() -> doGetUser(userName, fields));
+	}
+
+	private ResponseEntity<String> doGetUser(String userName, String fields) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
@@ -127,12 +477,14 @@ public class UserEndpoint extends AbstractRestController {
 		JSONObject result = new JSONObject();
 
 		try {
-			User user = users.findUser(userName);
+			User user = userCache.findUser(users, userName);
 			if (user == null) {
 				return ResponseEntity.notFound().build();
 			}
 
-			result.put("user", getUserJSON(user));
+			JSONObject u = new JSONObject();
+			writeUser(JSONListBuilder.objectRow(u), user, FieldSelection.parse(fields));
+			result.put("user", u);
 			return wrapResultObject(result);
 		}
 		catch (StoreException e) {
@@ -153,7 +505,11 @@ public class UserEndpoint extends AbstractRestController {
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users", method = RequestMethod.PUT, consumes = FORM_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> addUser(@RequestParam("name") String userName) {
+	public CompletableFuture<ResponseEntity<String>> addUser(@RequestParam("name") String userName) {
+		return blockingCalls.execute(() -> doAddUser(userName));
+	}
+
+	private ResponseEntity<String> doAddUser(String userName) {
 		JSONObject result = new JSONObject();
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
@@ -169,12 +525,13 @@ public class UserEndpoint extends AbstractRestController {
 		}
 
 		try {
-			User user = users.findUser(userName);
+			User user = userCache.findUser(users, userName);
 			if (user != null) {
 				return createErrorObject(new ConfigException("A user with this name already exists.", "name"));
 			}
 
 			user = users.create(userName);
+			userCache.userCreated(users, user);
 			result.put("user", getUserJSON(user));
 			return wrapResultObject(result, HttpStatus.CREATED);
 		}
@@ -187,8 +544,12 @@ public class UserEndpoint extends AbstractRestController {
 
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users/{userName}/isAdmin", method = RequestMethod.POST, consumes = FORM_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> setUserAdminFlag(@PathVariable("userName") String userName,
+	public CompletableFuture<ResponseEntity<String>> setUserAdminFlag(@PathVariable("userName") String userName,
 			@RequestParam("isAdmin") boolean isAdmin) {
+		return blockingCalls.execute(() -> doSetUserAdminFlag(userName, isAdmin));
+	}
+
+	private ResponseEntity<String> doSetUserAdminFlag(String userName, boolean isAdmin) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
@@ -199,13 +560,15 @@ public class UserEndpoint extends AbstractRestController {
 		}
 
 		try {
-			User user = users.findUser(userName);
+			User user = userCache.findUser(users, userName);
 			if (user == null) {
 				return ResponseEntity.notFound().build();
 			}
 
 			users.setAdminFlag(user, isAdmin);
-			return getUser(userName);
+			userCache.invalidate(userName);
+			credentialCache.invalidate(userName);
+			return doGetUser(userName, null);
 		} catch (StoreException e) {
 			getLog().error("Could not update user database", e);
 			return createErrorObject(new RuntimeException("Could not update user database"),
@@ -226,7 +589,11 @@ public class UserEndpoint extends AbstractRestController {
 	 */
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users/{userName}", method = RequestMethod.DELETE, produces = JSON_TYPE)
-	public ResponseEntity<String> deleteUser(@PathVariable("userName") String userName) {
+	public CompletableFuture<ResponseEntity<String>> deleteUser(@PathVariable("userName") String userName) {
+		return blockingCalls.execute(() -> doDeleteUser(userName));
+	}
+
+	private ResponseEntity<String> doDeleteUser(String userName) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
@@ -236,12 +603,16 @@ public class UserEndpoint extends AbstractRestController {
 		}
 
 		try {
-			User user = users.findUser(userName);
+			User user = userCache.findUser(users, userName);
 			if (user == null) {
 				return ResponseEntity.notFound().build();
 			}
 
 			users.delete(user);
+			userCache.invalidate(userName);
+			credentialCache.invalidate(userName);
+			// the authorization store may drop the configuration of the deleted user
+			authorizationIndex.invalidate();
 			return ResponseEntity.noContent().build();
 		}
 		catch (StoreException e) {
@@ -253,8 +624,12 @@ public class UserEndpoint extends AbstractRestController {
 
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users/{userName}/attributes", method = RequestMethod.POST, consumes = FORM_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> modifyUserAttributes(@PathVariable("userName") String userName,
+	public CompletableFuture<ResponseEntity<String>> modifyUserAttributes(@PathVariable("userName") String userName,
 			MultiValueMap<String, String> attributes) {
+		return blockingCalls.execute(() -> doModifyUserAttributes(userName, attributes));
+	}
+
+	private ResponseEntity<String> doModifyUserAttributes(String userName, MultiValueMap<String, String> attributes) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
@@ -264,6 +639,7 @@ public class UserEndpoint extends AbstractRestController {
 		}
 
 		try {
+			// bypass the lookup cache, as the changes and rollback values must be determined from the current state
 			User user = users.findUser(userName);
 			if (user == null) {
 				return ResponseEntity.notFound().build();
@@ -276,16 +652,23 @@ public class UserEndpoint extends AbstractRestController {
 						new ConfigException("Unsupported user attribute: " + unsupportedKey.get(), unsupportedKey.get()));
 			}
 
+			UserAttributeBatch batch = new UserAttributeBatch(users, user);
 			for (Map.Entry<String, List<String>> attr : attributes.entrySet()) {
 				// always use LAST element of list
 				if (!attr.getValue().isEmpty()) {
-					users.modifyUserAttribute(user, attr.getKey(), attr.getValue().get(attr.getValue().size() - 1));
+					batch.set(attr.getKey(), attr.getValue().get(attr.getValue().size() - 1));
 				}
 			}
 
-			// refresh user
-			user = users.findUser(userName);
-			return wrapResultObject(getUserJSON(user));
+			Map<String, String> written;
+			try {
+				written = batch.apply(user);
+			}
+			finally {
+				userCache.invalidate(userName);
+			}
+
+			return wrapResultObject(getUserJSON(user, written));
 		}
 		catch (StoreException e) {
 			getLog().error("Could not query or modify user database", e);
@@ -296,8 +679,12 @@ public class UserEndpoint extends AbstractRestController {
 
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users/{userName}/password", method = RequestMethod.POST, consumes = FORM_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> modifyUserPassword(@PathVariable("userName") String userName,
+	public CompletableFuture<ResponseEntity<String>> modifyUserPassword(@PathVariable("userName") String userName,
 			@RequestParam("password") String password) {
+		return blockingCalls.execute(() -> doModifyUserPassword(userName, password));
+	}
+
+	private ResponseEntity<String> doModifyUserPassword(String userName, String password) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
@@ -307,12 +694,14 @@ public class UserEndpoint extends AbstractRestController {
 		}
 
 		try {
-			User user = users.findUser(userName);
+			User user = userCache.findUser(users, userName);
 			if (user == null) {
 				return ResponseEntity.notFound().build();
 			}
 
 			users.changePassword(user, password);
+			userCache.invalidate(userName);
+			credentialCache.invalidate(userName);
 
 			// just OK
 			return ResponseEntity.ok().build();
@@ -326,7 +715,12 @@ public class UserEndpoint extends AbstractRestController {
 
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users/{userName}/authorizations", method = RequestMethod.GET, produces = JSON_TYPE)
-	public ResponseEntity<String> getResourceAuthorizations(@PathVariable("userName") String userName) {
+	public CompletableFuture<ResponseEntity<String>> getResourceAuthorizations(
+			@PathVariable("userName") String userName) {
+		return blockingCalls.execute(() -> doGetResourceAuthorizations(userName));
+	}
+
+	private ResponseEntity<String> doGetResourceAuthorizations(String userName) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
@@ -336,25 +730,18 @@ public class UserEndpoint extends AbstractRestController {
 		}
 
 		try {
-			User user = users.findUser(userName);
+			User user = userCache.findUser(users, userName);
 			if (user == null) {
 				return ResponseEntity.notFound().build();
 			}
 
-			// bad algorithm, must always load everything, just for this single user
 			JSONObject result = new JSONObject();
-			for (ResourceModule m : resourceModuleRegistry.getAllResourceModules()) {
-				ResourceTypeAuthorizationConfig authConfig = authorizationStore
-						.loadResourceTypeAuthorizations(m.getResourceType());
-				if (authConfig != null) {
-					ResourceTypeAuthorization auth = authConfig.getResourceTypeAuthorizationForUser(user);
-					if (auth != null) {
-						JSONObject value = new JSONObject();
-						value.put("maxResources", auth.getMaxResources());
-						value.put("niceLevel", auth.getNiceLevel());
-						result.put(m.getResourceType().getName(), value);
-					}
-				}
+			for (Map.Entry<String, ResourceTypeAuthorization> auth : authorizationIndex.getAuthorizations(user.getName())
+					.entrySet()) {
+				JSONObject value = new JSONObject();
+				value.put("maxResources", auth.getValue().getMaxResources());
+				value.put("niceLevel", auth.getValue().getNiceLevel());
+				result.put(auth.getKey(), value);
 			}
 
 			return wrapResultObject(result);
@@ -367,8 +754,14 @@ public class UserEndpoint extends AbstractRestController {
 
 	@PreAuthorize("hasAuthority('ROLE_ADMIN')")
 	@RequestMapping(value = "/api/users/{userName}/authorizations", method = RequestMethod.POST, consumes = JSON_TYPE, produces = JSON_TYPE)
-	public ResponseEntity<String> setResourceAuthorizations(@PathVariable("userName") String userName,
+	public CompletableFuture<ResponseEntity<String>> setResourceAuthorizations(
+			@PathVariable("userName") String userName,
 			@RequestBody Map<String, ResourceTypeAuthorizationDto> resourceAuthorizations) {
+		return blockingCalls.execute(() -> doSetResourceAuthorizations(userName, resourceAuthorizations));
+	}
+
+	private ResponseEntity<String> doSetResourceAuthorizations(String userName,
+			Map<String, ResourceTypeAuthorizationDto> resourceAuthorizations) {
 		UserDatabase users = userDatabaseRegistry.getSelectedUserDatabase();
 		if (users == null) {
 			return ResponseEntity.notFound().build();
@@ -376,7 +769,7 @@ public class UserEndpoint extends AbstractRestController {
 
 		User user;
 		try {
-			user = users.findUser(userName);
+			user = userCache.findUser(users, userName);
 			if (user == null) {
 				return ResponseEntity.notFound().build();
 			}
@@ -394,17 +787,9 @@ public class UserEndpoint extends AbstractRestController {
 			for (Map.Entry<String, ResourceTypeAuthorizationDto> typeAuth : resourceAuthorizations.entrySet()) {
 				ResourceType resType = resourceModuleRegistry.getResourceModule(typeAuth.getKey())
 						.getResourceType();
-				ResourceTypeAuthorizationConfig authConfig = authorizationStore.loadResourceTypeAuthorizations(resType);
-				SimpleResourceTypeAuthorizationConfig newConfig = (null!= authConfig)? new SimpleResourceTypeAuthorizationConfig(authConfig):new SimpleResourceTypeAuthorizationConfig();
 				SimpleResourceTypeAuthorization newAuth = new SimpleResourceTypeAuthorization(
 						typeAuth.getValue().getMaxResources(), typeAuth.getValue().getNiceLevel());
-
-				if (newConfig.getResourceTypeAuthorizationForUser(user) == null) {
-					newConfig.addUser(user, newAuth);
-				} else {
-					newConfig.editUserAuthorization(user, newAuth);
-				}
-				authorizationStore.saveResourceTypeAuthorizations(resType, newConfig);
+				authorizationIndex.update(resType, config -> setAuthorization(config, user, newAuth));
 			}
 		} catch (StoreException e) {
 			getLog().error("Could not load or save resource authorization database", e);
@@ -412,25 +797,119 @@ public class UserEndpoint extends AbstractRestController {
 					HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		}
 
-		return getResourceAuthorizations(userName);
+		return doGetResourceAuthorizations(userName);
+	}
+
+	static void setAuthorization(SimpleResourceTypeAuthorizationConfig config, User user,
+			ResourceTypeAuthorization authorization) {
+		if (config.getResourceTypeAuthorizationForUser(user) == null) {
+			config.addUser(user, authorization);
+		}
+		else {
+			config.editUserAuthorization(user, authorization);
+		}
+	}
+
+	/**
+	 * Reads the next line from the given reader into the given buffer, without storing more than
+	 * <code>MAX_IMPORT_LINE_LENGTH + 1</code> characters of it. Trailing CR characters are removed.
+	 */
+	private static boolean readLine(Reader in, StringBuilder line) throws IOException {
+		line.setLength(0);
+		boolean read = false;
+		int c;
+		while ((c = in.read()) != -1) {
+			read = true;
+			if (c == '\n') {
+				break;
+			}
+			if (line.length() <= MAX_IMPORT_LINE_LENGTH) {
+				line.append((char) c);
+			}
+		}
+		if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+			line.setLength(line.length() - 1);
+		}
+		return read;
+	}
+
+	private void writeUserRow(JSONListStreamWriter list, User user, FieldSelection fields) {
+		JSONObject u = new JSONObject();
+		writeUser(JSONListBuilder.objectRow(u), user, fields);
+		list.writeRow(u);
+	}
+
+	private static String decodeCursor(String cursor) throws IllegalArgumentException {
+		if (StringUtils.isEmpty(cursor)) {
+			return null;
+		}
+		try {
+			// cursor is the name of the last user of the previous page
+			return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+	}
+
+	private static String encodeCursor(String lastUserName) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(lastUserName.getBytes(StandardCharsets.UTF_8));
 	}
 
 	private JSONObject getUserJSON(User user) throws JSONException {
 		JSONObject u = new JSONObject();
-		u.put("name", user.getName());
-		u.put("source", user.getSource());
-		u.put("isAdmin", user.isAdmin());
-
-		String[] attrs = user.getDefinedUserAttributes();
-		if (attrs.length > 0) {
-			JSONObject a = new JSONObject();
-			for (String attr : attrs) {
-				a.put(attr, user.getUserAttribute(attr));
-			}
-			u.put("customAttributes", a);
+		writeUser(JSONListBuilder.objectRow(u), user, FieldSelection.all());
+		return u;
+	}
+
+	private JSONObject getUserJSON(User user, Map<String, String> writtenAttributes) throws JSONException {
+		JSONObject u = getUserJSON(user);
+		if (writtenAttributes.isEmpty()) {
+			return u;
 		}
 
+		// the user object may not reflect the written values, so do not rely on it
+		JSONObject a = u.optJSONObject("customAttributes");
+		if (a == null) {
+			a = new JSONObject();
+			u.put("customAttributes", a);
+		}
+		for (Map.Entry<String, String> attr : writtenAttributes.entrySet()) {
+			if (attr.getValue() == null) {
+				a.remove(attr.getKey());
+			}
+			else {
+				a.put(attr.getKey(), attr.getValue());
+			}
+		}
 		return u;
 	}
 
+	private void writeUser(Row u, User user, FieldSelection fields) throws JSONException {
+		if (fields.includes("name")) {
+			u.put("name", user.getName());
+		}
+		if (fields.includes("source")) {
+			u.put("source", user.getSource());
+		}
+		if (fields.includes("isAdmin")) {
+			u.put("isAdmin", user.isAdmin());
+		}
+
+		// attribute lookups may be expensive, so only query the requested ones
+		if (fields.includes("customAttributes")) {
+			FieldSelection attrFields = fields.nested("customAttributes");
+			String[] attrs = user.getDefinedUserAttributes();
+			if (attrs.length > 0) {
+				JSONObject a = new JSONObject();
+				for (String attr : attrs) {
+					if (attrFields.includes(attr)) {
+						a.put(attr, user.getUserAttribute(attr));
+					}
+				}
+				u.put("customAttributes", a);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.web.security.CredentialCache;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.util.StringUtils;
+
+/**
+ * Applies user records, as read from an import file, to a user database. Each record is compared to the current state of the
+ * user first, and only the actual differences are written to the user database. In dry-run mode, only the differences are
+ * determined. The caller has to ensure that the user database is not read-only, unless in dry-run mode. <br>
+ * A record is a JSON object with the fields <code>name</code> (mandatory), <code>isAdmin</code>, <code>customAttributes</code>
+ * and <code>password</code> (all optional), or with the fields <code>name</code> and <code>delete</code> to delete a user.
+ * This is the same format as produced by the user export, so exported files can be imported again.
+ *
+ * @author falbrech
+ *
+ */
+final class UserImporter {
+
+	enum Status {
+		CREATED, UPDATED, DELETED, UNCHANGED, ERROR;
+
+		String jsonName() {
+			return name().toLowerCase();
+		}
+	}
+
+	private UserDatabase users;
+
+	private UserLookupCache userCache;
+
+	private CredentialCache credentialCache;
+
+	private boolean dryRun;
+
+	private Map<Status, Integer> counts = new EnumMap<>(Status.class);
+
+	UserImporter(UserDatabase users, UserLookupCache userCache, CredentialCache credentialCache, boolean dryRun) {
+		this.users = users;
+		this.userCache = userCache;
+		this.credentialCache = credentialCache;
+		this.dryRun = dryRun;
+	}
+
+	/**
+	 * Imports a single user record. Never throws an exception; errors are reported in the returned result.
+	 *
+	 * @param record
+	 *            User record to import.
+	 * @return A JSON object describing the result, with the fields <code>name</code>, <code>status</code> and
+	 *         <code>changes</code> (a list of the changed fields), or <code>error</code> if the record could not be
+	 *         imported.
+	 */
+	JSONObject importUser(JSONObject record) {
+		JSONObject result = new JSONObject();
+		String name = record.optString("name", null);
+		result.put("name", name);
+
+		try {
+			List<String> changes = new ArrayList<>();
+			Status status = apply(name, record, changes);
+			result.put("status", status.jsonName());
+			if (!changes.isEmpty()) {
+				result.put("changes", new JSONArray(changes));
+			}
+			count(status);
+		}
+		catch (IllegalArgumentException | IllegalStateException | StoreException e) {
+			return error(result, e.getMessage());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reports an error for a record which could not even be parsed.
+	 *
+	 * @param message
+	 *            Error message to report.
+	 * @return A JSON object describing the error.
+	 */
+	JSONObject error(String message) {
+		return error(new JSONObject(), message);
+	}
+
+	/**
+	 * Returns the number of records per result status, plus the dry-run flag.
+	 *
+	 * @return A JSON object summarizing all results so far.
+	 */
+	JSONObject getSummary() {
+		JSONObject summary = new JSONObject();
+		for (Status status : Status.values()) {
+			summary.put(status.jsonName(), counts.getOrDefault(status, Integer.valueOf(0)));
+		}
+		summary.put("dryRun", dryRun);
+		return summary;
+	}
+
+	private JSONObject error(JSONObject result, String message) {
+		result.put("status", Status.ERROR.jsonName());
+		result.put("error", message == null ? "Could not import user" : message);
+		count(Status.ERROR);
+		return result;
+	}
+
+	private void count(Status status) {
+		counts.merge(status, Integer.valueOf(1), Integer::sum);
+	}
+
+	private Status apply(String name, JSONObject record, List<String> changes) throws StoreException {
+		if (StringUtils.isEmpty(name)) {
+			throw new IllegalArgumentException("The user name must not be empty");
+		}
+
+		// bypass the lookup cache, as the changes and rollback values must be determined from the current state
+		User user = users.findUser(name);
+
+		if (record.optBoolean("delete")) {
+			if (user == null) {
+				return Status.UNCHANGED;
+			}
+			if (!dryRun) {
+				users.delete(user);
+				userCache.invalidate(name);
+				credentialCache.invalidate(name);
+			}
+			return Status.DELETED;
+		}
+
+		// determine all changes first, so invalid records are not applied partially
+		Boolean isAdmin = record.has("isAdmin") ? Boolean.valueOf(record.getBoolean("isAdmin")) : null;
+		if (isAdmin != null && (user == null ? isAdmin.booleanValue() : user.isAdmin() != isAdmin.booleanValue())) {
+			if (!users.canChangeAdminFlag()) {
+				throw new IllegalArgumentException("The user database does not support changing the admin flag");
+			}
+			changes.add("isAdmin");
+		}
+
+		JSONObject attributes = record.optJSONObject("customAttributes");
+		UserAttributeBatch attributeBatch = new UserAttributeBatch(users, user);
+		if (attributes != null) {
+			for (String key : attributes.keySet()) {
+				attributeBatch.set(key, attributes.isNull(key) ? null : attributes.get(key).toString());
+			}
+			attributeBatch.getChangedAttributes().forEach(key -> changes.add("customAttributes." + key));
+		}
+
+		String password = record.optString("password", null);
+		if (password != null) {
+			// cannot be compared, so always apply
+			changes.add("password");
+		}
+
+		if (user != null && changes.isEmpty()) {
+			return Status.UNCHANGED;
+		}
+		if (dryRun) {
+			return user == null ? Status.CREATED : Status.UPDATED;
+		}
+
+		Status status = Status.UPDATED;
+		if (user == null) {
+			user = users.create(name);
+			status = Status.CREATED;
+		}
+		try {
+			if (changes.contains("isAdmin")) {
+				users.setAdminFlag(user, isAdmin.booleanValue());
+			}
+			attributeBatch.apply(user);
+			if (password != null) {
+				users.changePassword(user, password);
+			}
+		}
+		catch (StoreException | RuntimeException e) {
+			if (status == Status.CREATED) {
+				// do not leave a half-initialized user behind, e.g. without its password
+				try {
+					users.delete(user);
+				}
+				catch (StoreException | RuntimeException de) {
+					e.addSuppressed(de);
+					throw new IllegalStateException("User " + name
+							+ " has been created, but could not be initialized, and could not be removed again: "
+							+ e.getMessage(), e);
+				}
+			}
+			throw e;
+		}
+		finally {
+			userCache.invalidate(name);
+			if (changes.contains("isAdmin") || password != null) {
+				credentialCache.invalidate(name);
+			}
+		}
+		return status;
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.web.util.ExpiringCache;
+import org.aludratest.cloud.web.util.InvalidationTracker;
+import org.aludratest.cloud.web.util.MonitoredCache;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, time-limited cache for user lookups in the selected user database. All user modifications performed via the REST API
+ * must be reported to this cache, so it never returns stale user objects for these. Modifications performed directly in the
+ * underlying user database (e.g. in LDAP) become visible after the time to live of the cache entries. Lookups running while
+ * a user is invalidated do not store their (possibly stale) result. <br>
+ * The cache can be configured via the <code>acm.userCache.maxSize</code> and <code>acm.userCache.ttlSeconds</code> properties.
+ * Setting any of these to 0 disables the cache.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class UserLookupCache implements MonitoredCache {
+
+	private static final String MAX_SIZE_PROPERTY = "acm.userCache.maxSize";
+
+	private static final String TTL_PROPERTY = "acm.userCache.ttlSeconds";
+
+	private static final int DEFAULT_MAX_SIZE = 1000;
+
+	private static final int DEFAULT_TTL_SECONDS = 30;
+
+	private static final int INVALIDATION_STRIPES = 1024;
+
+	private ExpiringCache<String, CachedUser> cache;
+
+	private InvalidationTracker invalidations = new InvalidationTracker(INVALIDATION_STRIPES);
+
+	@Autowired
+	public UserLookupCache(Environment environment) {
+		this(environment.getProperty(MAX_SIZE_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_MAX_SIZE)).intValue(),
+				environment.getProperty(TTL_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_TTL_SECONDS)).intValue());
+	}
+
+	UserLookupCache(int maxSize, int ttlSeconds) {
+		cache = new ExpiringCache<>(maxSize, ttlSeconds * 1000L);
+	}
+
+	/**
+	 * Looks up the user with the given name in the given user database, using a cached user object if available.
+	 *
+	 * @param users
+	 *            User database to query, usually the currently selected user database.
+	 * @param userName
+	 *            Name of the user to find.
+	 * @return The user object, or <code>null</code> if no user with this name exists in the user database.
+	 * @throws StoreException
+	 *             If the user database could not be queried.
+	 */
+	public User findUser(UserDatabase users, String userName) throws StoreException {
+		CachedUser cached = cache.get(userName);
+		// a different user database could have been selected in the meantime
+		if (cached != null && cached.database == users) {
+			return cached.user;
+		}
+
+		long sequence = invalidations.currentSequence();
+		User user = users.findUser(userName);
+		if (user != null && cache.isEnabled()) {
+			cache.put(userName, new CachedUser(users, user));
+			// the user could have been modified while it was looked up; invalidate() removes the entry only after
+			// recording the invalidation, so checking after the put cannot miss it
+			if (invalidations.isInvalidatedSince(userName, sequence)) {
+				cache.invalidate(userName);
+			}
+		}
+		return user;
+	}
+
+	/**
+	 * Registers a newly created user in the cache.
+	 *
+	 * @param users
+	 *            User database in which the user has been created.
+	 * @param user
+	 *            The newly created user.
+	 */
+	public void userCreated(UserDatabase users, User user) {
+		cache.put(user.getName(), new CachedUser(users, user));
+	}
+
+	/**
+	 * Removes the user with the given name from the cache. Must be called after each modification or deletion of a user.
+	 *
+	 * @param userName
+	 *            Name of the modified or deleted user.
+	 */
+	public void invalidate(String userName) {
+		invalidations.invalidate(userName);
+		cache.invalidate(userName);
+	}
+
+	@Override
+	public String getCacheName() {
+		return "userLookup";
+	}
+
+	@Override
+	public JSONObject getCacheStatistics() {
+		return cache.getStatistics();
+	}
+
+	private static final class CachedUser {
+
+		private final UserDatabase database;
+
+		private final User user;
+
+		private CachedUser(UserDatabase database, User user) {
+			this.database = database;
+			this.user = user;
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves many user names to user objects at once. The lookups are performed in parallel, using the {@link UserLookupCache},
+ * but with a bounded number of concurrent user database queries. The limit can be configured via the
+ * <code>acm.userResolver.concurrency</code> property. <br>
+ * To prevent a single call with many names from queueing its lookups ahead of all other callers, each call only has a limited
+ * number of lookups submitted at a time, configurable via the <code>acm.userResolver.maxInFlightPerCall</code> property.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class UserResolver {
+
+	private static final String CONCURRENCY_PROPERTY = "acm.userResolver.concurrency";
+
+	private static final int DEFAULT_CONCURRENCY = 8;
+
+	private static final String MAX_IN_FLIGHT_PROPERTY = "acm.userResolver.maxInFlightPerCall";
+
+	private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+	private UserLookupCache userCache;
+
+	private ExecutorService executor;
+
+	private int maxInFlightPerCall;
+
+	@Autowired
+	public UserResolver(UserLookupCache userCache, Environment environment) {
+		this(userCache,
+				environment.getProperty(CONCURRENCY_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_CONCURRENCY))
+						.intValue(),
+				environment.getProperty(MAX_IN_FLIGHT_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_MAX_IN_FLIGHT))
+						.intValue());
+	}
+
+	UserResolver(UserLookupCache userCache, int concurrency, int maxInFlightPerCall) {
+		this.userCache = userCache;
+		this.maxInFlightPerCall = Math.max(1, maxInFlightPerCall);
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+			Thread t = new Thread(r, "acm-user-resolver-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Looks up all users with the given names in the given user database. Each name is queried only once.
+	 *
+	 * @param users
+	 *            User database to query.
+	 * @param userNames
+	 *            Names of the users to look up.
+	 * @return A map from user name to user object, in the iteration order of the given names. Names for which no user exists
+	 *         are not contained in the map.
+	 * @throws StoreException
+	 *             If the user database could not be queried.
+	 */
+	public Map<String, User> resolveUsers(UserDatabase users, Collection<String> userNames) throws StoreException {
+		Set<String> names = new LinkedHashSet<>(userNames);
+		Map<String, User> result = new LinkedHashMap<>();
+
+		if (names.size() == 1) {
+			String name = names.iterator().next();
+			User user = userCache.findUser(users, name);
+			if (user != null) {
+				result.put(name, user);
+			}
+			return result;
+		}
+
+		// sliding window: submit the next lookup only when one of this call's lookups has completed
+		CompletionService<Map.Entry<String, User>> completion = new ExecutorCompletionService<>(executor);
+		List<Future<Map.Entry<String, User>>> futures = new ArrayList<>();
+		Map<String, User> found = new HashMap<>();
+		Iterator<String> pending = names.iterator();
+		try {
+			while (futures.size() < maxInFlightPerCall && pending.hasNext()) {
+				futures.add(submitLookup(completion, users, pending.next()));
+			}
+			for (int completed = 0; completed < futures.size(); completed++) {
+				Map.Entry<String, User> lookup = completion.take().get();
+				if (lookup.getValue() != null) {
+					found.put(lookup.getKey(), lookup.getValue());
+				}
+				if (pending.hasNext()) {
+					futures.add(submitLookup(completion, users, pending.next()));
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StoreException("Interrupted while querying user database", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof StoreException) {
+				throw (StoreException) e.getCause();
+			}
+			throw new StoreException("Could not query user database", e.getCause());
+		}
+		finally {
+			futures.forEach(f -> f.cancel(false));
+		}
+
+		for (String name : names) {
+			User user = found.get(name);
+			if (user != null) {
+				result.put(name, user);
+			}
+		}
+		return result;
+	}
+
+	private Future<Map.Entry<String, User>> submitLookup(CompletionService<Map.Entry<String, User>> completion,
+			UserDatabase users, String name) {
+		return completion.submit(() -> new AbstractMap.SimpleImmutableEntry<>(name, userCache.findUser(users, name)));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+}
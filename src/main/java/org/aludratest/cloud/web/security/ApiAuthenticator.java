@@ -28,6 +28,9 @@ import org.aludratest.cloud.web.security.jwt.JwtTokenValidator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationDetailsSource;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -39,10 +42,13 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 /**
  * Configures Spring Security to use the custom ACM user authenticator and to protect access to all REST API endpoints (
- * <code>/api/**</code>) via HTTP Basic Authentication.
+ * <code>/api/**</code>) via HTTP Basic Authentication. Authentication attempts reaching the user database are rate limited
+ * by the {@link RateLimiter}.
  *
  * @author falbrech
  *
@@ -60,12 +66,17 @@ public class ApiAuthenticator extends WebSecurityConfigurerAdapter {
 	@Autowired
 	private JwtTokenValidator jwtTokenValidator;
 
+	@Autowired
+	private RateLimiter rateLimiter;
+
 	@Override
 	protected void configure(HttpSecurity http) throws Exception {
 		http.csrf().ignoringAntMatchers("/api/**").and().antMatcher("/api/**").authorizeRequests()
 				.anyRequest()
 				.authenticated().and()
-				.addFilterBefore(jwtAuthenticationFilter(), BasicAuthenticationFilter.class).httpBasic()
+				.addFilterBefore(jwtAuthenticationFilter(), BasicAuthenticationFilter.class)
+				.httpBasic()
+				.authenticationDetailsSource(rateLimitDetailsSource())
 				.authenticationEntryPoint(new Simple401AuthenticationEntryPoint()).and()
 				.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and().csrf().disable();
 	}
@@ -91,6 +102,12 @@ public class ApiAuthenticator extends WebSecurityConfigurerAdapter {
 		return filter;
 	}
 
+	private AuthenticationDetailsSource<HttpServletRequest, RateLimitDetails> rateLimitDetailsSource() {
+		RequestMatcher loginMatcher = new AntPathRequestMatcher(LOGIN_ENDPOINT);
+		return request -> new RateLimitDetails(loginMatcher.matches(request) ? RateLimiter.LOGIN : RateLimiter.API,
+				rateLimiter.resolveClientAddress(request));
+	}
+
 	private AuthenticationSuccessHandler jwtAuthenticationSuccessHandler() {
 		return new AuthenticationSuccessHandler() {
 			@Override
@@ -105,6 +122,17 @@ public class ApiAuthenticator extends WebSecurityConfigurerAdapter {
 		@Override
 		public void commence(HttpServletRequest request, HttpServletResponse response,
 				AuthenticationException authException) throws IOException, ServletException {
+			if (authException instanceof RateLimitExceededException) {
+				response.setHeader(HttpHeaders.RETRY_AFTER,
+						String.valueOf(((RateLimitExceededException) authException).getRetryAfterSeconds()));
+				response.sendError(HttpStatus.TOO_MANY_REQUESTS.value());
+				return;
+			}
+			if (authException instanceof AuthenticationUnavailableException) {
+				response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+				response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				return;
+			}
 			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
 		}
 	}
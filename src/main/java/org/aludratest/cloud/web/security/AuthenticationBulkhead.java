@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the number of concurrent authentications against the user database, and the time spent waiting for them. If the
+ * user database (e.g. an LDAP directory) slows down, only the configured number of servlet container threads block on it;
+ * all further authentication attempts wait at most a short time for a free slot, and then fail with an
+ * {@link AuthenticationUnavailableException} (HTTP status 503). Calls authenticated via JWT are not affected. <br>
+ * The limits are configured via the properties <code>acm.authentication.maxConcurrent</code>,
+ * <code>acm.authentication.maxWaitMs</code> (maximum time to wait for a free slot) and
+ * <code>acm.authentication.timeoutMs</code> (maximum time to wait for the user database). Setting
+ * <code>acm.authentication.maxConcurrent</code> to 0 disables the limits, and the user database is queried directly on the
+ * calling thread.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class AuthenticationBulkhead {
+
+	private static final Log LOG = LogFactory.getLog(AuthenticationBulkhead.class);
+
+	private static final String MAX_CONCURRENT_PROPERTY = "acm.authentication.maxConcurrent";
+
+	private static final String MAX_WAIT_PROPERTY = "acm.authentication.maxWaitMs";
+
+	private static final String TIMEOUT_PROPERTY = "acm.authentication.timeoutMs";
+
+	private static final int DEFAULT_MAX_CONCURRENT = 16;
+
+	private static final long DEFAULT_MAX_WAIT_MS = 500;
+
+	private static final long DEFAULT_TIMEOUT_MS = 10000;
+
+	private final int maxConcurrent;
+
+	private final long maxWaitMs;
+
+	private final long timeoutMs;
+
+	private Semaphore permits;
+
+	private ThreadPoolExecutor executor;
+
+	private LongAdder queueWaitTimeMs = new LongAdder();
+
+	private LongAccumulator maxQueueWaitTimeMs = new LongAccumulator(Math::max, 0);
+
+	private LongAdder startedCalls = new LongAdder();
+
+	private LongAdder rejectedCalls = new LongAdder();
+
+	private LongAdder timedOutCalls = new LongAdder();
+
+	@Autowired
+	public AuthenticationBulkhead(Environment environment) {
+		this(environment.getProperty(MAX_CONCURRENT_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_MAX_CONCURRENT))
+				.intValue(),
+				environment.getProperty(MAX_WAIT_PROPERTY, Long.class, Long.valueOf(DEFAULT_MAX_WAIT_MS)).longValue(),
+				environment.getProperty(TIMEOUT_PROPERTY, Long.class, Long.valueOf(DEFAULT_TIMEOUT_MS)).longValue());
+	}
+
+	public AuthenticationBulkhead(int maxConcurrent, long maxWaitMs, long timeoutMs) {
+		this.maxConcurrent = maxConcurrent;
+		this.maxWaitMs = maxWaitMs;
+		this.timeoutMs = timeoutMs;
+		if (maxConcurrent > 0) {
+			permits = new Semaphore(maxConcurrent);
+			// the number of queued tasks is bounded by the semaphore
+			executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), new NamedThreadFactory());
+			executor.allowCoreThreadTimeOut(true);
+			LOG.info("Limiting user database authentications to " + maxConcurrent + " concurrent calls");
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Authenticates the given user against the given user database, respecting the configured limits.
+	 *
+	 * @param users
+	 *            User database to authenticate against.
+	 * @param userName
+	 *            Name of the user to authenticate.
+	 * @param password
+	 *            Password provided by the client.
+	 * @return The authenticated user, or <code>null</code> if the credentials are invalid.
+	 * @throws StoreException
+	 *             If the user database could not be queried.
+	 * @throws AuthenticationUnavailableException
+	 *             If no slot became available in time, or the user database did not respond in time.
+	 */
+	public User authenticate(UserDatabase users, String userName, String password)
+			throws StoreException, AuthenticationUnavailableException {
+		if (executor == null) {
+			return users.authenticate(userName, password);
+		}
+
+		long waitStart = System.nanoTime();
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuthenticationUnavailableException("Interrupted while waiting for user database");
+		}
+		long waitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStart);
+		queueWaitTimeMs.add(waitMs);
+		maxQueueWaitTimeMs.accumulate(waitMs);
+
+		if (!acquired) {
+			rejectedCalls.increment();
+			throw new AuthenticationUnavailableException("Too many concurrent authentications, please retry later");
+		}
+		startedCalls.increment();
+
+		// whoever sets this flag first is responsible for releasing the permit
+		AtomicBoolean claimed = new AtomicBoolean();
+		Future<User> future;
+		try {
+			future = executor.submit(() -> {
+				if (!claimed.compareAndSet(false, true)) {
+					// abandoned by caller before it started
+					return null;
+				}
+				try {
+					return users.authenticate(userName, password);
+				}
+				finally {
+					permits.release();
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			permits.release();
+			throw new AuthenticationUnavailableException("User database authentication not available");
+		}
+
+		try {
+			return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			timedOutCalls.increment();
+			abandon(future, claimed);
+			throw new AuthenticationUnavailableException("User database did not respond in time");
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abandon(future, claimed);
+			throw new AuthenticationUnavailableException("Interrupted while waiting for user database");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof StoreException) {
+				throw (StoreException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new StoreException("Could not authenticate user", cause);
+		}
+	}
+
+	/**
+	 * Returns statistics about the authentications against the user database.
+	 *
+	 * @return A JSON object containing statistics about the authentications.
+	 */
+	public JSONObject getStatistics() {
+		JSONObject result = new JSONObject();
+		result.put("limited", executor != null);
+		if (executor == null) {
+			return result;
+		}
+
+		long started = startedCalls.sum();
+		long rejected = rejectedCalls.sum();
+		result.put("maxConcurrent", maxConcurrent);
+		result.put("maxWaitMs", maxWaitMs);
+		result.put("timeoutMs", timeoutMs);
+		result.put("activeCalls", maxConcurrent - permits.availablePermits());
+		result.put("waitingCalls", permits.getQueueLength());
+		result.put("startedCalls", started);
+		result.put("rejectedCalls", rejected);
+		result.put("timedOutCalls", timedOutCalls.sum());
+		result.put("averageQueueWaitTimeMs", started + rejected == 0 ? 0 : queueWaitTimeMs.sum() / (started + rejected));
+		result.put("maxQueueWaitTimeMs", maxQueueWaitTimeMs.get());
+		return result;
+	}
+
+	private void abandon(Future<User> future, AtomicBoolean claimed) {
+		if (claimed.compareAndSet(false, true)) {
+			permits.release();
+		}
+		future.cancel(true);
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "acm-authentication-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
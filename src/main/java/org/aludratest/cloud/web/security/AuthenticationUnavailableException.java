@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when a user could not be authenticated because the user database is currently saturated or does not respond in
+ * time. Answered with HTTP status 503, so clients can retry later.
+ *
+ * @author falbrech
+ *
+ */
+public class AuthenticationUnavailableException extends AuthenticationServiceException {
+
+	private static final long serialVersionUID = 2813476193472950641L;
+
+	public AuthenticationUnavailableException(String msg) {
+		super(msg);
+	}
+
+}
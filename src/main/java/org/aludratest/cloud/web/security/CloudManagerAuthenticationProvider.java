@@ -17,6 +17,7 @@ package org.aludratest.cloud.web.security;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.aludratest.cloud.user.StoreException;
 import org.aludratest.cloud.user.User;
@@ -48,9 +49,19 @@ public class CloudManagerAuthenticationProvider implements AuthenticationProvide
 
 	private UserDatabaseRegistry userDatabaseRegistry;
 
+	private CredentialCache credentialCache;
+
+	private AuthenticationBulkhead bulkhead;
+
+	private RateLimiter rateLimiter;
+
 	@Autowired
-	public CloudManagerAuthenticationProvider(UserDatabaseRegistry userDatabaseRegistry) {
+	public CloudManagerAuthenticationProvider(UserDatabaseRegistry userDatabaseRegistry, CredentialCache credentialCache,
+			AuthenticationBulkhead bulkhead, RateLimiter rateLimiter) {
 		this.userDatabaseRegistry = userDatabaseRegistry;
+		this.credentialCache = credentialCache;
+		this.bulkhead = bulkhead;
+		this.rateLimiter = rateLimiter;
 	}
 
 	@Override
@@ -79,7 +90,7 @@ public class CloudManagerAuthenticationProvider implements AuthenticationProvide
 
 		// we could, but we won't distinguish between user not found and incorrect password, so just authenticate...
 		try {
-			User user = users.authenticate(username, password);
+			User user = authenticate(users, username, password, authentication.getDetails());
 			if (user == null) {
 				throw new BadCredentialsException("Username / password combination is invalid");
 			}
@@ -98,6 +109,44 @@ public class CloudManagerAuthenticationProvider implements AuthenticationProvide
 		}
 	}
 
+	private User authenticate(UserDatabase users, String username, String password, Object details)
+			throws StoreException {
+		if (!credentialCache.isEnabled()) {
+			checkRateLimit(username, details);
+			return bulkhead.authenticate(users, username, password);
+		}
+
+		CredentialCache.Ticket ticket = credentialCache.createTicket(users, username, password);
+		User user = credentialCache.get(ticket);
+		if (user == null) {
+			// only attempts which reach the user database are limited
+			checkRateLimit(username, details);
+			user = bulkhead.authenticate(users, username, password);
+			if (user != null) {
+				credentialCache.put(ticket, user);
+			}
+		}
+		return user;
+	}
+
+	private void checkRateLimit(String username, Object details) throws RateLimitExceededException {
+		String endpointClass = RateLimiter.API;
+		String clientAddress = null;
+		if (details instanceof RateLimitDetails) {
+			endpointClass = ((RateLimitDetails) details).getEndpointClass();
+			clientAddress = ((RateLimitDetails) details).getClientAddress();
+		}
+
+		long waitNanos = rateLimiter.tryAcquire(endpointClass, username, clientAddress);
+		if (waitNanos > 0) {
+			LOG.debug("Rate limit exceeded for user " + username + " from " + clientAddress);
+			// round up, so clients retrying after the given time will get a token
+			long second = TimeUnit.SECONDS.toNanos(1);
+			throw new RateLimitExceededException("Too many authentication attempts, please retry later",
+					Math.max(1, (waitNanos + second - 1) / second));
+		}
+	}
+
 	@Override
 	public boolean supports(Class<?> authentication) {
 		return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+/**
+ * Matches request paths against a fixed list of Ant-style patterns, with the same semantics as a list of (case sensitive)
+ * <code>AntPathRequestMatcher</code>s. The patterns are compiled once into a table of exact paths and path prefixes
+ * (patterns ending with <code>/**</code>), so the common patterns are matched without tokenizing the path. Only patterns
+ * containing other wildcards are delegated to an {@link AntPathMatcher}.
+ *
+ * @author falbrech
+ *
+ */
+public final class CompiledPathMatcher {
+
+	private static final String MATCH_ALL = "/**";
+
+	private final boolean matchAll;
+
+	private final String[] exactPaths;
+
+	private final String[] prefixes;
+
+	private final String[] antPatterns;
+
+	private final AntPathMatcher antMatcher = new AntPathMatcher();
+
+	/**
+	 * Compiles the given patterns.
+	 *
+	 * @param patterns
+	 *            Ant-style patterns to match.
+	 */
+	public CompiledPathMatcher(List<String> patterns) {
+		boolean all = false;
+		List<String> exact = new ArrayList<>();
+		List<String> prefix = new ArrayList<>();
+		List<String> ant = new ArrayList<>();
+
+		for (String pattern : patterns) {
+			if (MATCH_ALL.equals(pattern) || "**".equals(pattern)) {
+				all = true;
+			}
+			else if (isSubpathPattern(pattern)) {
+				prefix.add(pattern.substring(0, pattern.length() - MATCH_ALL.length()));
+			}
+			else if (antMatcher.isPattern(pattern)) {
+				ant.add(pattern);
+			}
+			else {
+				exact.add(pattern);
+			}
+		}
+
+		matchAll = all;
+		exactPaths = exact.toArray(new String[0]);
+		prefixes = prefix.toArray(new String[0]);
+		antPatterns = ant.toArray(new String[0]);
+	}
+
+	private static boolean isSubpathPattern(String pattern) {
+		// same rule as in AntPathRequestMatcher
+		return pattern.endsWith(MATCH_ALL) && pattern.indexOf('?') == -1 && pattern.indexOf('{') == -1
+				&& pattern.indexOf('}') == -1 && pattern.indexOf('*') == pattern.length() - 2;
+	}
+
+	/**
+	 * Checks if the path of the given request matches one of the patterns.
+	 *
+	 * @param request
+	 *            HTTP request to check.
+	 * @return <code>true</code> if the path of the request matches one of the patterns, <code>false</code> otherwise.
+	 */
+	public boolean matches(HttpServletRequest request) {
+		return matchAll || matches(getRequestPath(request));
+	}
+
+	/**
+	 * Checks if the given path matches one of the patterns.
+	 *
+	 * @param path
+	 *            Path to check, relative to the context path of the web application.
+	 * @return <code>true</code> if the path matches one of the patterns, <code>false</code> otherwise.
+	 */
+	public boolean matches(String path) {
+		if (matchAll) {
+			return true;
+		}
+		for (String exact : exactPaths) {
+			if (exact.equals(path)) {
+				return true;
+			}
+		}
+		int length = path.length();
+		for (String prefix : prefixes) {
+			int prefixLength = prefix.length();
+			if (path.startsWith(prefix) && (length == prefixLength || path.charAt(prefixLength) == '/')) {
+				return true;
+			}
+		}
+		for (String pattern : antPatterns) {
+			if (antMatcher.match(pattern, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the path of the given request which is matched against the patterns, like
+	 * <code>AntPathRequestMatcher</code> does.
+	 *
+	 * @param request
+	 *            HTTP request.
+	 * @return The path of the request, relative to the context path of the web application.
+	 */
+	public static String getRequestPath(HttpServletRequest request) {
+		String url = request.getServletPath();
+		String pathInfo = request.getPathInfo();
+		if (pathInfo != null) {
+			url = StringUtils.hasLength(url) ? url + pathInfo : pathInfo;
+		}
+		return url;
+	}
+
+}
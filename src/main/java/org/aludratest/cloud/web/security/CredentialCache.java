@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.web.util.ExpiringCache;
+import org.aludratest.cloud.web.util.InvalidationTracker;
+import org.aludratest.cloud.web.util.MonitoredCache;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opt-in, short-lived cache of successful user database authentications, used for HTTP Basic clients which send their
+ * credentials with every request. Entries are keyed by an HMAC of user name and password, using a random key generated at
+ * startup; passwords are never stored. <br>
+ * All password changes, admin flag changes and user deletions performed via the REST API must be reported to this cache
+ * via {@link #invalidate(String)}. Authentications which are in progress while a user is invalidated are not cached. <br>
+ * The cache is disabled by default and can be enabled by setting the <code>acm.credentialCache.ttlSeconds</code> property
+ * to a value greater than 0. The maximum number of entries is configured via <code>acm.credentialCache.maxSize</code>.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class CredentialCache implements MonitoredCache {
+
+	private static final String MAX_SIZE_PROPERTY = "acm.credentialCache.maxSize";
+
+	private static final String TTL_PROPERTY = "acm.credentialCache.ttlSeconds";
+
+	private static final int DEFAULT_MAX_SIZE = 1000;
+
+	private static final int DEFAULT_TTL_SECONDS = 0;
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private static final int INVALIDATION_STRIPES = 4096;
+
+	private final ExpiringCache<String, CachedAuthentication> cache;
+
+	/** Bounded record of invalidations, independent of the number of invalidated users. */
+	private final InvalidationTracker invalidations = new InvalidationTracker(INVALIDATION_STRIPES);
+
+	private final SecretKeySpec hashKey;
+
+	private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+	@Autowired
+	public CredentialCache(Environment environment) {
+		this(environment.getProperty(MAX_SIZE_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_MAX_SIZE)).intValue(),
+				environment.getProperty(TTL_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_TTL_SECONDS)).intValue());
+	}
+
+	public CredentialCache(int maxSize, int ttlSeconds) {
+		cache = new ExpiringCache<>(maxSize, ttlSeconds * 1000L);
+
+		// a fresh key per process; cached hashes are worthless outside this instance
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		hashKey = new SecretKeySpec(key, MAC_ALGORITHM);
+	}
+
+	/**
+	 * Checks if this cache is enabled.
+	 *
+	 * @return <code>true</code> if this cache is enabled, <code>false</code> otherwise.
+	 */
+	public boolean isEnabled() {
+		return cache.isEnabled();
+	}
+
+	/**
+	 * Returns a ticket to pass to {@link #put(Ticket, User)} after a successful authentication. Must be obtained
+	 * <b>before</b> querying the user database, so concurrent invalidations can be detected.
+	 *
+	 * @param users
+	 *            User database used for authentication.
+	 * @param userName
+	 *            Name of the user to authenticate.
+	 * @param password
+	 *            Password provided by the client.
+	 * @return A ticket representing the credentials.
+	 */
+	public Ticket createTicket(UserDatabase users, String userName, String password) {
+		return new Ticket(users, userName, hash(userName, password), invalidations.currentSequence());
+	}
+
+	/**
+	 * Returns the user for a previous successful authentication with the same credentials, if still cached.
+	 *
+	 * @param ticket
+	 *            Ticket representing the credentials to check.
+	 * @return The authenticated user, or <code>null</code> if the credentials have to be checked against the user database.
+	 */
+	public User get(Ticket ticket) {
+		if (!isEnabled()) {
+			return null;
+		}
+		CachedAuthentication cached = cache.get(ticket.key);
+		if (cached == null || cached.database != ticket.database || !cached.userName.equals(ticket.userName)) {
+			return null;
+		}
+		if (invalidations.isInvalidatedSince(cached.userName, cached.sequence)) {
+			cache.invalidate(ticket.key);
+			return null;
+		}
+		return cached.user;
+	}
+
+	/**
+	 * Stores a successful authentication.
+	 *
+	 * @param ticket
+	 *            Ticket obtained before the authentication.
+	 * @param user
+	 *            Authenticated user.
+	 */
+	public void put(Ticket ticket, User user) {
+		if (isEnabled() && !invalidations.isInvalidatedSince(ticket.userName, ticket.sequence)) {
+			cache.put(ticket.key, new CachedAuthentication(ticket, user));
+		}
+	}
+
+	/**
+	 * Invalidates all cached authentications of the given user. Must be called after the password or admin flag of the user
+	 * has been changed, or the user has been deleted.
+	 *
+	 * @param userName
+	 *            Name of the modified or deleted user.
+	 */
+	public void invalidate(String userName) {
+		if (isEnabled()) {
+			invalidations.invalidate(userName);
+		}
+	}
+
+	@Override
+	public String getCacheName() {
+		return "credentials";
+	}
+
+	@Override
+	public JSONObject getCacheStatistics() {
+		return cache.getStatistics();
+	}
+
+	private String hash(String userName, String password) {
+		Mac mac = macs.get();
+		mac.update(userName.getBytes(StandardCharsets.UTF_8));
+		// separator which cannot occur in the UTF-8 encoding of the user name
+		mac.update((byte) 0xff);
+		return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private Mac createMac() {
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(hashKey);
+			return mac;
+		}
+		catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new IllegalStateException("Could not initialize " + MAC_ALGORITHM, e);
+		}
+	}
+
+	/**
+	 * Represents a set of credentials to be checked. Does not contain the password.
+	 */
+	public static final class Ticket {
+
+		private final UserDatabase database;
+
+		private final String userName;
+
+		private final String key;
+
+		private final long sequence;
+
+		private Ticket(UserDatabase database, String userName, String key, long sequence) {
+			this.database = database;
+			this.userName = userName;
+			this.key = key;
+			this.sequence = sequence;
+		}
+	}
+
+	private static final class CachedAuthentication {
+
+		private final UserDatabase database;
+
+		private final String userName;
+
+		private final long sequence;
+
+		private final User user;
+
+		private CachedAuthentication(Ticket ticket, User user) {
+			this.database = ticket.database;
+			this.userName = ticket.userName;
+			this.sequence = ticket.sequence;
+			this.user = user;
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import java.io.Serializable;
+
+/**
+ * Authentication details of an HTTP Basic request, as required by the {@link RateLimiter}. Built for every request carrying
+ * HTTP Basic credentials, but only evaluated if the credentials have to be checked against the user database.
+ *
+ * @author falbrech
+ *
+ */
+final class RateLimitDetails implements Serializable {
+
+	private static final long serialVersionUID = -3398254735104427530L;
+
+	private final String endpointClass;
+
+	private final String clientAddress;
+
+	RateLimitDetails(String endpointClass, String clientAddress) {
+		this.endpointClass = endpointClass;
+		this.clientAddress = clientAddress;
+	}
+
+	/**
+	 * @return The endpoint class of the request, e.g. {@link RateLimiter#LOGIN}.
+	 */
+	String getEndpointClass() {
+		return endpointClass;
+	}
+
+	/**
+	 * @return The IP address of the client, as resolved by {@link RateLimiter#resolveClientAddress(javax.servlet.http.HttpServletRequest)}.
+	 */
+	String getClientAddress() {
+		return clientAddress;
+	}
+
+}
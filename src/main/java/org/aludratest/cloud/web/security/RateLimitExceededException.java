@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Thrown when an authentication attempt exceeds the limits of the {@link RateLimiter}. Answered with HTTP status 429 and a
+ * <code>Retry-After</code> header.
+ *
+ * @author falbrech
+ *
+ */
+public class RateLimitExceededException extends AuthenticationException {
+
+	private static final long serialVersionUID = 6090347913185622764L;
+
+	private final long retryAfterSeconds;
+
+	public RateLimitExceededException(String msg, long retryAfterSeconds) {
+		super(msg);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * Returns the number of seconds after which the client may retry.
+	 *
+	 * @return The number of seconds after which the client may retry, at least 1.
+	 */
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.aludratest.cloud.web.util.TokenBuckets;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Limits the rate of authentication attempts against the user database, per user name and per client IP address. Only
+ * attempts which actually query the user database are counted; authentications served from the {@link CredentialCache}
+ * and JWT authentications are not limited. Limits are configured per endpoint class (<code>login</code> for the login
+ * endpoint, <code>api</code> for all other API calls using HTTP Basic Authentication) via the properties
+ * <code>acm.rateLimit.&lt;class&gt;.userRequestsPerSecond</code>, <code>acm.rateLimit.&lt;class&gt;.userBurst</code>,
+ * <code>acm.rateLimit.&lt;class&gt;.ipRequestsPerSecond</code> and <code>acm.rateLimit.&lt;class&gt;.ipBurst</code>. A rate
+ * of 0 disables the respective limit. Only the <code>login</code> class is limited by default. <br>
+ * Behind a reverse proxy or load balancer, the addresses of the proxies must be listed (comma-separated) in the
+ * <code>acm.rateLimit.trustedProxies</code> property. For requests from these addresses, the client address is taken from
+ * the header configured via <code>acm.rateLimit.forwardedForHeader</code> (default <code>X-Forwarded-For</code>). Otherwise,
+ * all clients behind the proxy would share one bucket. <br>
+ * Up to <code>acm.rateLimit.maxUsers</code> user names are tracked exactly; IP addresses (and further user names) are tracked
+ * in a fixed-size sketch with <code>acm.rateLimit.sketchWidth</code> cells per row, so memory usage is bounded.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class RateLimiter {
+
+	private static final Log LOG = LogFactory.getLog(RateLimiter.class);
+
+	/**
+	 * Endpoint class of the login endpoint.
+	 */
+	public static final String LOGIN = "login";
+
+	/**
+	 * Endpoint class of all other API endpoints.
+	 */
+	public static final String API = "api";
+
+	private static final String PROPERTY_PREFIX = "acm.rateLimit.";
+
+	private static final int DEFAULT_MAX_USERS = 10000;
+
+	private static final int DEFAULT_SKETCH_WIDTH = 4096;
+
+	private static final String DEFAULT_FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+	private final Map<String, Limits> limits = new LinkedHashMap<>();
+
+	private final Set<String> trustedProxies;
+
+	private final String forwardedForHeader;
+
+	@Autowired
+	public RateLimiter(Environment environment) {
+		int maxUsers = environment.getProperty(PROPERTY_PREFIX + "maxUsers", Integer.class, Integer.valueOf(DEFAULT_MAX_USERS))
+				.intValue();
+		int sketchWidth = environment
+				.getProperty(PROPERTY_PREFIX + "sketchWidth", Integer.class, Integer.valueOf(DEFAULT_SKETCH_WIDTH)).intValue();
+
+		// login is expected once per client session; API clients (e.g. CI fleets sharing a service account) may legitimately
+		// authenticate at high rates, so API limits are opt-in
+		limits.put(LOGIN, readLimits(environment, LOGIN, 1, 10, 5, 50, maxUsers, sketchWidth));
+		limits.put(API, readLimits(environment, API, 0, 0, 0, 0, maxUsers, sketchWidth));
+
+		trustedProxies = new HashSet<>(StringUtils.commaDelimitedListToSet(
+				StringUtils.trimAllWhitespace(environment.getProperty(PROPERTY_PREFIX + "trustedProxies", ""))));
+		trustedProxies.remove("");
+		forwardedForHeader = environment.getProperty(PROPERTY_PREFIX + "forwardedForHeader", DEFAULT_FORWARDED_FOR_HEADER);
+	}
+
+	/**
+	 * Creates a rate limiter with the given buckets. Intended for unit tests.
+	 *
+	 * @param endpointClass
+	 *            Endpoint class to configure.
+	 * @param userBuckets
+	 *            Token buckets for user names, or <code>null</code> to not limit per user.
+	 * @param ipBuckets
+	 *            Token buckets for IP addresses, or <code>null</code> to not limit per IP address.
+	 */
+	public RateLimiter(String endpointClass, TokenBuckets userBuckets, TokenBuckets ipBuckets) {
+		limits.put(endpointClass, new Limits(userBuckets, ipBuckets));
+		trustedProxies = Collections.emptySet();
+		forwardedForHeader = DEFAULT_FORWARDED_FOR_HEADER;
+	}
+
+	private static Limits readLimits(Environment environment, String endpointClass, double defaultUserRate,
+			int defaultUserBurst, double defaultIpRate, int defaultIpBurst, int maxUsers, int sketchWidth) {
+		String prefix = PROPERTY_PREFIX + endpointClass + ".";
+		double userRate = environment.getProperty(prefix + "userRequestsPerSecond", Double.class, Double.valueOf(defaultUserRate))
+				.doubleValue();
+		int userBurst = environment.getProperty(prefix + "userBurst", Integer.class, Integer.valueOf(defaultUserBurst))
+				.intValue();
+		double ipRate = environment.getProperty(prefix + "ipRequestsPerSecond", Double.class, Double.valueOf(defaultIpRate))
+				.doubleValue();
+		int ipBurst = environment.getProperty(prefix + "ipBurst", Integer.class, Integer.valueOf(defaultIpBurst)).intValue();
+
+		TokenBuckets userBuckets = userRate > 0 ? new TokenBuckets(userRate, userBurst, maxUsers, sketchWidth) : null;
+		TokenBuckets ipBuckets = ipRate > 0 ? new TokenBuckets(ipRate, ipBurst, 0, sketchWidth) : null;
+		LOG.debug("Rate limits for " + endpointClass + ": " + userRate + "/s per user (burst " + userBurst + "), " + ipRate
+				+ "/s per IP (burst " + ipBurst + ")");
+		return new Limits(userBuckets, ipBuckets);
+	}
+
+	/**
+	 * Determines the IP address of the client of the given request. If the request has been received from a trusted proxy,
+	 * the forwarded-for header is evaluated from right to left, and the first address not belonging to a trusted proxy is
+	 * returned; addresses left of it could have been forged by the client.
+	 *
+	 * @param request
+	 *            Request to determine the client address of.
+	 * @return The IP address of the client.
+	 */
+	public String resolveClientAddress(HttpServletRequest request) {
+		String remoteAddr = request.getRemoteAddr();
+		if (!trustedProxies.contains(remoteAddr)) {
+			return remoteAddr;
+		}
+		return resolveClientAddress(remoteAddr, request.getHeader(forwardedForHeader), trustedProxies);
+	}
+
+	static String resolveClientAddress(String remoteAddr, String forwardedFor, Set<String> trustedProxies) {
+		if (forwardedFor == null || !trustedProxies.contains(remoteAddr)) {
+			return remoteAddr;
+		}
+		String address = remoteAddr;
+		String[] hops = forwardedFor.split(",");
+		for (int i = hops.length - 1; i >= 0; i--) {
+			String hop = hops[i].trim();
+			if (hop.isEmpty()) {
+				break;
+			}
+			address = hop;
+			if (!trustedProxies.contains(hop)) {
+				break;
+			}
+		}
+		return address;
+	}
+
+	/**
+	 * Takes a token for the given user and IP address from the buckets of the given endpoint class. The IP address bucket is
+	 * checked first; if it is empty, no token is taken from the user bucket.
+	 *
+	 * @param endpointClass
+	 *            Endpoint class of the request, e.g. {@link #LOGIN}.
+	 * @param userName
+	 *            Name of the user trying to authenticate, or <code>null</code> if unknown.
+	 * @param ipAddress
+	 *            IP address of the client, or <code>null</code> if unknown.
+	 * @return 0 if the request is allowed, otherwise the number of nanoseconds after which the client may retry.
+	 */
+	public long tryAcquire(String endpointClass, String userName, String ipAddress) {
+		Limits l = limits.get(endpointClass);
+		if (l == null) {
+			return 0;
+		}
+		long waitNanos = ipAddress == null || l.ipBuckets == null ? 0 : l.ipBuckets.tryAcquire(ipAddress);
+		if (waitNanos == 0 && userName != null && l.userBuckets != null) {
+			waitNanos = l.userBuckets.tryAcquire(userName);
+		}
+		if (waitNanos > 0) {
+			l.rejected.increment();
+		}
+		else {
+			l.allowed.increment();
+		}
+		return waitNanos;
+	}
+
+	/**
+	 * Returns statistics about the rate limits, per endpoint class.
+	 *
+	 * @return A JSON object containing statistics about the rate limits.
+	 */
+	public JSONObject getStatistics() {
+		JSONObject result = new JSONObject();
+		limits.forEach((endpointClass, l) -> {
+			JSONObject stats = new JSONObject();
+			stats.put("allowedRequests", l.allowed.sum());
+			stats.put("rejectedRequests", l.rejected.sum());
+			stats.put("trackedUsers", l.userBuckets == null ? 0 : l.userBuckets.getExactKeyCount());
+			result.put(endpointClass, stats);
+		});
+		return result;
+	}
+
+	private static final class Limits {
+
+		private final TokenBuckets userBuckets;
+
+		private final TokenBuckets ipBuckets;
+
+		private final LongAdder allowed = new LongAdder();
+
+		private final LongAdder rejected = new LongAdder();
+
+		private Limits(TokenBuckets userBuckets, TokenBuckets ipBuckets) {
+			this.userBuckets = userBuckets;
+			this.ipBuckets = ipBuckets;
+		}
+	}
+
+}
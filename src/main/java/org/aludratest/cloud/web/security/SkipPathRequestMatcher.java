@@ -15,31 +15,30 @@
  */
 package org.aludratest.cloud.web.security;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 
-import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
-import org.springframework.security.web.util.matcher.OrRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
+/**
+ * Matches all requests matching the processing path pattern, except those matching one of the paths to skip. Patterns
+ * are Ant-style patterns, and are compiled once (see {@link CompiledPathMatcher}); the request path is determined only
+ * once per request.
+ */
 public class SkipPathRequestMatcher implements RequestMatcher {
-	private OrRequestMatcher matchers;
-	private RequestMatcher processingMatcher;
+	private CompiledPathMatcher skipMatcher;
+	private CompiledPathMatcher processingMatcher;
 
 	public SkipPathRequestMatcher(List<String> pathsToSkip, String processingPath) {
-		List<RequestMatcher> m = pathsToSkip.stream().map(path -> new AntPathRequestMatcher(path))
-				.collect(Collectors.toList());
-		matchers = new OrRequestMatcher(m);
-		processingMatcher = new AntPathRequestMatcher(processingPath);
+		skipMatcher = new CompiledPathMatcher(pathsToSkip);
+		processingMatcher = new CompiledPathMatcher(Collections.singletonList(processingPath));
 	}
 
 	@Override
 	public boolean matches(HttpServletRequest request) {
-		if (matchers.matches(request)) {
-			return false;
-		}
-		return processingMatcher.matches(request);
+		String path = CompiledPathMatcher.getRequestPath(request);
+		return !skipMatcher.matches(path) && processingMatcher.matches(path);
 	}
 }
\ No newline at end of file
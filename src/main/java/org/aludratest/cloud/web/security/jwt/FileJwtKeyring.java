@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Key source reading the JWT signing keys from a properties file, which can be shared by multiple ACM instances (e.g. via a
+ * mounted secret). The file has the following format:
+ *
+ * <pre>
+ * current=2018-07
+ * key.2018-07=&lt;Base64 encoded key, at least 32 bytes&gt;
+ * key.2018-01=&lt;Base64 encoded key, at least 32 bytes&gt;
+ * </pre>
+ *
+ * New tokens are signed with the <code>current</code> key; tokens signed with any listed key are accepted. To rotate keys,
+ * add a new key and make it the current key, and remove the previous key after the maximum token lifetime. <br>
+ * The file is checked for modifications at most once per reload interval. If a modified file is invalid, the previously
+ * loaded keys stay active.
+ *
+ * @author falbrech
+ *
+ */
+final class FileJwtKeyring implements JwtKeySource {
+
+	private static final Log LOG = LogFactory.getLog(FileJwtKeyring.class);
+
+	private static final String CURRENT_KEY_PROPERTY = "current";
+
+	private static final String KEY_PROPERTY_PREFIX = "key.";
+
+	private static final int MIN_KEY_LENGTH = 32;
+
+	private final Path file;
+
+	private final long reloadIntervalMs;
+
+	private volatile Keyring keyring;
+
+	private volatile long nextCheck;
+
+	/**
+	 * Creates a new keyring and loads the given file.
+	 *
+	 * @param file
+	 *            Keyring file to read.
+	 * @param reloadIntervalMs
+	 *            Minimum time between two checks for modifications of the file, in milliseconds.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 * @throws IllegalArgumentException
+	 *             If the file is invalid.
+	 */
+	FileJwtKeyring(Path file, long reloadIntervalMs) throws IOException, IllegalArgumentException {
+		this.file = file;
+		this.reloadIntervalMs = reloadIntervalMs;
+		keyring = load(file);
+		nextCheck = System.currentTimeMillis() + reloadIntervalMs;
+		LOG.info("Using JWT keyring " + file + " with " + keyring.keys.size() + " keys, current key "
+				+ keyring.currentKey.getId());
+	}
+
+	@Override
+	public JwtSigningKey getCurrentKey() {
+		return getKeyring().currentKey;
+	}
+
+	@Override
+	public JwtSigningKey getKey(String keyId) {
+		return keyId == null ? null : getKeyring().keys.get(keyId);
+	}
+
+	private Keyring getKeyring() {
+		if (System.currentTimeMillis() >= nextCheck) {
+			reloadIfModified();
+		}
+		return keyring;
+	}
+
+	private synchronized void reloadIfModified() {
+		long now = System.currentTimeMillis();
+		if (now < nextCheck) {
+			// another thread has just checked
+			return;
+		}
+		nextCheck = now + reloadIntervalMs;
+
+		try {
+			if (Files.getLastModifiedTime(file).toMillis() == keyring.lastModified) {
+				return;
+			}
+			Keyring newKeyring = load(file);
+			keyring = newKeyring;
+			LOG.info("Reloaded JWT keyring " + file + " with " + newKeyring.keys.size() + " keys, current key "
+					+ newKeyring.currentKey.getId());
+		}
+		catch (IOException | IllegalArgumentException e) {
+			LOG.error("Could not reload JWT keyring " + file + ", keeping previous keys", e);
+		}
+	}
+
+	private static Keyring load(Path file) throws IOException, IllegalArgumentException {
+		long lastModified = Files.getLastModifiedTime(file).toMillis();
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		}
+
+		Map<String, JwtSigningKey> keys = new HashMap<>();
+		for (String name : props.stringPropertyNames()) {
+			if (name.startsWith(KEY_PROPERTY_PREFIX) && name.length() > KEY_PROPERTY_PREFIX.length()) {
+				String keyId = name.substring(KEY_PROPERTY_PREFIX.length());
+				byte[] keyBytes;
+				try {
+					keyBytes = Base64.getDecoder().decode(props.getProperty(name).trim());
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Key " + keyId + " is not Base64 encoded", e);
+				}
+				if (keyBytes.length < MIN_KEY_LENGTH) {
+					throw new IllegalArgumentException("Key " + keyId + " is shorter than " + MIN_KEY_LENGTH + " bytes");
+				}
+				keys.put(keyId, new JwtSigningKey(keyId, keyBytes));
+			}
+		}
+
+		String currentKeyId = props.getProperty(CURRENT_KEY_PROPERTY);
+		JwtSigningKey currentKey = currentKeyId == null ? null : keys.get(currentKeyId.trim());
+		if (currentKey == null) {
+			throw new IllegalArgumentException("No valid current key defined in JWT keyring " + file);
+		}
+
+		return new Keyring(currentKey, Collections.unmodifiableMap(keys), lastModified);
+	}
+
+	private static final class Keyring {
+
+		private final JwtSigningKey currentKey;
+
+		private final Map<String, JwtSigningKey> keys;
+
+		private final long lastModified;
+
+		private Keyring(JwtSigningKey currentKey, Map<String, JwtSigningKey> keys, long lastModified) {
+			this.currentKey = currentKey;
+			this.keys = keys;
+			this.lastModified = lastModified;
+		}
+	}
+
+}
@@ -0,0 +1,624 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+
+/**
+ * Verifier for the fixed token format produced by {@link JwtTokenGenerator}: a compact JWS with the header
+ * <code>{"alg":"HS512"}</code> (optionally with a <code>kid</code>), and a body containing the <code>username</code>, <code>authorization</code>,
+ * <code>exp</code>, <code>jti</code> and <code>iat</code> claims. Signature check and claim extraction work on per-thread buffers and per-thread {@link Mac}
+ * instances (one per signing key), and only the needed claims are extracted, without building a generic claims map. <br>
+ * Tokens not matching this format exactly (different header, escaped strings, unexpected claim types) are not handled by
+ * this class; {@link #verify(String)} returns <code>null</code> for them, and the caller has to fall back to a full JWT
+ * parser. <br>
+ * Headers are compared as encoded strings against the headers of previously verified tokens, so usually only a few
+ * distinct headers (one per signing key) are ever decoded.
+ *
+ * @author falbrech
+ *
+ */
+final class Hs512TokenVerifier {
+
+	private static final String MAC_ALGORITHM = "HmacSHA512";
+
+	private static final int SIGNATURE_LENGTH = 64;
+
+	/** Base64url encoding of <code>{"alg":"HS512"}</code>, the header written by jjwt for tokens without key ID. */
+	private static final String DEFAULT_HEADER = "eyJhbGciOiJIUzUxMiJ9";
+
+	private static final int MAX_KNOWN_HEADERS = 32;
+
+	/** Keys in use at the same time are the current key plus a few verification-only keys during rotation. */
+	private static final int MAX_MACS_PER_THREAD = 8;
+
+	private static final byte[] CLAIM_USERNAME = ascii(JwtTokenGenerator.CLAIM_KEY_USERNAME);
+
+	private static final byte[] CLAIM_AUTHORIZATION = ascii(JwtTokenGenerator.CLAIM_KEY_AUTHORIZATION);
+
+	private static final byte[] CLAIM_EXPIRATION = ascii("exp");
+
+	private static final byte[] CLAIM_ID = ascii("jti");
+
+	private static final byte[] CLAIM_ISSUED_AT = ascii("iat");
+
+	private static final byte[] BASE64_URL_VALUES = new byte[128];
+
+	static {
+		Arrays.fill(BASE64_URL_VALUES, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE64_URL_VALUES[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+
+	private final JwtTokenKey tokenKey;
+
+	private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+	/** Encoded headers of successfully verified tokens. Copy-on-write. */
+	private volatile KnownHeader[] knownHeaders = { new KnownHeader(DEFAULT_HEADER, null) };
+
+	Hs512TokenVerifier(JwtTokenKey tokenKey) {
+		this.tokenKey = tokenKey;
+	}
+
+	/**
+	 * Verifies the signature of the given token and extracts its claims. The expiration date is <b>not</b> checked.
+	 *
+	 * @param tokenString
+	 *            Token string to verify.
+	 * @return The claims of the token, or <code>null</code> if the token does not match the fixed token format and has to be
+	 *         verified by a full JWT parser.
+	 * @throws JwtException
+	 *             If the token matches the fixed format, but its signing key is unknown or its signature is invalid.
+	 */
+	VerifiedToken verify(String tokenString) throws JwtException {
+		int headerEnd = tokenString.indexOf('.');
+		if (headerEnd <= 0) {
+			return null;
+		}
+		KnownHeader header = findKnownHeader(tokenString, headerEnd);
+		boolean knownHeader = header != null;
+		if (!knownHeader) {
+			header = parseHeader(tokenString.substring(0, headerEnd));
+			if (header == null) {
+				return null;
+			}
+		}
+
+		int payloadEnd = tokenString.indexOf('.', headerEnd + 1);
+		if (payloadEnd < 0 || tokenString.indexOf('.', payloadEnd + 1) >= 0) {
+			return null;
+		}
+
+		Buffers buf = buffers.get();
+		int length = tokenString.length();
+		byte[] token = buf.token(length);
+		for (int i = 0; i < length; i++) {
+			char c = tokenString.charAt(i);
+			if (c >= 128) {
+				return null;
+			}
+			token[i] = (byte) c;
+		}
+
+		// signature check first; nothing of the payload is interpreted before
+		int sigLength = decodeBase64Url(token, payloadEnd + 1, length, buf.signature);
+		if (sigLength != SIGNATURE_LENGTH) {
+			return null;
+		}
+		JwtSigningKey key = tokenKey.getKey(header.keyId);
+		if (key == null) {
+			throw new JwtException("JWT has been signed with an unknown or retired key");
+		}
+		Mac mac = buf.mac(key);
+		mac.update(token, 0, payloadEnd);
+		try {
+			mac.doFinal(buf.expectedSignature, 0);
+		}
+		catch (ShortBufferException e) {
+			throw new IllegalStateException(e);
+		}
+		if (!constantTimeEquals(buf.expectedSignature, buf.signature, SIGNATURE_LENGTH)) {
+			throw new JwtException("JWT signature does not match locally computed signature");
+		}
+		if (!knownHeader) {
+			// only remember headers of valid tokens, so the list cannot be flooded
+			rememberHeader(header);
+		}
+
+		byte[] payload = buf.payload(payloadEnd - headerEnd);
+		int payloadLength = decodeBase64Url(token, headerEnd + 1, payloadEnd, payload);
+		if (payloadLength < 0) {
+			return null;
+		}
+		return new ClaimsScanner(payload, payloadLength, header.keyId, key.getKeyBytes()).scan();
+	}
+
+	private KnownHeader findKnownHeader(String tokenString, int headerEnd) {
+		for (KnownHeader header : knownHeaders) {
+			if (header.encoded.length() == headerEnd && tokenString.startsWith(header.encoded)) {
+				return header;
+			}
+		}
+		return null;
+	}
+
+	private synchronized void rememberHeader(KnownHeader header) {
+		KnownHeader[] headers = knownHeaders;
+		if (headers.length < MAX_KNOWN_HEADERS && findKnownHeader(header.encoded, header.encoded.length()) == null) {
+			KnownHeader[] newHeaders = Arrays.copyOf(headers, headers.length + 1);
+			newHeaders[headers.length] = header;
+			knownHeaders = newHeaders;
+		}
+	}
+
+	/**
+	 * Parses a header not seen before. Only headers with HS512 algorithm, an optional key ID and an optional type are
+	 * supported.
+	 */
+	private static KnownHeader parseHeader(String encoded) {
+		JSONObject header;
+		try {
+			header = new JSONObject(new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8));
+		}
+		catch (IllegalArgumentException | JSONException e) {
+			return null;
+		}
+
+		if (!JwtTokenGenerator.SIGNATURE_ALGORITHM.getValue().equals(header.opt(JwsHeader.ALGORITHM))) {
+			return null;
+		}
+		Object keyId = header.opt(JwsHeader.KEY_ID);
+		if (keyId != null && !(keyId instanceof String)) {
+			return null;
+		}
+		for (String name : header.keySet()) {
+			if (!JwsHeader.ALGORITHM.equals(name) && !JwsHeader.KEY_ID.equals(name) && !JwsHeader.TYPE.equals(name)) {
+				return null;
+			}
+		}
+		return new KnownHeader(encoded, (String) keyId);
+	}
+
+	private static boolean constantTimeEquals(byte[] a, byte[] b, int length) {
+		int result = 0;
+		for (int i = 0; i < length; i++) {
+			result |= a[i] ^ b[i];
+		}
+		return result == 0;
+	}
+
+	/**
+	 * Decodes the unpadded Base64url encoded range of the source array into the target array.
+	 *
+	 * @return The number of decoded bytes, or -1 if the range is not valid Base64url or the target array is too small.
+	 */
+	private static int decodeBase64Url(byte[] src, int start, int end, byte[] dst) {
+		int remainder = (end - start) % 4;
+		if (remainder == 1) {
+			return -1;
+		}
+		int decodedLength = (end - start) / 4 * 3 + (remainder == 0 ? 0 : remainder - 1);
+		if (decodedLength > dst.length) {
+			return -1;
+		}
+
+		int bits = 0;
+		int bitCount = 0;
+		int pos = 0;
+		for (int i = start; i < end; i++) {
+			int value = src[i] < 0 ? -1 : BASE64_URL_VALUES[src[i]];
+			if (value < 0) {
+				return -1;
+			}
+			bits = (bits << 6) | value;
+			bitCount += 6;
+			if (bitCount >= 8) {
+				bitCount -= 8;
+				dst[pos++] = (byte) (bits >> bitCount);
+			}
+		}
+		return pos;
+	}
+
+	private static byte[] ascii(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * The claims of a verified token which are relevant for ACM.
+	 */
+	static final class VerifiedToken {
+
+		private final String userName;
+
+		private final List<String> authorization;
+
+		private final long expirationMillis;
+
+		private final String tokenId;
+
+		private final long issuedAtMillis;
+
+		private final String keyId;
+
+		private final byte[] keyBytes;
+
+		private VerifiedToken(String userName, List<String> authorization, long expirationMillis, String tokenId,
+				long issuedAtMillis, String keyId, byte[] keyBytes) {
+			this.userName = userName;
+			this.authorization = authorization;
+			this.expirationMillis = expirationMillis;
+			this.tokenId = tokenId;
+			this.issuedAtMillis = issuedAtMillis;
+			this.keyId = keyId;
+			this.keyBytes = keyBytes;
+		}
+
+		String getUserName() {
+			return userName;
+		}
+
+		/**
+		 * @return The values of the authorization claim, or <code>null</code> if the token does not contain this claim.
+		 */
+		List<String> getAuthorization() {
+			return authorization;
+		}
+
+		/**
+		 * @return The expiration date of the token, in milliseconds since the epoch, or -1 if the token does not contain an
+		 *         expiration date.
+		 */
+		long getExpirationMillis() {
+			return expirationMillis;
+		}
+
+		/**
+		 * @return The ID of the token, or <code>null</code> if the token does not contain an ID.
+		 */
+		String getTokenId() {
+			return tokenId;
+		}
+
+		/**
+		 * @return The issue date of the token, in milliseconds since the epoch, or -1 if the token does not contain an issue
+		 *         date.
+		 */
+		long getIssuedAtMillis() {
+			return issuedAtMillis;
+		}
+
+		/**
+		 * @return The ID of the key the token has been signed with, or <code>null</code> if the token has no key ID.
+		 */
+		String getKeyId() {
+			return keyId;
+		}
+
+		/**
+		 * @return The key material the signature of the token has been verified with. Must not be modified.
+		 */
+		byte[] getKeyBytes() {
+			return keyBytes;
+		}
+	}
+
+	/**
+	 * Minimal scanner for the flat JSON object in the token body. Extracts the three claims ACM uses and skips all others.
+	 * Returns <code>null</code> as soon as it encounters anything it does not handle (e.g. escape sequences), so the caller
+	 * falls back to the full parser.
+	 */
+	private static final class ClaimsScanner {
+
+		private final byte[] json;
+
+		private final int length;
+
+		private final String keyId;
+
+		private final byte[] keyBytes;
+
+		private int pos;
+
+		private ClaimsScanner(byte[] json, int length, String keyId, byte[] keyBytes) {
+			this.json = json;
+			this.length = length;
+			this.keyId = keyId;
+			this.keyBytes = keyBytes;
+		}
+
+		VerifiedToken scan() {
+			String userName = null;
+			List<String> authorization = null;
+			long expiration = -1;
+			String tokenId = null;
+			long issuedAt = -1;
+
+			if (!consume('{')) {
+				return null;
+			}
+			if (consume('}')) {
+				return new VerifiedToken(null, null, -1, null, -1, keyId, keyBytes);
+			}
+			do {
+				int keyStart = pos + 1;
+				int keyEnd = skipString();
+				if (keyEnd < 0 || !consume(':')) {
+					return null;
+				}
+				skipWhitespace();
+				if (keyEquals(keyStart, keyEnd, CLAIM_USERNAME)) {
+					userName = readString();
+					if (userName == null) {
+						return null;
+					}
+				}
+				else if (keyEquals(keyStart, keyEnd, CLAIM_AUTHORIZATION)) {
+					authorization = readStringArray();
+					if (authorization == null) {
+						return null;
+					}
+				}
+				else if (keyEquals(keyStart, keyEnd, CLAIM_EXPIRATION)) {
+					expiration = readSeconds();
+					if (expiration < 0) {
+						return null;
+					}
+					expiration *= 1000;
+				}
+				else if (keyEquals(keyStart, keyEnd, CLAIM_ID)) {
+					tokenId = readString();
+					if (tokenId == null) {
+						return null;
+					}
+				}
+				else if (keyEquals(keyStart, keyEnd, CLAIM_ISSUED_AT)) {
+					issuedAt = readSeconds();
+					if (issuedAt < 0) {
+						return null;
+					}
+					issuedAt *= 1000;
+				}
+				else if (!skipValue()) {
+					return null;
+				}
+			}
+			while (consume(','));
+
+			if (!consume('}')) {
+				return null;
+			}
+			skipWhitespace();
+			return pos == length
+					? new VerifiedToken(userName, authorization, expiration, tokenId, issuedAt, keyId, keyBytes)
+					: null;
+		}
+
+		private boolean keyEquals(int start, int end, byte[] key) {
+			if (end - start != key.length) {
+				return false;
+			}
+			for (int i = 0; i < key.length; i++) {
+				if (json[start + i] != key[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private String readString() {
+			int start = pos + 1;
+			int end = skipString();
+			return end < 0 ? null : new String(json, start, end - start, StandardCharsets.UTF_8);
+		}
+
+		private List<String> readStringArray() {
+			if (!consume('[')) {
+				return null;
+			}
+			List<String> result = new ArrayList<>(2);
+			if (consume(']')) {
+				return result;
+			}
+			do {
+				skipWhitespace();
+				String value = readString();
+				if (value == null) {
+					return null;
+				}
+				result.add(value);
+			}
+			while (consume(','));
+			return consume(']') ? result : null;
+		}
+
+		private long readSeconds() {
+			long value = 0;
+			int start = pos;
+			while (pos < length && json[pos] >= '0' && json[pos] <= '9' && pos - start < 18) {
+				value = value * 10 + (json[pos++] - '0');
+			}
+			if (pos == start || (pos < length && (json[pos] == '.' || json[pos] == 'e' || json[pos] == 'E'
+					|| (json[pos] >= '0' && json[pos] <= '9')))) {
+				return -1;
+			}
+			return value;
+		}
+
+		/**
+		 * Skips a string without escape sequences, starting at the current position.
+		 *
+		 * @return The position of the closing quote, or -1 if there is no such string at the current position.
+		 */
+		private int skipString() {
+			skipWhitespace();
+			if (pos >= length || json[pos] != '"') {
+				return -1;
+			}
+			for (int i = pos + 1; i < length; i++) {
+				if (json[i] == '\\') {
+					return -1;
+				}
+				if (json[i] == '"') {
+					pos = i + 1;
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Skips a value of a claim not used by ACM. Nested objects and arrays are skipped by bracket counting.
+		 */
+		private boolean skipValue() {
+			int depth = 0;
+			while (pos < length) {
+				byte b = json[pos];
+				if (b == '"') {
+					if (skipString() < 0) {
+						return false;
+					}
+					continue;
+				}
+				if (b == '{' || b == '[') {
+					depth++;
+				}
+				else if (b == '}' || b == ']') {
+					if (depth == 0) {
+						return true;
+					}
+					depth--;
+				}
+				else if (b == ',' && depth == 0) {
+					return true;
+				}
+				pos++;
+			}
+			return false;
+		}
+
+		private boolean consume(char c) {
+			skipWhitespace();
+			if (pos < length && json[pos] == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (pos < length && (json[pos] == ' ' || json[pos] == '\t' || json[pos] == '\n' || json[pos] == '\r')) {
+				pos++;
+			}
+		}
+	}
+
+	private static final class KnownHeader {
+
+		private final String encoded;
+
+		private final String keyId;
+
+		private KnownHeader(String encoded, String keyId) {
+			this.encoded = encoded;
+			this.keyId = keyId;
+		}
+	}
+
+	private static final class Buffers {
+
+		private byte[] token = new byte[512];
+
+		private byte[] payload = new byte[384];
+
+		private final byte[] signature = new byte[SIGNATURE_LENGTH + 2];
+
+		private final byte[] expectedSignature = new byte[SIGNATURE_LENGTH];
+
+		/** Initialized Mac instances per key ID, so tokens signed with different keys do not re-create them. */
+		private final Map<String, KeyedMac> macs = new HashMap<>();
+
+		byte[] token(int length) {
+			if (token.length < length) {
+				token = new byte[length];
+			}
+			return token;
+		}
+
+		byte[] payload(int encodedLength) {
+			int length = encodedLength / 4 * 3 + 3;
+			if (payload.length < length) {
+				payload = new byte[length];
+			}
+			return payload;
+		}
+
+		Mac mac(JwtSigningKey key) {
+			KeyedMac entry = macs.get(key.getId());
+			// the key array is only replaced, never modified, so an identity check is sufficient
+			if (entry == null || entry.keyBytes != key.getKeyBytes()) {
+				if (entry == null && macs.size() >= MAX_MACS_PER_THREAD) {
+					// retired keys are not tracked individually; just start over
+					macs.clear();
+				}
+				try {
+					Mac mac = Mac.getInstance(MAC_ALGORITHM);
+					mac.init(new SecretKeySpec(key.getKeyBytes(), MAC_ALGORITHM));
+					entry = new KeyedMac(key.getKeyBytes(), mac);
+				}
+				catch (NoSuchAlgorithmException | InvalidKeyException e) {
+					throw new IllegalStateException("Could not initialize " + MAC_ALGORITHM, e);
+				}
+				macs.put(key.getId(), entry);
+			}
+			return entry.mac;
+		}
+	}
+
+	private static final class KeyedMac {
+
+		private final byte[] keyBytes;
+
+		private final Mac mac;
+
+		private KeyedMac(byte[] keyBytes, Mac mac) {
+			this.keyBytes = keyBytes;
+			this.mac = mac;
+		}
+	}
+
+}
@@ -32,7 +32,9 @@ import org.springframework.security.web.util.matcher.RequestMatcher;
 
 public class JwtAuthenticationFilter extends AbstractAuthenticationProcessingFilter {
 
-	private static final String HTTP_AUTHORIZATION_HEADER = "Authorization";
+	private static final String BEARER_PREFIX = "Bearer ";
+
+	private static final String TOKEN_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".token";
 
 	private JwtTokenValidator tokenValidator;
 
@@ -43,14 +45,16 @@ public class JwtAuthenticationFilter extends AbstractAuthenticationProcessingFil
 
 	@Override
 	protected boolean requiresAuthentication(HttpServletRequest request, HttpServletResponse response) {
-		if (!super.requiresAuthentication(request, response)) {
+		// return false if no Authorization: Bearer header present, as then, the
+		// httpBasic() filter will do its work. Checking the header first is cheaper than matching the path.
+		String tokenString = getBearerToken(request);
+		if (tokenString == null || !super.requiresAuthentication(request, response)) {
 			return false;
 		}
 
-		// also, return false if no Authorization: Bearer header present, as then, the
-		// httpBasic() filter will do its work
-		String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
-		return authHeader != null && authHeader.startsWith("Bearer ");
+		// remember the token, so attemptAuthentication() does not have to extract it again
+		request.setAttribute(TOKEN_ATTRIBUTE, tokenString);
+		return true;
 	}
 
 	@Override
@@ -59,8 +63,10 @@ public class JwtAuthenticationFilter extends AbstractAuthenticationProcessingFil
 		String tokenString = extractAuthToken(request);
 		JwtAuthenticationToken token = tokenValidator.validateToken(tokenString);
 
-		logger.debug("User " + token.getUser().getName() + " authenticated for "
-				+ request.getRequestURI() + " (" + request.getMethod() + ")");
+		if (logger.isDebugEnabled()) {
+			logger.debug("User " + token.getUser().getName() + " authenticated for " + request.getRequestURI() + " ("
+					+ request.getMethod() + ")");
+		}
 
 		return getAuthenticationManager().authenticate(token);
 	}
@@ -80,11 +86,23 @@ public class JwtAuthenticationFilter extends AbstractAuthenticationProcessingFil
 	}
 
 	private String extractAuthToken(HttpServletRequest request) throws AuthenticationException {
-		String authorizationHeader = request.getHeader(HTTP_AUTHORIZATION_HEADER);
-		final String headerPrefix = "Bearer ";
-		if (authorizationHeader == null || !authorizationHeader.startsWith(headerPrefix)) {
+		Object extracted = request.getAttribute(TOKEN_ATTRIBUTE);
+		if (extracted instanceof String) {
+			return (String) extracted;
+		}
+
+		String tokenString = getBearerToken(request);
+		if (tokenString == null) {
 			throw new InsufficientAuthenticationException("No JWT token found in request headers");
 		}
-		return authorizationHeader.substring(headerPrefix.length());
+		return tokenString;
+	}
+
+	private static String getBearerToken(HttpServletRequest request) {
+		String authorizationHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+		if (authorizationHeader == null || !authorizationHeader.startsWith(BEARER_PREFIX)) {
+			return null;
+		}
+		return authorizationHeader.substring(BEARER_PREFIX.length());
 	}
-}
\ No newline at end of file
+}
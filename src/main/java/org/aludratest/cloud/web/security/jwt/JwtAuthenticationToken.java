@@ -30,6 +30,15 @@ public class JwtAuthenticationToken extends UsernamePasswordAuthenticationToken
 
 	private Date expirationDate;
 
+	private String tokenId;
+
+	private Date issuedAt;
+
+	private String keyId;
+
+	// only used to detect keys replaced under the same ID; never serialized
+	private transient byte[] signingKeyBytes;
+
 	public JwtAuthenticationToken(User user, String token, Collection<? extends GrantedAuthority> authorities) {
 		super(user, null, authorities);
 		this.token = token;
@@ -47,6 +56,38 @@ public class JwtAuthenticationToken extends UsernamePasswordAuthenticationToken
 		this.expirationDate = expirationDate;
 	}
 
+	public String getTokenId() {
+		return tokenId;
+	}
+
+	public void setTokenId(String tokenId) {
+		this.tokenId = tokenId;
+	}
+
+	public Date getIssuedAt() {
+		return issuedAt;
+	}
+
+	public void setIssuedAt(Date issuedAt) {
+		this.issuedAt = issuedAt;
+	}
+
+	public String getKeyId() {
+		return keyId;
+	}
+
+	public void setKeyId(String keyId) {
+		this.keyId = keyId;
+	}
+
+	byte[] getSigningKeyBytes() {
+		return signingKeyBytes;
+	}
+
+	void setSigningKeyBytes(byte[] signingKeyBytes) {
+		this.signingKeyBytes = signingKeyBytes;
+	}
+
 	public User getUser() {
 		return (User) getPrincipal();
 	}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+/**
+ * Source of the keys used to sign and verify JWTs. If a bean of this type exists in the application context, it is used by
+ * {@link JwtTokenKey} instead of the built-in key sources. Implementations must be thread-safe, and should answer
+ * {@link #getKey(String)} quickly, as it is called for every validated token.
+ *
+ * @author falbrech
+ *
+ */
+public interface JwtKeySource {
+
+	/**
+	 * Returns the key to sign new tokens with.
+	 *
+	 * @return The key to sign new tokens with, never <code>null</code>.
+	 */
+	JwtSigningKey getCurrentKey();
+
+	/**
+	 * Returns the key with the given ID, which can be the current or a previous key.
+	 *
+	 * @param keyId
+	 *            ID of the key, as read from the <code>kid</code> header of a token, or <code>null</code> for tokens
+	 *            without <code>kid</code> header.
+	 * @return The key with the given ID, or <code>null</code> if no such key is (or is no longer) accepted.
+	 */
+	JwtSigningKey getKey(String keyId);
+
+}
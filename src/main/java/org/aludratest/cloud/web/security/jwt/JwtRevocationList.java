@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aludratest.cloud.web.util.BloomFilter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Revocations of JWTs, either of single tokens (by token ID) or of all tokens of a user issued before a given point in time.
+ * <br>
+ * The check performed for every request is lock-free: Bloom filters for the revoked token IDs and user names are queried
+ * first, and only if these report a possible match, the exact revocation maps are consulted. Revocations are removed when
+ * all tokens they affect have expired. <br>
+ * Revocations are kept in memory only. With the default, randomly generated signing key, they are not required after a
+ * restart; when a keyring is shared between ACM instances, revocations have to be performed on every instance.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class JwtRevocationList {
+
+	private static final int FILTER_BITS = 1 << 16;
+
+	private static final int FILTER_HASHES = 4;
+
+	private static final long MAX_TOKEN_LIFETIME_MS = JwtTokenGenerator.JWT_EXPIRATION_PERIOD.toMillis();
+
+	private final JwtTimeService timeService;
+
+	/** Revoked token ID to the time when all tokens with this ID have expired. */
+	private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+	/** User name to the time before which all tokens of the user are revoked. */
+	private final Map<String, Long> userNotBefore = new ConcurrentHashMap<>();
+
+	private volatile BloomFilter tokenFilter = new BloomFilter(FILTER_BITS, FILTER_HASHES);
+
+	private volatile BloomFilter userFilter = new BloomFilter(FILTER_BITS, FILTER_HASHES);
+
+	@Autowired
+	public JwtRevocationList(JwtTimeService timeService) {
+		this.timeService = timeService;
+	}
+
+	/**
+	 * Revokes the token with the given ID.
+	 *
+	 * @param tokenId
+	 *            ID of the token to revoke, as contained in its <code>jti</code> claim.
+	 */
+	public synchronized void revokeToken(String tokenId) {
+		long now = timeService.currentTimeMillis();
+		purge(now);
+		// the expiration date of the token is unknown here, so keep the revocation as long as any token could be valid
+		revokedTokens.put(tokenId, Long.valueOf(now + MAX_TOKEN_LIFETIME_MS));
+		tokenFilter.add(tokenId);
+	}
+
+	/**
+	 * Revokes all tokens of the given user which have been issued until now. Tokens without issue date are also revoked.
+	 * As the issue date of tokens has a resolution of seconds only, all tokens issued within the current second are revoked,
+	 * too. Tokens issued from the next second on (e.g. after a new login of the user) are not affected.
+	 *
+	 * @param userName
+	 *            Name of the user whose tokens shall be revoked.
+	 */
+	public synchronized void revokeUser(String userName) {
+		long now = timeService.currentTimeMillis();
+		purge(now);
+		// the issue date of tokens has a resolution of seconds only, so also revoke tokens issued within this second
+		long notBefore = (now / 1000 + 1) * 1000;
+		userNotBefore.merge(userName, Long.valueOf(notBefore), Math::max);
+		userFilter.add(userName);
+	}
+
+	/**
+	 * Checks if the given token has been revoked.
+	 *
+	 * @param token
+	 *            Authentication created from a validated token.
+	 * @return <code>true</code> if the token has been revoked, <code>false</code> otherwise.
+	 */
+	public boolean isRevoked(JwtAuthenticationToken token) {
+		String tokenId = token.getTokenId();
+		if (tokenId != null && tokenFilter.mightContain(tokenId) && revokedTokens.containsKey(tokenId)) {
+			return true;
+		}
+
+		String userName = token.getUser().getName();
+		if (userName != null && userFilter.mightContain(userName)) {
+			Long notBefore = userNotBefore.get(userName);
+			if (notBefore != null) {
+				return token.getIssuedAt() == null || token.getIssuedAt().getTime() < notBefore.longValue();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns all active revocations.
+	 *
+	 * @return A JSON object with the fields <code>tokens</code> (list of revoked token IDs) and <code>users</code> (user
+	 *         names mapped to the time before which tokens of the user are revoked, in milliseconds since the epoch).
+	 */
+	public synchronized JSONObject toJSON() {
+		purge(timeService.currentTimeMillis());
+		JSONObject result = new JSONObject();
+		result.put("tokens", new JSONArray(revokedTokens.keySet()));
+		result.put("users", new JSONObject(userNotBefore));
+		return result;
+	}
+
+	private void purge(long now) {
+		boolean removed = removeOlderThan(revokedTokens, now);
+		// all tokens issued before the "not before" date have expired after the maximum token lifetime
+		removed |= removeOlderThan(userNotBefore, now - MAX_TOKEN_LIFETIME_MS);
+		if (!removed) {
+			return;
+		}
+
+		// Bloom filters do not support removal, so rebuild them
+		BloomFilter tokens = new BloomFilter(FILTER_BITS, FILTER_HASHES);
+		revokedTokens.keySet().forEach(tokens::add);
+		BloomFilter users = new BloomFilter(FILTER_BITS, FILTER_HASHES);
+		userNotBefore.keySet().forEach(users::add);
+		tokenFilter = tokens;
+		userFilter = users;
+	}
+
+	private static boolean removeOlderThan(Map<String, Long> map, long limit) {
+		boolean removed = false;
+		Iterator<Long> iter = map.values().iterator();
+		while (iter.hasNext()) {
+			if (iter.next().longValue() < limit) {
+				iter.remove();
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+/**
+ * A key used to sign and verify JWTs. Keys are identified by their ID, which is written to the <code>kid</code> header of
+ * the tokens signed with the key.
+ *
+ * @author falbrech
+ *
+ */
+public final class JwtSigningKey {
+
+	private final String id;
+
+	private final byte[] keyBytes;
+
+	/**
+	 * Creates a new key object.
+	 *
+	 * @param id
+	 *            ID of the key, or <code>null</code> if tokens signed with this key shall not contain a <code>kid</code>
+	 *            header.
+	 * @param keyBytes
+	 *            The key material. Must not be modified afterwards.
+	 */
+	public JwtSigningKey(String id, byte[] keyBytes) {
+		this.id = id;
+		this.keyBytes = keyBytes;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the key material. The returned array must not be modified.
+	 *
+	 * @return The key material.
+	 */
+	public byte[] getKeyBytes() {
+		return keyBytes;
+	}
+
+}
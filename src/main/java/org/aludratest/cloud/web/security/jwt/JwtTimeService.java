@@ -16,6 +16,7 @@
 package org.aludratest.cloud.web.security.jwt;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 import org.springframework.stereotype.Service;
 
@@ -34,4 +35,13 @@ public class JwtTimeService {
 		return LocalDateTime.now();
 	}
 
+	/**
+	 * Returns the result of {@link #now()} in milliseconds since the epoch.
+	 *
+	 * @return The current time, in milliseconds since the epoch.
+	 */
+	public long currentTimeMillis() {
+		return now().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
 }
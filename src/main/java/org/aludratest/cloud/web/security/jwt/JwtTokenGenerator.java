@@ -18,9 +18,9 @@ package org.aludratest.cloud.web.security.jwt;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.temporal.TemporalAmount;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.aludratest.cloud.user.User;
@@ -29,6 +29,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 
@@ -40,7 +42,7 @@ public class JwtTokenGenerator {
 
 	public static final SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
 
-	private static final TemporalAmount JWT_EXPIRATION_PERIOD = Duration.ofHours(8);
+	static final Duration JWT_EXPIRATION_PERIOD = Duration.ofHours(8);
 
 	private JwtTokenKey tokenKey;
 
@@ -56,17 +58,26 @@ public class JwtTokenGenerator {
 
 		User user = (User) authentication.getPrincipal();
 
-		LocalDateTime expirationDateTime = LocalDateTime.now().plus(JWT_EXPIRATION_PERIOD);
+		LocalDateTime issueDateTime = LocalDateTime.now();
+		LocalDateTime expirationDateTime = issueDateTime.plus(JWT_EXPIRATION_PERIOD);
 		Date expirationDate = Date.from(expirationDateTime.atZone(ZoneId.systemDefault()).toInstant());
 
 		Claims claims = Jwts.claims();
+		// ID and issue date allow revoking single tokens or all tokens of a user
+		claims.setId(UUID.randomUUID().toString());
+		claims.setIssuedAt(Date.from(issueDateTime.atZone(ZoneId.systemDefault()).toInstant()));
 		claims.setExpiration(expirationDate);
 
 		claims.put(CLAIM_KEY_USERNAME, user.getName());
 		claims.put(CLAIM_KEY_AUTHORIZATION, getAuthorizationClaim(authentication));
 
 
-		return Jwts.builder().setClaims(claims).signWith(SIGNATURE_ALGORITHM, tokenKey.getSigningKey()).compact();
+		JwtSigningKey key = tokenKey.getCurrentKey();
+		JwtBuilder builder = Jwts.builder().setClaims(claims);
+		if (key.getId() != null) {
+			builder.setHeaderParam(JwsHeader.KEY_ID, key.getId());
+		}
+		return builder.signWith(SIGNATURE_ALGORITHM, key.getKeyBytes()).compact();
 	}
 
 	private List<String> getAuthorizationClaim(Authentication authentication) {
@@ -15,42 +15,132 @@
  */
 package org.aludratest.cloud.web.security.jwt;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
-import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
 
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+/**
+ * Provides the keys to sign and verify JWTs. The keys are taken from the first available of these sources:
+ * <ul>
+ * <li>A custom {@link JwtKeySource} bean in the application context</li>
+ * <li>A keyring file configured via the <code>acm.jwt.keyringFile</code> property (see {@link FileJwtKeyring}); the reload
+ * interval can be configured via <code>acm.jwt.keyringReloadSeconds</code></li>
+ * <li>A constant key, if the <code>dev</code> profile is active</li>
+ * <li>A random key, generated on first use</li>
+ * </ul>
+ * Only the first two allow tokens to be validated by other ACM instances, or after a restart.
+ */
 @Component
 public class JwtTokenKey {
 
+	private static final String KEYRING_FILE_PROPERTY = "acm.jwt.keyringFile";
+
+	private static final String KEYRING_RELOAD_PROPERTY = "acm.jwt.keyringReloadSeconds";
+
+	private static final int DEFAULT_KEYRING_RELOAD_SECONDS = 60;
+
 	@Autowired
 	private Environment environment;
 
-	private byte[] signingKey;
+	@Autowired(required = false)
+	private JwtKeySource customKeySource;
+
+	private volatile JwtKeySource keySource;
 
 	public JwtTokenKey() {
-		// generate a random signing key (will change at next startup)
-		// try to use SecureRandom, if available
-		Random random;
-		try {
-			random = SecureRandom.getInstanceStrong();
-		} catch (NoSuchAlgorithmException e) {
-			LogFactory.getLog(JwtTokenGenerator.class)
-					.warn("No SecureRandom available. Using pseudorandom for generating JWT signing key", e);
-			// fallback to pseudorandom
-			random = new Random();
+		// key material is only generated when it is first used, see generateRandomKey()
+	}
+
+	JwtTokenKey(JwtKeySource keySource) {
+		this.keySource = keySource;
+	}
+
+	/**
+	 * Loads a configured keyring at startup, so an invalid keyring file prevents the startup. A local key is generated on
+	 * first use only.
+	 */
+	@PostConstruct
+	public void init() {
+		if (getKeyringFile() != null) {
+			getKeySource();
 		}
+	}
 
-		signingKey = new byte[32];
-		random.nextBytes(signingKey);
+	/**
+	 * Returns the key to sign new tokens with.
+	 *
+	 * @return The key to sign new tokens with.
+	 */
+	public JwtSigningKey getCurrentKey() {
+		return getKeySource().getCurrentKey();
+	}
+
+	/**
+	 * Returns the key to verify a token with.
+	 *
+	 * @param keyId
+	 *            Value of the <code>kid</code> header of the token, or <code>null</code> if the token has no such header.
+	 * @return The key to verify the token with, or <code>null</code> if the key is unknown or no longer accepted.
+	 */
+	public JwtSigningKey getKey(String keyId) {
+		return getKeySource().getKey(keyId);
 	}
 
 	public byte[] getSigningKey() {
+		return getCurrentKey().getKeyBytes();
+	}
+
+	private JwtKeySource getKeySource() {
+		// the configuration does not change at runtime, so resolve the source only once
+		JwtKeySource source = keySource;
+		if (source == null) {
+			synchronized (this) {
+				source = keySource;
+				if (source == null) {
+					source = resolveKeySource();
+					keySource = source;
+				}
+			}
+		}
+		return source;
+	}
+
+	private JwtKeySource resolveKeySource() {
+		if (customKeySource != null) {
+			return customKeySource;
+		}
+
+		String keyringFile = getKeyringFile();
+		if (keyringFile != null) {
+			int reloadSeconds = environment
+					.getProperty(KEYRING_RELOAD_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_KEYRING_RELOAD_SECONDS))
+					.intValue();
+			try {
+				return new FileJwtKeyring(Paths.get(keyringFile), reloadSeconds * 1000L);
+			}
+			catch (IOException | IllegalArgumentException e) {
+				throw new IllegalStateException("Could not load JWT keyring " + keyringFile, e);
+			}
+		}
+
+		return new LocalKeySource(new JwtSigningKey(null, resolveLocalKey()));
+	}
+
+	private String getKeyringFile() {
+		String keyringFile = environment == null ? null : environment.getProperty(KEYRING_FILE_PROPERTY);
+		return keyringFile == null || keyringFile.isEmpty() ? null : keyringFile;
+	}
+
+	private byte[] resolveLocalKey() {
 		// during (some) unit tests or in DEV environment, use constant key
 		// in production, use random key
 		if (environment != null && environment.acceptsProfiles("dev")) {
@@ -61,6 +151,40 @@ public class JwtTokenKey {
 				throw new RuntimeException(e);
 			}
 		}
-		return signingKey;
+		return generateRandomKey();
+	}
+
+	private static byte[] generateRandomKey() {
+		// generate a random signing key (will change at next startup).
+		// Do not use SecureRandom.getInstanceStrong(), which blocks on entropy-starved hosts (/dev/random on Linux).
+		// The default SecureRandom is a CSPRNG seeded by the operating system, which is sufficient for key generation.
+		long start = System.nanoTime();
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		LogFactory.getLog(JwtTokenKey.class).debug("Generated random JWT signing key in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+		return key;
+	}
+
+	/**
+	 * Key source for a single key local to this instance. Tokens signed with this key have no <code>kid</code> header.
+	 */
+	private static final class LocalKeySource implements JwtKeySource {
+
+		private final JwtSigningKey key;
+
+		private LocalKeySource(JwtSigningKey key) {
+			this.key = key;
+		}
+
+		@Override
+		public JwtSigningKey getCurrentKey() {
+			return key;
+		}
+
+		@Override
+		public JwtSigningKey getKey(String keyId) {
+			return keyId == null ? key : null;
+		}
 	}
 }
@@ -15,13 +15,16 @@
  */
 package org.aludratest.cloud.web.security.jwt;
 
+import java.security.MessageDigest;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import org.aludratest.cloud.user.User;
 import org.aludratest.cloud.web.security.CloudManagerAuthenticationProvider;
+import org.aludratest.cloud.web.security.jwt.Hs512TokenVerifier.VerifiedToken;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.AuthenticationException;
@@ -31,9 +34,12 @@ import org.springframework.stereotype.Component;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Clock;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolver;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 
 @Component
 public class JwtTokenValidator {
@@ -42,41 +48,103 @@ public class JwtTokenValidator {
 
 	private Clock jwsClock;
 
+	private JwtValidationCache validationCache;
+
+	private Hs512TokenVerifier fastVerifier;
+
+	private JwtRevocationList revocationList;
+
 	@Autowired
-	public JwtTokenValidator(JwtTokenKey tokenKey, JwtTimeService timeService) {
+	public JwtTokenValidator(JwtTokenKey tokenKey, JwtTimeService timeService, JwtValidationCache validationCache,
+			JwtRevocationList revocationList) {
 		this.tokenKey = tokenKey;
+		this.validationCache = validationCache;
+		this.revocationList = revocationList;
+		fastVerifier = new Hs512TokenVerifier(tokenKey);
 		jwsClock = createJwsClock(timeService);
 	}
 
 	public JwtAuthenticationToken validateToken(String tokenString) throws AuthenticationException {
+		// the cache checks the expiration date of the token, so a hit is as good as a full validation
+		JwtAuthenticationToken token = validationCache.get(tokenString);
+		// the signing key could have been retired or replaced in the meantime
+		if (token != null && !isSignedWithCurrentKey(token)) {
+			token = null;
+		}
+		if (token == null) {
+			token = parseToken(tokenString);
+			validationCache.put(token);
+		}
+
+		// revocations are checked on every call, as they can occur while the token is cached
+		if (revocationList.isRevoked(token)) {
+			throw new BadCredentialsException("The JWT has been revoked");
+		}
+		return token;
+	}
+
+	private JwtAuthenticationToken parseToken(String tokenString) throws AuthenticationException {
 		try {
-			JwtParser parser = Jwts.parser().setClock(jwsClock).setSigningKey(tokenKey.getSigningKey());
+			VerifiedToken verified = fastVerifier.verify(tokenString);
+			if (verified != null) {
+				long expirationMillis = verified.getExpirationMillis();
+				long issuedAtMillis = verified.getIssuedAtMillis();
+				JwtAuthenticationToken token = createToken(tokenString, verified.getUserName(),
+						verified.getAuthorization(), expirationMillis < 0 ? null : new Date(expirationMillis));
+				token.setTokenId(verified.getTokenId());
+				token.setIssuedAt(issuedAtMillis < 0 ? null : new Date(issuedAtMillis));
+				token.setKeyId(verified.getKeyId());
+				token.setSigningKeyBytes(verified.getKeyBytes());
+				return token;
+			}
+
+			// not in the format generated by JwtTokenGenerator; use the generic parser
+			AtomicReference<byte[]> keyBytes = new AtomicReference<>();
+			JwtParser parser = Jwts.parser().setClock(jwsClock)
+					.setSigningKeyResolver(createSigningKeyResolver(tokenKey, keyBytes));
 			Jws<Claims> claimsJws = parser.parseClaimsJws(tokenString);
 			checkAlgorithm(claimsJws.getHeader().getAlgorithm());
 
 			Claims body = claimsJws.getBody();
-			checkExpiration(body);
-
-			List<GrantedAuthority> authorities = getAuthorities(body);
-
-			// this is the JWT idea: do NOT get user object from User database, but
-			// reconstruct from JWT body
-			User user = createUserFromBody(body,
-					authorities.contains(CloudManagerAuthenticationProvider.ADMIN_AUTHORITY));
-
-			return new JwtAuthenticationToken(user, tokenString, authorities);
+			JwtAuthenticationToken token = createToken(tokenString,
+					body.get(JwtTokenGenerator.CLAIM_KEY_USERNAME, String.class),
+					body.get(JwtTokenGenerator.CLAIM_KEY_AUTHORIZATION), body.getExpiration());
+			token.setTokenId(body.getId());
+			token.setIssuedAt(body.getIssuedAt());
+			token.setKeyId(claimsJws.getHeader().getKeyId());
+			token.setSigningKeyBytes(keyBytes.get());
+			return token;
 		} catch (JwtException e) {
 			throw new BadCredentialsException("The JWT is invalid", e);
 		}
 	}
 
-	private User createUserFromBody(Claims body, final boolean admin) {
+	private boolean isSignedWithCurrentKey(JwtAuthenticationToken token) {
+		JwtSigningKey key = tokenKey.getKey(token.getKeyId());
+		return key != null && MessageDigest.isEqual(key.getKeyBytes(), token.getSigningKeyBytes());
+	}
+
+	private JwtAuthenticationToken createToken(String tokenString, String userName, Object authClaim, Date expiration) {
+		checkExpiration(expiration);
+
+		List<GrantedAuthority> authorities = getAuthorities(authClaim);
+
+		// this is the JWT idea: do NOT get user object from User database, but
+		// reconstruct from JWT body
+		User user = createUserFromBody(userName, authorities.contains(CloudManagerAuthenticationProvider.ADMIN_AUTHORITY));
+
+		JwtAuthenticationToken token = new JwtAuthenticationToken(user, tokenString, authorities);
+		token.setExpirationDate(expiration);
+		return token;
+	}
+
+	private User createUserFromBody(final String userName, final boolean admin) {
 
 		return new User() {
 
 			@Override
 			public String getName() {
-				return body.get(JwtTokenGenerator.CLAIM_KEY_USERNAME, String.class);
+				return userName;
 			}
 
 			@Override
@@ -104,8 +172,7 @@ public class JwtTokenValidator {
 		};
 	}
 
-	private List<GrantedAuthority> getAuthorities(Claims claims) {
-		Object authClaim = claims.get(JwtTokenGenerator.CLAIM_KEY_AUTHORIZATION);
+	private List<GrantedAuthority> getAuthorities(Object authClaim) {
 		if (authClaim == null) {
 			throw new JwtException("JWT does not contain authorization claim");
 		}
@@ -136,8 +203,7 @@ public class JwtTokenValidator {
 		}
 	}
 
-	private void checkExpiration(Claims claims) {
-		Date expiration = claims.get("exp", Date.class);
+	private void checkExpiration(Date expiration) {
 		if (expiration == null) {
 			throw new JwtException("JWT token does not contain expiration data");
 		}
@@ -148,6 +214,22 @@ public class JwtTokenValidator {
 		}
 	}
 
+	private static SigningKeyResolver createSigningKeyResolver(final JwtTokenKey tokenKey,
+			final AtomicReference<byte[]> resolvedKeyBytes) {
+		return new SigningKeyResolverAdapter() {
+			@Override
+			@SuppressWarnings("rawtypes")
+			public byte[] resolveSigningKeyBytes(JwsHeader header, Claims claims) {
+				JwtSigningKey key = tokenKey.getKey(header.getKeyId());
+				if (key == null) {
+					throw new JwtException("JWT has been signed with an unknown or retired key");
+				}
+				resolvedKeyBytes.set(key.getKeyBytes());
+				return key.getKeyBytes();
+			}
+		};
+	}
+
 	private static Clock createJwsClock(final JwtTimeService timeService) {
 		return new Clock() {
 			@Override
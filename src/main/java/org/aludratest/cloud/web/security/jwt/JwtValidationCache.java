@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+
+import org.aludratest.cloud.web.util.ExpiringCache;
+import org.aludratest.cloud.web.util.MonitoredCache;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache for successfully validated JWTs. Entries are keyed by a SHA-256 digest of the token string and hold the
+ * resulting {@link JwtAuthenticationToken} until the expiration date of the token, so a cached token never outlives its
+ * <code>exp</code> claim. Expiration is checked against the {@link JwtTimeService}. <br>
+ * The cache can be configured via the <code>acm.jwtCache.maxSize</code> and <code>acm.jwtCache.ttlSeconds</code> properties;
+ * the latter limits how long a token stays cached, regardless of its expiration date. Setting any of these to 0 disables the
+ * cache.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class JwtValidationCache implements MonitoredCache {
+
+	private static final String MAX_SIZE_PROPERTY = "acm.jwtCache.maxSize";
+
+	private static final String TTL_PROPERTY = "acm.jwtCache.ttlSeconds";
+
+	private static final int DEFAULT_MAX_SIZE = 10000;
+
+	private static final int DEFAULT_TTL_SECONDS = 3600;
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(JwtValidationCache::createDigest);
+
+	private ExpiringCache<String, JwtAuthenticationToken> cache;
+
+	@Autowired
+	public JwtValidationCache(Environment environment, JwtTimeService timeService) {
+		this(environment.getProperty(MAX_SIZE_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_MAX_SIZE)).intValue(),
+				environment.getProperty(TTL_PROPERTY, Integer.class, Integer.valueOf(DEFAULT_TTL_SECONDS)).intValue(),
+				timeService);
+	}
+
+	JwtValidationCache(int maxSize, int ttlSeconds, JwtTimeService timeService) {
+		cache = new ExpiringCache<>(maxSize, ttlSeconds * 1000L, timeService::currentTimeMillis);
+	}
+
+	/**
+	 * Returns the cached authentication for the given token string, if the token has been validated before and has not
+	 * expired yet.
+	 *
+	 * @param tokenString
+	 *            Token string, as sent by the client.
+	 * @return The cached authentication, or <code>null</code> if the token has to be validated.
+	 */
+	public JwtAuthenticationToken get(String tokenString) {
+		if (!cache.isEnabled()) {
+			return null;
+		}
+		return cache.get(digest(tokenString));
+	}
+
+	/**
+	 * Stores the given successfully validated authentication. The authentication must carry the expiration date of the token;
+	 * otherwise, it is not cached.
+	 *
+	 * @param token
+	 *            Authentication created from a successfully validated token.
+	 */
+	public void put(JwtAuthenticationToken token) {
+		Date expirationDate = token.getExpirationDate();
+		if (!cache.isEnabled() || expirationDate == null) {
+			return;
+		}
+		cache.put(digest(token.getToken()), token, expirationDate.getTime());
+	}
+
+	/**
+	 * Removes all entries from the cache, e.g. when the set of valid signing keys has changed.
+	 */
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	@Override
+	public String getCacheName() {
+		return "jwtValidation";
+	}
+
+	@Override
+	public JSONObject getCacheStatistics() {
+		return cache.getStatistics();
+	}
+
+	private static String digest(String tokenString) {
+		byte[] hash = DIGEST.get().digest(tokenString.getBytes(StandardCharsets.US_ASCII));
+		return Base64.getEncoder().encodeToString(hash);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// SHA-256 is mandatory for every Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -15,13 +15,10 @@
  */
 package org.aludratest.cloud.web.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -31,7 +28,6 @@ import org.aludratest.cloud.user.User;
 import org.aludratest.cloud.user.UserDatabase;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
 
 /**
  * Helper methods for dealing with HTTP Basic Authentication.
@@ -43,6 +39,16 @@ public final class BasicAuthUtil {
 
 	private static final Log LOG = LogFactory.getLog(BasicAuthUtil.class);
 
+	/**
+	 * Default maximum number of bytes of a rejected request body to read and discard before the connection is closed.
+	 */
+	public static final long DEFAULT_MAX_DRAIN_BYTES = 64 * 1024;
+
+	private static final String BASIC_PREFIX = "Basic ";
+
+	// contents are never read, so this buffer can safely be shared between threads
+	private static final byte[] DRAIN_BUFFER = new byte[8192];
+
 	private BasicAuthUtil() {
 	}
 
@@ -64,32 +70,29 @@ public final class BasicAuthUtil {
 	 */
 	public static User authenticate(String authHeader, UserDatabase userDatabase)
 			throws StoreException, IllegalArgumentException {
-		Pattern pAuth = Pattern.compile("Basic (.+)");
-		Matcher m = pAuth.matcher(authHeader);
-		if (!m.matches()) {
+		if (!authHeader.startsWith(BASIC_PREFIX) || authHeader.length() == BASIC_PREFIX.length()) {
 			throw new IllegalArgumentException();
 		}
 
-		String userPass;
-		try {
-			userPass = new String(Base64.getDecoder().decode(m.group(1)), "UTF-8");
-		}
-		catch (UnsupportedEncodingException e) {
-			// should not happen
-			throw new RuntimeException("No UTF-8 supported on this machine");
+		byte[] userPass = Base64.getDecoder().decode(authHeader.substring(BASIC_PREFIX.length()));
+
+		// the password may contain colons, so only split at the first one
+		int separator = -1;
+		for (int i = 0; i < userPass.length; i++) {
+			if (userPass[i] == ':') {
+				separator = i;
+				break;
+			}
 		}
-		if (!userPass.contains(":")) {
+		if (separator <= 0 || separator == userPass.length - 1) {
 			throw new IllegalArgumentException();
 		}
 
-		String[] up = userPass.split(":");
-
-		if (up[0].length() == 0 || up[1].length() == 0) {
-			throw new IllegalArgumentException();
-		}
+		String userName = new String(userPass, 0, separator, StandardCharsets.UTF_8);
+		String password = new String(userPass, separator + 1, userPass.length - separator - 1, StandardCharsets.UTF_8);
 
 		User user;
-		if (userDatabase == null || (user = userDatabase.authenticate(up[0], up[1])) == null) {
+		if (userDatabase == null || (user = userDatabase.authenticate(userName, password)) == null) {
 			throw new IllegalArgumentException();
 		}
 
@@ -102,7 +105,9 @@ public final class BasicAuthUtil {
 	 * {@link #authenticate(String)}. When no <code>Authorization</code> header is present, a request for authentication is sent
 	 * using the given HTTP response (HTTP code 401, <code>WWW-Authenticate</code> header). When the authentication was
 	 * unsuccessful, an HTTP error 403 is sent. In any other error case (including internal or storage errors), HTTP 403 is also
-	 * sent, to not reveal any security compromising information to the requestor.
+	 * sent, to not reveal any security compromising information to the requestor. <br>
+	 * The body of a rejected request is discarded up to {@link #DEFAULT_MAX_DRAIN_BYTES} bytes; if it is larger, the
+	 * connection is closed after the response.
 	 *
 	 * @param request
 	 *            HTTP request.
@@ -119,11 +124,36 @@ public final class BasicAuthUtil {
 	 */
 	public static User authenticate(HttpServletRequest request, HttpServletResponse response, UserDatabase userDatabase)
 			throws IOException {
+		return authenticate(request, response, userDatabase, DEFAULT_MAX_DRAIN_BYTES);
+	}
+
+	/**
+	 * Same as {@link #authenticate(HttpServletRequest, HttpServletResponse, UserDatabase)}, but with a custom maximum number of
+	 * bytes to discard from the body of a rejected request.
+	 *
+	 * @param request
+	 *            HTTP request.
+	 * @param response
+	 *            HTTP response to send HTTP status values to.
+	 * @param userDatabase
+	 *            User database to use for authentication.
+	 * @param maxDrainBytes
+	 *            Maximum number of bytes to read and discard from the body of a rejected request. If the body is larger, the
+	 *            connection is closed after the response, instead of reading the remaining body.
+	 *
+	 * @return Authenticated user, or <code>null</code> if unsuccessful. Callers should immediately abort the request-response
+	 *         cycle in the latter case, as all response handling is already done by this method.
+	 *
+	 * @throws IOException
+	 *             If HTTP status cannot be set in HTTP response.
+	 */
+	public static User authenticate(HttpServletRequest request, HttpServletResponse response, UserDatabase userDatabase,
+			long maxDrainBytes) throws IOException {
 		try {
 			// extract authentication
 			String authHeader = request.getHeader("Authorization");
 			if (authHeader == null) {
-				consumeRequest(request);
+				consumeRequest(request, response, maxDrainBytes);
 				// send request for authENTICATION
 				response.setHeader("WWW-Authenticate", "Basic realm=\"AludraTest Cloud Manager\"");
 				response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
@@ -132,7 +162,7 @@ public final class BasicAuthUtil {
 
 			User user = authenticate(authHeader, userDatabase);
 			if (user == null) {
-				consumeRequest(request);
+				consumeRequest(request, response, maxDrainBytes);
 				response.sendError(HttpServletResponse.SC_FORBIDDEN);
 			}
 			return user;
@@ -140,22 +170,34 @@ public final class BasicAuthUtil {
 		catch (StoreException e) {
 			LOG.error("Could not check user authentication", e);
 			// for safety, treat as forbidden
-			consumeRequest(request);
+			consumeRequest(request, response, maxDrainBytes);
 			response.sendError(HttpServletResponse.SC_FORBIDDEN);
 			return null;
 		}
 		catch (IllegalArgumentException e) {
-			consumeRequest(request);
+			consumeRequest(request, response, maxDrainBytes);
 			response.sendError(HttpServletResponse.SC_FORBIDDEN);
 			return null;
 		}
 	}
 
-	private static void consumeRequest(HttpServletRequest request) throws IOException {
+	private static void consumeRequest(HttpServletRequest request, HttpServletResponse response, long maxDrainBytes)
+			throws IOException {
 		try (InputStream in = request.getInputStream()) {
-			if (in != null) {
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				IOUtils.copy(in, baos);
+			if (in == null) {
+				return;
+			}
+			long remaining = maxDrainBytes;
+			while (remaining > 0) {
+				int read = in.read(DRAIN_BUFFER, 0, (int) Math.min(DRAIN_BUFFER.length, remaining));
+				if (read < 0) {
+					return;
+				}
+				remaining -= read;
+			}
+			if (in.read() >= 0) {
+				// do not read (or let the container swallow) the rest of a large body
+				response.setHeader("Connection", "close");
 			}
 		}
 	}
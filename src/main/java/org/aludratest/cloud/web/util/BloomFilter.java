@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A simple, thread-safe Bloom filter for strings. Queries are lock-free and never return <code>false</code> for strings
+ * which have been added; they may return <code>true</code> for strings which have not been added. Strings cannot be removed;
+ * to shrink the filter, create a new one and add the remaining strings.
+ *
+ * @author falbrech
+ *
+ */
+public final class BloomFilter {
+
+	private final AtomicLongArray bits;
+
+	private final int bitCount;
+
+	private final int hashCount;
+
+	/**
+	 * Creates a new, empty Bloom filter.
+	 *
+	 * @param bitCount
+	 *            Number of bits of the filter. Rounded up to a multiple of 64.
+	 * @param hashCount
+	 *            Number of bits to set per added string.
+	 */
+	public BloomFilter(int bitCount, int hashCount) {
+		this.bits = new AtomicLongArray((bitCount + 63) / 64);
+		this.bitCount = this.bits.length() * 64;
+		this.hashCount = hashCount;
+	}
+
+	/**
+	 * Adds the given string to this filter.
+	 *
+	 * @param value
+	 *            String to add.
+	 */
+	public void add(String value) {
+		int h1 = value.hashCode();
+		int h2 = mix(h1);
+		for (int i = 0; i < hashCount; i++) {
+			int bit = index(h1 + i * h2);
+			long mask = 1L << bit;
+			int word = bit >>> 6;
+			long current;
+			do {
+				current = bits.get(word);
+			}
+			while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+		}
+	}
+
+	/**
+	 * Checks if the given string may have been added to this filter.
+	 *
+	 * @param value
+	 *            String to check.
+	 * @return <code>false</code> if the string has definitely not been added, <code>true</code> if it may have been added.
+	 */
+	public boolean mightContain(String value) {
+		int h1 = value.hashCode();
+		int h2 = mix(h1);
+		for (int i = 0; i < hashCount; i++) {
+			int bit = index(h1 + i * h2);
+			if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int index(int hash) {
+		return (hash & Integer.MAX_VALUE) % bitCount;
+	}
+
+	private static int mix(int h) {
+		// finalizer of MurmurHash3, to derive a second, independent hash
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h | 1;
+	}
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.json.JSONObject;
+
+/**
+ * A simple, size-bounded cache whose entries expire after a given time. Reads are lock-free. When the maximum size is reached,
+ * expired entries are removed first; if this is not sufficient, arbitrary entries are evicted until the cache is 10% below
+ * its maximum size, so the cost of an eviction is spread over many inserts. Only one thread evicts at a time; under
+ * concurrent inserts, the cache may temporarily exceed its maximum size slightly. <br>
+ * The cache counts hits, misses and evictions, which can be queried via {@link #getStatistics()}.
+ *
+ * @author falbrech
+ *
+ * @param <K>
+ *            Type of the keys of the cache.
+ * @param <V>
+ *            Type of the values of the cache.
+ */
+public final class ExpiringCache<K, V> {
+
+	private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	private final int maxSize;
+
+	private final int lowWaterMark;
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final long ttlMs;
+
+	private final LongSupplier clock;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a new cache using the system time.
+	 *
+	 * @param maxSize
+	 *            Maximum number of entries in the cache. If 0, the cache is disabled and never stores entries.
+	 * @param ttlMs
+	 *            Default time to live of the entries, in milliseconds.
+	 */
+	public ExpiringCache(int maxSize, long ttlMs) {
+		this(maxSize, ttlMs, System::currentTimeMillis);
+	}
+
+	/**
+	 * Creates a new cache using the given clock.
+	 *
+	 * @param maxSize
+	 *            Maximum number of entries in the cache. If 0, the cache is disabled and never stores entries.
+	 * @param ttlMs
+	 *            Default time to live of the entries, in milliseconds.
+	 * @param clock
+	 *            Clock returning the current time in milliseconds.
+	 */
+	public ExpiringCache(int maxSize, long ttlMs, LongSupplier clock) {
+		this.maxSize = maxSize;
+		this.lowWaterMark = maxSize - Math.max(1, maxSize / 10);
+		this.ttlMs = ttlMs;
+		this.clock = clock;
+	}
+
+	/**
+	 * Checks if this cache is enabled, i.e. can store entries at all.
+	 *
+	 * @return <code>true</code> if this cache is enabled, <code>false</code> otherwise.
+	 */
+	public boolean isEnabled() {
+		return maxSize > 0 && ttlMs > 0;
+	}
+
+	/**
+	 * Returns the value stored for the given key, if present and not expired.
+	 *
+	 * @param key
+	 *            Key to look up.
+	 * @return The value stored for the key, or <code>null</code> if no valid entry exists.
+	 */
+	public V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null && entry.expiresAt > clock.getAsLong()) {
+			hits.increment();
+			return entry.value;
+		}
+		if (entry != null) {
+			entries.remove(key, entry);
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Stores the given value using the default time to live.
+	 *
+	 * @param key
+	 *            Key to store the value for.
+	 * @param value
+	 *            Value to store, must not be <code>null</code>.
+	 */
+	public void put(K key, V value) {
+		put(key, value, clock.getAsLong() + ttlMs);
+	}
+
+	/**
+	 * Stores the given value until the given point in time, but at most for the default time to live.
+	 *
+	 * @param key
+	 *            Key to store the value for.
+	 * @param value
+	 *            Value to store, must not be <code>null</code>.
+	 * @param expiresAt
+	 *            Time (in milliseconds, as returned by the clock of this cache) when the entry shall expire.
+	 */
+	public void put(K key, V value, long expiresAt) {
+		if (!isEnabled()) {
+			return;
+		}
+		long now = clock.getAsLong();
+		expiresAt = Math.min(expiresAt, now + ttlMs);
+		if (expiresAt <= now) {
+			return;
+		}
+		if (entries.size() >= maxSize && !entries.containsKey(key)) {
+			evict(now);
+		}
+		entries.put(key, new Entry<>(value, expiresAt));
+	}
+
+	/**
+	 * Removes the entry for the given key, if present.
+	 *
+	 * @param key
+	 *            Key of the entry to remove.
+	 */
+	public void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the current number of entries, including expired entries which have not been removed yet.
+	 *
+	 * @return The current number of entries in this cache.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns statistics about the usage of this cache.
+	 *
+	 * @return A JSON object containing size, hit, miss and eviction counts of this cache.
+	 */
+	public JSONObject getStatistics() {
+		long h = hits.sum();
+		long m = misses.sum();
+		JSONObject result = new JSONObject();
+		result.put("enabled", isEnabled());
+		result.put("size", entries.size());
+		result.put("maxSize", maxSize);
+		result.put("ttlMs", ttlMs);
+		result.put("hits", h);
+		result.put("misses", m);
+		result.put("evictions", evictions.sum());
+		result.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+		return result;
+	}
+
+	private void evict(long now) {
+		// if another thread is already evicting, do not wait for it
+		if (!evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			if (entries.size() < maxSize) {
+				return;
+			}
+
+			// first pass: remove expired entries
+			Iterator<Map.Entry<K, Entry<V>>> iter = entries.entrySet().iterator();
+			while (iter.hasNext()) {
+				if (iter.next().getValue().expiresAt <= now) {
+					iter.remove();
+					evictions.increment();
+				}
+			}
+
+			// second pass: remove arbitrary entries down to the low water mark, so the next inserts need no eviction
+			iter = entries.entrySet().iterator();
+			while (entries.size() > lowWaterMark && iter.hasNext()) {
+				iter.next();
+				iter.remove();
+				evictions.increment();
+			}
+		}
+		finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private static final class Entry<V> {
+
+		private final V value;
+
+		private final long expiresAt;
+
+		private Entry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Detects invalidations of cache keys which happen while a value for the key is being loaded, so a stale value is not
+ * stored in the cache afterwards. Callers obtain the current sequence number via {@link #currentSequence()} <b>before</b>
+ * loading a value, and check {@link #isInvalidatedSince(String, long)} before (or after) storing it. <br>
+ * Invalidations are recorded in a fixed number of stripes, so memory usage is bounded and nothing has to be purged. Keys
+ * sharing a stripe may be reported as invalidated although only another key was; callers must treat this like a cache miss.
+ * An invalidation is never missed.
+ *
+ * @author falbrech
+ *
+ */
+public final class InvalidationTracker {
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final AtomicLongArray stripes;
+
+	/**
+	 * Creates a new invalidation tracker.
+	 *
+	 * @param stripeCount
+	 *            Number of stripes to record invalidations in. Rounded up to a power of two.
+	 */
+	public InvalidationTracker(int stripeCount) {
+		int size = 1;
+		while (size < stripeCount) {
+			size <<= 1;
+		}
+		stripes = new AtomicLongArray(size);
+	}
+
+	/**
+	 * Returns the current sequence number, to be passed to {@link #isInvalidatedSince(String, long)} later.
+	 *
+	 * @return The current sequence number.
+	 */
+	public long currentSequence() {
+		return sequence.get();
+	}
+
+	/**
+	 * Records an invalidation of the given key. Must be called <b>before</b> the key is removed from the cache.
+	 *
+	 * @param key
+	 *            Key to invalidate.
+	 */
+	public void invalidate(String key) {
+		long seq = sequence.incrementAndGet();
+		int stripe = stripe(key);
+		long current;
+		do {
+			current = stripes.get(stripe);
+		}
+		while (current < seq && !stripes.compareAndSet(stripe, current, seq));
+	}
+
+	/**
+	 * Checks if the given key may have been invalidated after the given sequence number was obtained.
+	 *
+	 * @param key
+	 *            Key to check.
+	 * @param sequenceNumber
+	 *            Sequence number obtained via {@link #currentSequence()}.
+	 * @return <code>true</code> if the key may have been invalidated since, <code>false</code> if it has definitely not been
+	 *         invalidated since.
+	 */
+	public boolean isInvalidatedSince(String key, long sequenceNumber) {
+		return stripes.get(stripe(key)) > sequenceNumber;
+	}
+
+	private int stripe(String key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h & (stripes.length() - 1);
+	}
+
+}
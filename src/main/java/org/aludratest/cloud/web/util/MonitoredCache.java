@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import org.json.JSONObject;
+
+/**
+ * Interface for beans which maintain a cache and expose statistics about it. The statistics of all beans implementing this
+ * interface are available via <code>/api/monitoring/caches</code>.
+ *
+ * @author falbrech
+ *
+ */
+public interface MonitoredCache {
+
+	/**
+	 * Returns the name of the cache, used as key in the monitoring output.
+	 *
+	 * @return The name of the cache.
+	 */
+	String getCacheName();
+
+	/**
+	 * Returns statistics about the cache, e.g. its size and hit rate.
+	 *
+	 * @return A JSON object containing statistics about the cache.
+	 */
+	JSONObject getCacheStatistics();
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Measures the time needed to create and initialize the beans of this module (classes in the
+ * <code>org.aludratest.cloud.web</code> package and its subpackages), and reports it when the application is ready. Times
+ * are exclusive: the creation time of other beans of this module which are created as dependencies of a bean is not
+ * included in the time of the bean. <br>
+ * The beans are grouped into the categories <code>endpoints</code>, <code>eventListeners</code>, <code>security</code> and
+ * <code>other</code>. The report is logged, and can be retrieved via {@link #getReport()}.
+ *
+ * @author falbrech
+ *
+ */
+@Component
+public class StartupTimingReport implements InstantiationAwareBeanPostProcessor, ApplicationListener<ApplicationReadyEvent> {
+
+	private static final Log LOG = LogFactory.getLog(StartupTimingReport.class);
+
+	private static final String MODULE_PACKAGE = "org.aludratest.cloud.web.";
+
+	private static final String SECURITY_PACKAGE = "org.aludratest.cloud.web.security.";
+
+	private static final int LOGGED_BEANS = 10;
+
+	private final ThreadLocal<Deque<Frame>> beansInCreation = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private final List<BeanTiming> timings = new ArrayList<>();
+
+	private volatile long timeToReadyMs = -1;
+
+	@Override
+	public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+		if (beanClass.getName().startsWith(MODULE_PACKAGE)) {
+			beansInCreation.get().push(new Frame(beanName, beanClass, System.nanoTime()));
+		}
+		return null;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		Deque<Frame> stack = beansInCreation.get();
+		if (!containsBean(stack, beanName)) {
+			return bean;
+		}
+
+		// also discards frames of beans whose creation failed
+		Frame frame;
+		do {
+			frame = stack.pop();
+		}
+		while (!frame.beanName.equals(beanName));
+
+		long totalNanos = System.nanoTime() - frame.startNanos;
+		if (!stack.isEmpty()) {
+			stack.peek().childNanos += totalNanos;
+		}
+		synchronized (timings) {
+			// category is determined when reporting, so its reflection cost is not included in the parent bean's time
+			timings.add(new BeanTiming(beanName, frame.beanClass, totalNanos - frame.childNanos));
+		}
+		return bean;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+		beansInCreation.remove();
+		timeToReadyMs = ManagementFactory.getRuntimeMXBean().getUptime();
+
+		if (LOG.isInfoEnabled()) {
+			JSONObject report = getReport();
+			StringBuilder sb = new StringBuilder();
+			sb.append("Ready after ").append(timeToReadyMs).append(" ms. Bean initialization times (ms) by category: ")
+					.append(report.getJSONObject("categories")).append(". Slowest beans:");
+			JSONArray beans = report.getJSONArray("beans");
+			for (int i = 0; i < beans.length() && i < LOGGED_BEANS; i++) {
+				JSONObject bean = beans.getJSONObject(i);
+				sb.append(' ').append(bean.getString("name")).append('=').append(bean.get("timeMs"));
+			}
+			LOG.info(sb.toString());
+		}
+	}
+
+	/**
+	 * Returns the startup timing report.
+	 *
+	 * @return A JSON object with the fields <code>timeToReadyMs</code> (time since JVM start until the application was
+	 *         ready, or -1 if not ready yet), <code>categories</code> (total initialization time per category) and
+	 *         <code>beans</code> (initialization time per bean, slowest first).
+	 */
+	public JSONObject getReport() {
+		List<BeanTiming> sorted;
+		synchronized (timings) {
+			sorted = new ArrayList<>(timings);
+		}
+		sorted.sort((t1, t2) -> Long.compare(t2.nanos, t1.nanos));
+
+		Map<String, Long> categories = new LinkedHashMap<>();
+		JSONArray beans = new JSONArray();
+		for (BeanTiming timing : sorted) {
+			String category = getCategory(timing.beanClass);
+			categories.merge(category, Long.valueOf(timing.nanos), Long::sum);
+			JSONObject bean = new JSONObject();
+			bean.put("name", timing.beanName);
+			bean.put("category", category);
+			bean.put("timeMs", toMillis(timing.nanos));
+			beans.put(bean);
+		}
+
+		JSONObject categoryTimes = new JSONObject();
+		categories.forEach((category, nanos) -> categoryTimes.put(category, toMillis(nanos.longValue())));
+
+		JSONObject result = new JSONObject();
+		result.put("timeToReadyMs", timeToReadyMs);
+		result.put("categories", categoryTimes);
+		result.put("beans", beans);
+		return result;
+	}
+
+	private static boolean containsBean(Deque<Frame> stack, String beanName) {
+		Iterator<Frame> iter = stack.iterator();
+		while (iter.hasNext()) {
+			if (iter.next().beanName.equals(beanName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static String getCategory(Class<?> beanClass) {
+		if (AnnotatedElementUtils.hasAnnotation(beanClass, RestController.class)) {
+			return "endpoints";
+		}
+		if (ApplicationListener.class.isAssignableFrom(beanClass) || hasEventListenerMethod(beanClass)) {
+			return "eventListeners";
+		}
+		if (beanClass.getName().startsWith(SECURITY_PACKAGE)) {
+			return "security";
+		}
+		return "other";
+	}
+
+	private static boolean hasEventListenerMethod(Class<?> beanClass) {
+		for (Method method : ReflectionUtils.getUniqueDeclaredMethods(beanClass)) {
+			if (AnnotatedElementUtils.hasAnnotation(method, EventListener.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static double toMillis(long nanos) {
+		// one decimal place is precise enough
+		return Math.round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) * 10) / 10.0;
+	}
+
+	private static final class Frame {
+
+		private final String beanName;
+
+		private final Class<?> beanClass;
+
+		private final long startNanos;
+
+		private long childNanos;
+
+		private Frame(String beanName, Class<?> beanClass, long startNanos) {
+			this.beanName = beanName;
+			this.beanClass = beanClass;
+			this.startNanos = startNanos;
+		}
+	}
+
+	private static final class BeanTiming {
+
+		private final String beanName;
+
+		private final Class<?> beanClass;
+
+		private final long nanos;
+
+		private BeanTiming(String beanName, Class<?> beanClass, long nanos) {
+			this.beanName = beanName;
+			this.beanClass = beanClass;
+			this.nanos = nanos;
+		}
+	}
+
+}
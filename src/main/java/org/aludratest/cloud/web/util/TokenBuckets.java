@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * A set of token buckets, one per key, with bounded memory. Each bucket holds up to <code>burst</code> tokens and is refilled
+ * with <code>ratePerSecond</code> tokens per second. Buckets are implemented via the "generic cell rate algorithm", i.e. only
+ * the time at which the bucket will be full again is stored, and updated lock-free via compare-and-set. <br>
+ * Up to <code>maxExactKeys</code> keys get their own bucket. Buckets which are full again are removed when space for a new
+ * key is needed, but at most once per token interval (<code>1 / ratePerSecond</code>), so a flood of new keys does not cause
+ * a full scan per key. All other keys share the cells of a sketch (similar to a Count-Min sketch): every key is mapped to
+ * one cell per sketch row, and a request is only allowed if all cells of the key allow it. Collisions can only make the
+ * limit stricter for a key, never more generous. The cells are determined by a randomly seeded hash of the key bytes, so
+ * clients cannot choose keys colliding with the key of another client.
+ *
+ * @author falbrech
+ *
+ */
+public final class TokenBuckets {
+
+	private static final int SKETCH_DEPTH = 4;
+
+	private final LongSupplier nanoClock;
+
+	private final long origin;
+
+	private final long emissionIntervalNanos;
+
+	private final long burstToleranceNanos;
+
+	private final int maxExactKeys;
+
+	private final ConcurrentHashMap<String, AtomicLong> exactBuckets;
+
+	/** Time (relative to the origin) from which on full buckets may be purged again. */
+	private final AtomicLong nextPurge = new AtomicLong();
+
+	private final AtomicLongArray sketch;
+
+	private final int sketchWidth;
+
+	private final int seed1;
+
+	private final int seed2;
+
+	/**
+	 * Creates a new set of token buckets.
+	 *
+	 * @param ratePerSecond
+	 *            Number of tokens added to each bucket per second. Must be positive.
+	 * @param burst
+	 *            Maximum number of tokens of each bucket. Must be at least 1.
+	 * @param maxExactKeys
+	 *            Maximum number of keys which get their own bucket. May be 0 to use the sketch for all keys.
+	 * @param sketchWidth
+	 *            Number of cells per sketch row. Must be positive.
+	 */
+	public TokenBuckets(double ratePerSecond, int burst, int maxExactKeys, int sketchWidth) {
+		this(ratePerSecond, burst, maxExactKeys, sketchWidth, System::nanoTime);
+	}
+
+	/**
+	 * Creates a new set of token buckets using the given clock.
+	 *
+	 * @param ratePerSecond
+	 *            Number of tokens added to each bucket per second. Must be positive.
+	 * @param burst
+	 *            Maximum number of tokens of each bucket. Must be at least 1.
+	 * @param maxExactKeys
+	 *            Maximum number of keys which get their own bucket. May be 0 to use the sketch for all keys.
+	 * @param sketchWidth
+	 *            Number of cells per sketch row. Must be positive.
+	 * @param nanoClock
+	 *            Clock returning the current time in nanoseconds, like {@link System#nanoTime()}.
+	 */
+	public TokenBuckets(double ratePerSecond, int burst, int maxExactKeys, int sketchWidth, LongSupplier nanoClock) {
+		if (ratePerSecond <= 0 || burst < 1 || maxExactKeys < 0 || sketchWidth < 1) {
+			throw new IllegalArgumentException("Invalid token bucket configuration");
+		}
+		this.nanoClock = nanoClock;
+		// stored times are relative to this origin, so an untouched cell (0) is always full
+		this.origin = nanoClock.getAsLong();
+		this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+		this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+		this.maxExactKeys = maxExactKeys;
+		this.exactBuckets = maxExactKeys > 0 ? new ConcurrentHashMap<>() : null;
+		this.sketchWidth = sketchWidth;
+		this.sketch = new AtomicLongArray(SKETCH_DEPTH * sketchWidth);
+
+		long seed = new SecureRandom().nextLong();
+		this.seed1 = (int) seed;
+		this.seed2 = (int) (seed >>> 32);
+	}
+
+	/**
+	 * Tries to take a token from the bucket of the given key.
+	 *
+	 * @param key
+	 *            Key of the bucket.
+	 * @return 0 if a token was taken, otherwise the number of nanoseconds until the next token will be available.
+	 */
+	public long tryAcquire(String key) {
+		long now = nanoClock.getAsLong() - origin;
+		AtomicLong bucket = getExactBucket(key, now);
+		return bucket != null ? tryAcquire(bucket, now) : tryAcquireSketch(key, now);
+	}
+
+	/**
+	 * Returns the number of keys which currently have their own bucket.
+	 *
+	 * @return The number of keys which currently have their own bucket.
+	 */
+	public int getExactKeyCount() {
+		return exactBuckets == null ? 0 : exactBuckets.size();
+	}
+
+	private AtomicLong getExactBucket(String key, long now) {
+		if (exactBuckets == null) {
+			return null;
+		}
+		AtomicLong bucket = exactBuckets.get(key);
+		if (bucket != null) {
+			return bucket;
+		}
+		if (exactBuckets.size() >= maxExactKeys) {
+			long next = nextPurge.get();
+			if (now < next || !nextPurge.compareAndSet(next, now + emissionIntervalNanos)) {
+				return null;
+			}
+			purgeFullBuckets(now);
+			if (exactBuckets.size() >= maxExactKeys) {
+				return null;
+			}
+		}
+		// size may slightly exceed the maximum under concurrent inserts; purging fixes this later
+		bucket = exactBuckets.putIfAbsent(key, new AtomicLong());
+		return bucket != null ? bucket : exactBuckets.get(key);
+	}
+
+	private void purgeFullBuckets(long now) {
+		// a full bucket behaves exactly like a missing one, so it can be removed
+		Iterator<AtomicLong> iter = exactBuckets.values().iterator();
+		while (iter.hasNext()) {
+			if (iter.next().get() <= now) {
+				iter.remove();
+			}
+		}
+	}
+
+	private long tryAcquire(AtomicLong bucket, long now) {
+		while (true) {
+			long stored = bucket.get();
+			long tat = Math.max(stored, now);
+			long waitNanos = tat - now - burstToleranceNanos;
+			if (waitNanos > 0) {
+				return waitNanos;
+			}
+			if (bucket.compareAndSet(stored, tat + emissionIntervalNanos)) {
+				return 0;
+			}
+		}
+	}
+
+	private long tryAcquireSketch(String key, long now) {
+		// String.hashCode() collisions are trivial to construct, so hash the key bytes with secret seeds
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		int h1 = murmur3(bytes, seed1);
+		int h2 = murmur3(bytes, seed2) | 1;
+		int[] cells = new int[SKETCH_DEPTH];
+		long tat = now;
+		for (int row = 0; row < SKETCH_DEPTH; row++) {
+			cells[row] = row * sketchWidth + (((h1 + row * h2) & Integer.MAX_VALUE) % sketchWidth);
+			tat = Math.max(tat, sketch.get(cells[row]));
+		}
+
+		long waitNanos = tat - now - burstToleranceNanos;
+		if (waitNanos > 0) {
+			return waitNanos;
+		}
+
+		// the cells are not updated atomically as a whole; concurrent requests of colliding keys may get slightly more tokens
+		long newTat = tat + emissionIntervalNanos;
+		for (int cell : cells) {
+			long stored;
+			do {
+				stored = sketch.get(cell);
+			}
+			while (stored < newTat && !sketch.compareAndSet(cell, stored, newTat));
+		}
+		return 0;
+	}
+
+	/**
+	 * MurmurHash3 (x86, 32 bit) of the given bytes.
+	 */
+	static int murmur3(byte[] data, int seed) {
+		int h = seed;
+		int i = 0;
+		for (; i + 4 <= data.length; i += 4) {
+			int k = (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16 | (data[i + 3] & 0xff) << 24;
+			h ^= mixBlock(k);
+			h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+		}
+
+		int k = 0;
+		switch (data.length & 3) {
+			case 3:
+				k ^= (data[i + 2] & 0xff) << 16;
+				// fall through
+			case 2:
+				k ^= (data[i + 1] & 0xff) << 8;
+				// fall through
+			case 1:
+				k ^= data[i] & 0xff;
+				h ^= mixBlock(k);
+				break;
+			default:
+				break;
+		}
+
+		h ^= data.length;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int mixBlock(int k) {
+		return Integer.rotateLeft(k * 0xcc9e2d51, 15) * 0x1b873593;
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FieldSelectionTest {
+
+	@Test
+	public void testAllFields() {
+		FieldSelection fields = FieldSelection.parse(null);
+		assertTrue(fields.isAll());
+		assertTrue(fields.includes("name"));
+		assertTrue(fields.nested("request").includes("jobName"));
+
+		assertTrue(FieldSelection.parse(" , ").isAll());
+	}
+
+	@Test
+	public void testNestedFields() {
+		FieldSelection fields = FieldSelection.parse("name, request.jobName,resources");
+		assertFalse(fields.isAll());
+		assertTrue(fields.includes("name"));
+		assertFalse(fields.includes("isAdmin"));
+
+		// partially selected nested object
+		assertTrue(fields.includes("request"));
+		FieldSelection request = fields.nested("request");
+		assertTrue(request.includes("jobName"));
+		assertFalse(request.includes("customAttributes"));
+
+		// fully selected nested object
+		assertTrue(fields.nested("resources").isAll());
+	}
+
+	@Test
+	public void testIncludesOtherThan() {
+		assertFalse(FieldSelection.parse("state,request.user").includesOtherThan("state", "label", "request"));
+		assertTrue(FieldSelection.parse("state,host").includesOtherThan("state", "label", "request"));
+		assertTrue(FieldSelection.all().includesOtherThan("state"));
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JSONListBuilderTest {
+
+	@Test
+	public void testObjectFormat() {
+		JSONListBuilder list = JSONListBuilder.forFormat(null);
+		list.addRow().put("name", "user1").put("isAdmin", true);
+		list.addRow().put("name", "user2").put("source", null);
+
+		JSONArray array = (JSONArray) list.toJSON();
+		assertEquals(2, array.length());
+		assertEquals("user1", array.getJSONObject(0).getString("name"));
+		assertTrue(array.getJSONObject(0).getBoolean("isAdmin"));
+		assertFalse(array.getJSONObject(1).has("source"));
+	}
+
+	@Test
+	public void testColumnarFormat() {
+		JSONListBuilder list = JSONListBuilder.forFormat(JSONListBuilder.FORMAT_COLUMNAR);
+		list.addRow().put("name", "user1");
+		list.addRow().put("name", "user2").put("isAdmin", true);
+		list.addRow().put("isAdmin", false);
+
+		JSONObject obj = (JSONObject) list.toJSON();
+		JSONArray columns = obj.getJSONArray("columns");
+		assertEquals(2, columns.length());
+		assertEquals("name", columns.getString(0));
+		assertEquals("isAdmin", columns.getString(1));
+
+		JSONArray rows = obj.getJSONArray("rows");
+		assertEquals(3, rows.length());
+		assertEquals("user1", rows.getJSONArray(0).getString(0));
+		assertTrue(rows.getJSONArray(0).isNull(1));
+		assertTrue(rows.getJSONArray(1).getBoolean(1));
+		assertTrue(rows.getJSONArray(2).isNull(0));
+		assertFalse(rows.getJSONArray(2).getBoolean(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownFormat() {
+		JSONListBuilder.forFormat("xml");
+	}
+
+}
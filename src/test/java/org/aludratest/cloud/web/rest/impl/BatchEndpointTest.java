@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+public class BatchEndpointTest {
+
+	@Test
+	public void testNullEntryRejected() throws Exception {
+		BatchEndpoint endpoint = new BatchEndpoint(mock(RequestMappingHandlerMapping.class),
+				mock(RequestMappingHandlerAdapter.class));
+		try {
+			ResponseEntity<String> response = endpoint
+					.executeBatch(Arrays.asList(subRequest("/api/groups"), null), mock(HttpServletRequest.class)).get();
+			assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+		}
+		finally {
+			endpoint.shutdown();
+		}
+	}
+
+	@Test
+	public void testSubRequestsDoNotAccessContainerRequest() throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getHeaderNames()).thenReturn(Collections.enumeration(Arrays.asList("X-Trace")));
+		when(request.getHeaders("X-Trace")).thenReturn(Collections.enumeration(Arrays.asList("abc")));
+		when(request.getContextPath()).thenReturn("/acm");
+		when(request.getScheme()).thenReturn("https");
+		when(request.getServerName()).thenReturn("acm.example.com");
+		when(request.getServerPort()).thenReturn(Integer.valueOf(443));
+		when(request.getLocales()).thenReturn(Collections.enumeration(Arrays.asList(Locale.GERMAN)));
+
+		CountDownLatch released = new CountDownLatch(1);
+		List<String> seen = Collections.synchronizedList(new ArrayList<>());
+		RequestMappingHandlerMapping handlerMapping = new RequestMappingHandlerMapping() {
+			@Override
+			protected HandlerMethod getHandlerInternal(HttpServletRequest subRequest) throws Exception {
+				released.await(5, TimeUnit.SECONDS);
+				seen.add(subRequest.getHeader("X-Trace") + " " + subRequest.getRequestURL() + " " + subRequest.getLocale());
+				// no handler found
+				return null;
+			}
+		};
+
+		BatchEndpoint endpoint = new BatchEndpoint(handlerMapping, mock(RequestMappingHandlerAdapter.class));
+		try {
+			CompletableFuture<ResponseEntity<String>> future = endpoint
+					.executeBatch(Arrays.asList(subRequest("/api/groups"), subRequest("/api/users")), request);
+
+			// from now on, the container may recycle the request at any time
+			clearInvocations(request);
+			released.countDown();
+
+			JSONArray responses = new JSONObject(future.get(5, TimeUnit.SECONDS).getBody()).getJSONObject("result")
+					.getJSONArray("responses");
+			assertEquals(2, responses.length());
+			assertEquals(404, responses.getJSONObject(1).getInt("status"));
+			assertEquals(2, seen.size());
+			assertTrue(seen.contains("abc https://acm.example.com/acm/api/users de"));
+			verifyZeroInteractions(request);
+		}
+		finally {
+			endpoint.shutdown();
+		}
+	}
+
+	private static BatchRequestDto subRequest(String path) {
+		BatchRequestDto dto = new BatchRequestDto();
+		dto.setPath(path);
+		return dto;
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.aludratest.cloud.module.ResourceModuleRegistry;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.user.admin.UserDatabaseRegistry;
+import org.aludratest.cloud.web.security.CredentialCache;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Simulates a single servlet container thread and a user database which blocks until released by the test.
+ */
+public class BlockingCallExecutorTest {
+
+	private static final long TIMEOUT_SECONDS = 10;
+
+	private CountDownLatch storeEntered = new CountDownLatch(1);
+
+	private CountDownLatch storeReleased = new CountDownLatch(1);
+
+	@Test
+	public void testSynchronousModeBlocksContainerThreads() throws Exception {
+		BlockingCallExecutor executor = new BlockingCallExecutor(false, 0, 0);
+		UserEndpoint endpoint = createEndpoint(executor);
+
+		ExecutorService container = Executors.newSingleThreadExecutor();
+		try {
+			Future<CompletableFuture<ResponseEntity<String>>> slowRequest = container
+					.submit(() -> endpoint.getUser("user", null));
+			assertTrue(storeEntered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+			// the only container thread is held by the user database call
+			Future<?> fastRequest = container.submit(() -> {
+				// does not touch the user database
+			});
+			assertFalse(slowRequest.isDone());
+			assertFalse(fastRequest.isDone());
+
+			storeReleased.countDown();
+			fastRequest.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			assertEquals(200, slowRequest.get().get().getStatusCodeValue());
+		}
+		finally {
+			storeReleased.countDown();
+			container.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testAsyncModeKeepsContainerThreadsAvailable() throws Exception {
+		BlockingCallExecutor executor = new BlockingCallExecutor(true, 2, 10);
+		UserEndpoint endpoint = createEndpoint(executor);
+
+		ExecutorService container = Executors.newSingleThreadExecutor();
+		try {
+			// like the servlet container, the thread is released as soon as the endpoint returns the future
+			CompletableFuture<ResponseEntity<String>> slowResponse = container.submit(() -> endpoint.getUser("user", null))
+					.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			assertTrue(storeEntered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+			// a second request completes while the first one is still held in the user database
+			container.submit(() -> {
+				// does not touch the user database
+			}).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			assertFalse(slowResponse.isDone());
+
+			storeReleased.countDown();
+			assertEquals(200, slowResponse.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatusCodeValue());
+
+			JSONObject stats = executor.getStatistics();
+			assertTrue(stats.getBoolean("async"));
+			assertEquals(1, stats.getLong("startedCalls"));
+			assertEquals(0, stats.getLong("rejectedCalls"));
+		}
+		finally {
+			storeReleased.countDown();
+			container.shutdownNow();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRejectionWhenSaturated() throws Exception {
+		BlockingCallExecutor executor = new BlockingCallExecutor(true, 1, 1);
+		try {
+			List<CompletableFuture<ResponseEntity<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				futures.add(executor.execute(() -> {
+					awaitRelease();
+					return ResponseEntity.ok("");
+				}));
+			}
+
+			// one running, one queued, one rejected
+			assertEquals(503, futures.get(2).get().getStatusCodeValue());
+			storeReleased.countDown();
+			assertEquals(200, futures.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatusCodeValue());
+			assertEquals(200, futures.get(1).get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatusCodeValue());
+			assertEquals(1, executor.getStatistics().getLong("rejectedCalls"));
+		}
+		finally {
+			storeReleased.countDown();
+			executor.shutdown();
+		}
+	}
+
+	private UserEndpoint createEndpoint(BlockingCallExecutor executor) throws Exception {
+		return new UserEndpoint(mockBlockingUserDatabaseRegistry(), mock(ResourceModuleRegistry.class), executor,
+				new UserLookupCache(0, 0), mock(ResourceAuthorizationIndex.class), new CredentialCache(0, 0), 0);
+	}
+
+	private UserDatabaseRegistry mockBlockingUserDatabaseRegistry() throws Exception {
+		User user = mock(User.class);
+		when(user.getName()).thenReturn("user");
+		when(user.getSource()).thenReturn("test");
+		when(user.getDefinedUserAttributes()).thenReturn(new String[0]);
+
+		UserDatabase userDb = mock(UserDatabase.class);
+		when(userDb.findUser(anyString())).thenAnswer(inv -> {
+			storeEntered.countDown();
+			awaitRelease();
+			return user;
+		});
+
+		UserDatabaseRegistry registry = mock(UserDatabaseRegistry.class);
+		when(registry.getSelectedUserDatabase()).thenReturn(userDb);
+		return registry;
+	}
+
+	private void awaitRelease() {
+		try {
+			storeReleased.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
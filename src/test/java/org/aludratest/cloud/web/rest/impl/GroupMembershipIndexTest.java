@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aludratest.cloud.config.Configurable;
+import org.aludratest.cloud.resourcegroup.AuthorizingResourceGroup;
+import org.aludratest.cloud.resourcegroup.AuthorizingResourceGroupAdmin;
+import org.aludratest.cloud.resourcegroup.ResourceGroup;
+import org.aludratest.cloud.resourcegroup.ResourceGroupManager;
+import org.aludratest.cloud.user.User;
+import org.junit.Test;
+
+public class GroupMembershipIndexTest {
+
+	@Test
+	public void testIndexMaintenance() throws Exception {
+		ResourceGroupManager groupManager = mock(ResourceGroupManager.class);
+		when(groupManager.getAllResourceGroupIds()).thenReturn(new int[] { 1, 2, 3 });
+
+		// group 1: limiting, user1 authorized
+		AuthorizingResourceGroupAdmin admin1 = mockAuthorizingGroup(groupManager, 1, true);
+		User user1 = mock(User.class);
+		when(user1.getName()).thenReturn("user1");
+		when(admin1.getConfiguredAuthorizedUsers()).thenReturn(Arrays.asList(user1));
+
+		// group 2: limiting, nobody authorized
+		mockAuthorizingGroup(groupManager, 2, true);
+
+		// group 3: not authorizing at all
+		when(groupManager.getResourceGroup(3)).thenReturn(mock(ResourceGroup.class));
+
+		GroupMembershipIndex index = new GroupMembershipIndex(groupManager, 0, System::currentTimeMillis);
+		assertEquals(Arrays.asList(1, 3), Arrays.asList(index.getAccessibleGroupIds("user1").toArray()));
+		assertEquals(Arrays.asList(3), Arrays.asList(index.getAccessibleGroupIds("user2").toArray()));
+
+		index.usersAdded(2, Arrays.asList("user1", "user2"));
+		index.usersRemoved(1, Collections.singleton("user1"));
+		assertEquals(Arrays.asList(2, 3), Arrays.asList(index.getAccessibleGroupIds("user1").toArray()));
+
+		index.limitingUsersChanged(1, false);
+		assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(index.getAccessibleGroupIds("user2").toArray()));
+
+		index.groupRemoved(2);
+		assertEquals(Arrays.asList(1, 3), Arrays.asList(index.getAccessibleGroupIds("user2").toArray()));
+
+		// configured users must have been read only once
+		verify(admin1, times(1)).getConfiguredAuthorizedUsers();
+	}
+
+	@Test
+	public void testRebuildAfterTtl() throws Exception {
+		ResourceGroupManager groupManager = mock(ResourceGroupManager.class);
+		when(groupManager.getAllResourceGroupIds()).thenReturn(new int[] { 1 });
+
+		AuthorizingResourceGroupAdmin admin1 = mockAuthorizingGroup(groupManager, 1, true);
+		User user1 = mock(User.class);
+		when(user1.getName()).thenReturn("user1");
+		when(admin1.getConfiguredAuthorizedUsers()).thenReturn(Collections.emptyList());
+
+		AtomicLong now = new AtomicLong(1000);
+		GroupMembershipIndex index = new GroupMembershipIndex(groupManager, 300000, now::get);
+		assertEquals(Collections.emptyList(), Arrays.asList(index.getAccessibleGroupIds("user1").toArray()));
+
+		// changed without notifying the index
+		when(admin1.getConfiguredAuthorizedUsers()).thenReturn(Arrays.asList(user1));
+		now.addAndGet(299999);
+		assertEquals(Collections.emptyList(), Arrays.asList(index.getAccessibleGroupIds("user1").toArray()));
+
+		now.addAndGet(1);
+		assertEquals(Arrays.asList(1), Arrays.asList(index.getAccessibleGroupIds("user1").toArray()));
+		verify(admin1, times(2)).getConfiguredAuthorizedUsers();
+	}
+
+	private static AuthorizingResourceGroupAdmin mockAuthorizingGroup(ResourceGroupManager groupManager, int groupId,
+			boolean limitingUsers) {
+		AuthorizingResourceGroup group = mock(AuthorizingResourceGroup.class,
+				withSettings().extraInterfaces(Configurable.class));
+		when(group.isLimitingUsers()).thenReturn(Boolean.valueOf(limitingUsers));
+		AuthorizingResourceGroupAdmin admin = mock(AuthorizingResourceGroupAdmin.class);
+		when(((Configurable) group).getAdminInterface(AuthorizingResourceGroupAdmin.class)).thenReturn(admin);
+		when(groupManager.getResourceGroup(groupId)).thenReturn(group);
+		return admin;
+	}
+
+}
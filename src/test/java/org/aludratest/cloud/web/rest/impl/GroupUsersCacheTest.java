@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aludratest.cloud.config.Configurable;
+import org.aludratest.cloud.resourcegroup.AuthorizingResourceGroup;
+import org.aludratest.cloud.resourcegroup.AuthorizingResourceGroupAdmin;
+import org.aludratest.cloud.resourcegroup.ResourceGroupManager;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.admin.UserDatabaseRegistry;
+import org.aludratest.cloud.web.rest.impl.GroupUsersCache.CachedList;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+public class GroupUsersCacheTest {
+
+	@Test
+	public void testVersionsAndExpiry() {
+		AtomicLong now = new AtomicLong(1000);
+		GroupUsersCache cache = new GroupUsersCache(60, now::get);
+
+		long version = cache.getVersion(1);
+		CachedList list = cache.put(1, version, "objects", "[]");
+		assertEquals(list.getETag(), cache.get(1, version, "objects").getETag());
+		assertNull(cache.get(1, version, "columnar"));
+
+		// same content, same ETag
+		assertEquals(list.getETag(), cache.put(2, version, "objects", "[]").getETag());
+		assertNotEquals(list.getETag(), cache.put(2, version, "objects", "[{}]").getETag());
+
+		cache.invalidate(1);
+		assertNull(cache.get(1, cache.getVersion(1), "objects"));
+
+		// lists built before an invalidation are not stored
+		cache.put(1, version, "objects", "[]");
+		assertNull(cache.get(1, cache.getVersion(1), "objects"));
+
+		cache.put(1, cache.getVersion(1), "objects", "[]");
+		assertNotNull(cache.get(1, cache.getVersion(1), "objects"));
+		now.addAndGet(60000);
+		assertNull(cache.get(1, cache.getVersion(1), "objects"));
+	}
+
+	@Test
+	public void testNotModifiedAfterOutOfBandChange() throws Exception {
+		ResourceGroupManager groupManager = mock(ResourceGroupManager.class);
+		AuthorizingResourceGroup group = mock(AuthorizingResourceGroup.class,
+				withSettings().extraInterfaces(Configurable.class));
+		when(group.isLimitingUsers()).thenReturn(Boolean.TRUE);
+		AuthorizingResourceGroupAdmin admin = mock(AuthorizingResourceGroupAdmin.class);
+		when(((Configurable) group).getAdminInterface(AuthorizingResourceGroupAdmin.class)).thenReturn(admin);
+		when(groupManager.getResourceGroup(1)).thenReturn(group);
+		when(admin.getConfiguredAuthorizedUsers()).thenReturn(Collections.emptyList());
+
+		AtomicLong now = new AtomicLong(1000);
+		AuthorizingGroupEndpoint endpoint = new AuthorizingGroupEndpoint(groupManager, mock(UserDatabaseRegistry.class),
+				new BlockingCallExecutor(false, 1, 1), new UserLookupCache(0, 0), mock(UserResolver.class),
+				mock(GroupMembershipIndex.class), new GroupUsersCache(60, now::get));
+
+		ResponseEntity<String> response = endpoint.getUsers(1, null, null).get();
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String eTag = response.getHeaders().getETag();
+		assertNotNull(eTag);
+		assertEquals(HttpStatus.NOT_MODIFIED, endpoint.getUsers(1, null, eTag).get().getStatusCode());
+
+		// changed without notifying the cache
+		User user = mock(User.class);
+		when(user.getName()).thenReturn("user1");
+		when(user.getSource()).thenReturn("test");
+		when(admin.getConfiguredAuthorizedUsers()).thenReturn(Arrays.asList(user));
+		assertEquals(HttpStatus.NOT_MODIFIED, endpoint.getUsers(1, null, eTag).get().getStatusCode());
+
+		now.addAndGet(60000);
+		response = endpoint.getUsers(1, null, eTag).get();
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertNotEquals(eTag, response.getHeaders().getETag());
+		assertEquals(HttpStatus.NOT_MODIFIED,
+				endpoint.getUsers(1, null, response.getHeaders().getETag()).get().getStatusCode());
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aludratest.cloud.module.ResourceModule;
+import org.aludratest.cloud.module.ResourceModuleRegistry;
+import org.aludratest.cloud.resource.ResourceType;
+import org.aludratest.cloud.resource.user.ResourceTypeAuthorization;
+import org.aludratest.cloud.resource.user.ResourceTypeAuthorizationConfig;
+import org.aludratest.cloud.resource.user.ResourceTypeAuthorizationStore;
+import org.aludratest.cloud.resource.user.SimpleResourceTypeAuthorization;
+import org.aludratest.cloud.user.User;
+import org.junit.Test;
+
+public class ResourceAuthorizationIndexTest {
+
+	@Test
+	public void testLoadOnceAndUpdateOnSave() throws Exception {
+		User user1 = mockUser("user1");
+		User user2 = mockUser("user2");
+
+		ResourceType selenium = mockResourceType("selenium");
+		ResourceType docker = mockResourceType("docker");
+
+		ResourceModuleRegistry modules = mock(ResourceModuleRegistry.class);
+		ResourceModule seleniumModule = mock(ResourceModule.class);
+		when(seleniumModule.getResourceType()).thenReturn(selenium);
+		ResourceModule dockerModule = mock(ResourceModule.class);
+		when(dockerModule.getResourceType()).thenReturn(docker);
+		when(modules.getAllResourceModules()).thenReturn(Arrays.asList(seleniumModule, dockerModule));
+
+		ResourceTypeAuthorizationStore store = mock(ResourceTypeAuthorizationStore.class);
+		ResourceTypeAuthorizationConfig seleniumConfig = mockConfig(user1, new SimpleResourceTypeAuthorization(5, 0), user2,
+				new SimpleResourceTypeAuthorization(2, 10));
+		when(store.loadResourceTypeAuthorizations(selenium)).thenReturn(seleniumConfig);
+
+		ResourceAuthorizationIndex index = new ResourceAuthorizationIndex(modules, store, 0, System::currentTimeMillis);
+		Map<String, ResourceTypeAuthorization> auths = index.getAuthorizations("user2");
+		assertEquals(1, auths.size());
+		assertEquals(2, auths.get("selenium").getMaxResources());
+		assertEquals(10, auths.get("selenium").getNiceLevel());
+		assertTrue(index.getAuthorizations("user3").isEmpty());
+
+		// user2 removed from selenium, added to docker
+		index.save(selenium, mockConfig(user1, new SimpleResourceTypeAuthorization(5, 0), null, null));
+		index.save(docker, mockConfig(user2, new SimpleResourceTypeAuthorization(1, -5), null, null));
+
+		auths = index.getAuthorizations("user2");
+		assertEquals(1, auths.size());
+		assertEquals(-5, auths.get("docker").getNiceLevel());
+		assertEquals(5, index.getAuthorizations("user1").get("selenium").getMaxResources());
+
+		// store must only have been read once per type
+		verify(store, times(2)).loadResourceTypeAuthorizations(any());
+		verify(store, times(2)).saveResourceTypeAuthorizations(any(), any());
+	}
+
+	@Test
+	public void testReloadAfterTtl() throws Exception {
+		User user1 = mockUser("user1");
+		ResourceType selenium = mockResourceType("selenium");
+
+		ResourceModuleRegistry modules = mock(ResourceModuleRegistry.class);
+		ResourceModule seleniumModule = mock(ResourceModule.class);
+		when(seleniumModule.getResourceType()).thenReturn(selenium);
+		when(modules.getAllResourceModules()).thenReturn(Arrays.asList(seleniumModule));
+
+		ResourceTypeAuthorizationStore store = mock(ResourceTypeAuthorizationStore.class);
+		ResourceTypeAuthorizationConfig config = mockConfig(user1, new SimpleResourceTypeAuthorization(5, 0), null, null);
+		when(store.loadResourceTypeAuthorizations(selenium)).thenReturn(config);
+
+		AtomicLong now = new AtomicLong(1000);
+		ResourceAuthorizationIndex index = new ResourceAuthorizationIndex(modules, store, 60000, now::get);
+		assertEquals(5, index.getAuthorizations("user1").get("selenium").getMaxResources());
+
+		// modified outside of the index; not visible before the TTL has passed
+		ResourceTypeAuthorizationConfig newConfig = mockConfig(user1, new SimpleResourceTypeAuthorization(3, 0), null, null);
+		when(store.loadResourceTypeAuthorizations(selenium)).thenReturn(newConfig);
+		now.addAndGet(59999);
+		assertEquals(5, index.getAuthorizations("user1").get("selenium").getMaxResources());
+
+		now.addAndGet(1);
+		assertEquals(3, index.getAuthorizations("user1").get("selenium").getMaxResources());
+
+		// explicit invalidation
+		when(store.loadResourceTypeAuthorizations(selenium)).thenReturn(null);
+		index.invalidate();
+		assertTrue(index.getAuthorizations("user1").isEmpty());
+		verify(store, times(3)).loadResourceTypeAuthorizations(any());
+	}
+
+	private static User mockUser(String name) {
+		User user = mock(User.class);
+		when(user.getName()).thenReturn(name);
+		return user;
+	}
+
+	private static ResourceType mockResourceType(String name) {
+		ResourceType resourceType = mock(ResourceType.class);
+		when(resourceType.getName()).thenReturn(name);
+		return resourceType;
+	}
+
+	private static ResourceTypeAuthorizationConfig mockConfig(User user1, ResourceTypeAuthorization auth1, User user2,
+			ResourceTypeAuthorization auth2) {
+		ResourceTypeAuthorizationConfig config = mock(ResourceTypeAuthorizationConfig.class);
+		when(config.getConfiguredUsers()).thenReturn(user2 == null ? Arrays.asList(user1) : Arrays.asList(user1, user2));
+		when(config.getResourceTypeAuthorizationForUser(user1)).thenReturn(auth1);
+		if (user2 != null) {
+			when(config.getResourceTypeAuthorizationForUser(user2)).thenReturn(auth2);
+		}
+		return config;
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.aludratest.cloud.user.StoreException;
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.junit.Test;
+
+public class UserAttributeBatchTest {
+
+	@Test
+	public void testOnlyChangedAttributesWritten() throws Exception {
+		UserDatabase users = mock(UserDatabase.class);
+		when(users.supportsUserAttribute(anyString())).thenReturn(Boolean.TRUE);
+		User user = mockUser();
+
+		UserAttributeBatch batch = new UserAttributeBatch(users, user);
+		batch.set("email", "a@example.com");
+		batch.set("phone", "456");
+		assertEquals(Arrays.asList("phone"), batch.getChangedAttributes());
+
+		Map<String, String> written = batch.apply(user);
+		assertEquals(1, written.size());
+		assertEquals("456", written.get("phone"));
+		verify(users, never()).modifyUserAttribute(user, "email", "a@example.com");
+		verify(users).modifyUserAttribute(user, "phone", "456");
+	}
+
+	@Test
+	public void testRollbackOnFailure() throws Exception {
+		UserDatabase users = mock(UserDatabase.class);
+		when(users.supportsUserAttribute(anyString())).thenReturn(Boolean.TRUE);
+		User user = mockUser();
+		doThrow(new StoreException("Store failure")).when(users).modifyUserAttribute(user, "phone", "456");
+
+		UserAttributeBatch batch = new UserAttributeBatch(users, user);
+		batch.set("email", "b@example.com");
+		batch.set("phone", "456");
+
+		try {
+			batch.apply(user);
+			fail("StoreException expected");
+		}
+		catch (StoreException e) {
+			// expected
+		}
+		verify(users).modifyUserAttribute(user, "email", "b@example.com");
+		verify(users).modifyUserAttribute(user, "email", "a@example.com");
+	}
+
+	private static User mockUser() {
+		User user = mock(User.class);
+		when(user.getName()).thenReturn("user1");
+		when(user.getUserAttribute("email")).thenReturn("a@example.com");
+		when(user.getUserAttribute("phone")).thenReturn("123");
+		return user;
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.web.security.CredentialCache;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class UserImporterTest {
+
+	@Test
+	public void testDryRun() throws Exception {
+		UserDatabase users = mockUserDatabase();
+		UserImporter importer = new UserImporter(users, new UserLookupCache(0, 0), new CredentialCache(0, 0), true);
+
+		JSONObject result = importer.importUser(new JSONObject("{\"name\":\"newuser\",\"isAdmin\":true}"));
+		assertEquals("created", result.getString("status"));
+		assertEquals("isAdmin", result.getJSONArray("changes").getString(0));
+
+		result = importer
+				.importUser(new JSONObject("{\"name\":\"existing\",\"customAttributes\":{\"email\":\"a@example.com\"}}"));
+		assertEquals("unchanged", result.getString("status"));
+		assertFalse(result.has("changes"));
+
+		result = importer
+				.importUser(new JSONObject("{\"name\":\"existing\",\"customAttributes\":{\"email\":\"b@example.com\"}}"));
+		assertEquals("updated", result.getString("status"));
+		assertEquals("customAttributes.email", result.getJSONArray("changes").getString(0));
+
+		result = importer.importUser(new JSONObject("{\"name\":\"existing\",\"customAttributes\":{\"phone\":\"123\"}}"));
+		assertEquals("error", result.getString("status"));
+
+		JSONObject summary = importer.getSummary();
+		assertEquals(1, summary.getInt("created"));
+		assertEquals(1, summary.getInt("updated"));
+		assertEquals(1, summary.getInt("unchanged"));
+		assertEquals(1, summary.getInt("error"));
+
+		verify(users, never()).create(anyString());
+		verify(users, never()).modifyUserAttribute(any(), anyString(), anyString());
+	}
+
+	@Test
+	public void testApplyOnlyDifferences() throws Exception {
+		UserDatabase users = mockUserDatabase();
+		User created = mockUser("newuser", false, null);
+		when(users.create("newuser")).thenReturn(created);
+
+		UserImporter importer = new UserImporter(users, new UserLookupCache(0, 0), new CredentialCache(0, 0), false);
+		importer.importUser(new JSONObject("{\"name\":\"newuser\",\"isAdmin\":false,\"password\":\"secret\"}"));
+		verify(users).create("newuser");
+		verify(users, never()).setAdminFlag(any(), anyBoolean());
+		verify(users).changePassword(created, "secret");
+
+		importer.importUser(new JSONObject("{\"name\":\"existing\",\"delete\":true}"));
+		verify(users).delete(any());
+	}
+
+	@Test
+	public void testRemoveCreatedUserOnFailure() throws Exception {
+		UserDatabase users = mockUserDatabase();
+		User created = mockUser("newuser", false, null);
+		when(users.create("newuser")).thenReturn(created);
+		doThrow(new IllegalArgumentException("Password too short")).when(users).changePassword(created, "x");
+
+		UserImporter importer = new UserImporter(users, new UserLookupCache(0, 0), new CredentialCache(0, 0), false);
+		JSONObject result = importer.importUser(new JSONObject("{\"name\":\"newuser\",\"password\":\"x\"}"));
+		assertEquals("error", result.getString("status"));
+		assertEquals("Password too short", result.getString("error"));
+		verify(users).delete(created);
+		assertEquals(0, importer.getSummary().getInt("created"));
+	}
+
+	private static UserDatabase mockUserDatabase() throws Exception {
+		UserDatabase users = mock(UserDatabase.class);
+		User existing = mockUser("existing", false, "a@example.com");
+		when(users.findUser("existing")).thenReturn(existing);
+		when(users.canChangeAdminFlag()).thenReturn(Boolean.TRUE);
+		when(users.supportsUserAttribute("email")).thenReturn(Boolean.TRUE);
+		return users;
+	}
+
+	private static User mockUser(String name, boolean isAdmin, String email) {
+		User user = mock(User.class);
+		when(user.getName()).thenReturn(name);
+		when(user.isAdmin()).thenReturn(Boolean.valueOf(isAdmin));
+		when(user.getUserAttribute("email")).thenReturn(email);
+		return user;
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.junit.Test;
+
+public class UserLookupCacheTest {
+
+	@Test
+	public void testCaching() throws Exception {
+		UserLookupCache cache = new UserLookupCache(10, 60);
+		User user = mock(User.class);
+		UserDatabase users = mock(UserDatabase.class);
+		when(users.findUser("user")).thenReturn(user);
+
+		assertSame(user, cache.findUser(users, "user"));
+		assertSame(user, cache.findUser(users, "user"));
+		verify(users, times(1)).findUser("user");
+
+		cache.invalidate("user");
+		assertSame(user, cache.findUser(users, "user"));
+		verify(users, times(2)).findUser("user");
+	}
+
+	@Test
+	public void testInvalidationDuringLookup() throws Exception {
+		UserLookupCache cache = new UserLookupCache(10, 60);
+		User staleUser = mock(User.class);
+		User user = mock(User.class);
+		UserDatabase users = mock(UserDatabase.class);
+
+		// user is modified while the first lookup is running
+		when(users.findUser("user")).thenAnswer(inv -> {
+			cache.invalidate("user");
+			return staleUser;
+		}).thenReturn(user);
+
+		assertSame(staleUser, cache.findUser(users, "user"));
+		// stale user must not have been cached
+		assertSame(user, cache.findUser(users, "user"));
+		assertSame(user, cache.findUser(users, "user"));
+		verify(users, times(2)).findUser("user");
+	}
+
+}
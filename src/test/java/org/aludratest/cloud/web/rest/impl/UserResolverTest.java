@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.rest.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.junit.Test;
+
+public class UserResolverTest {
+
+	private static final int CONCURRENCY = 4;
+
+	@Test
+	public void testBoundedParallelResolution() throws Exception {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		UserDatabase users = mock(UserDatabase.class);
+		when(users.findUser(anyString())).thenAnswer(inv -> {
+			int current = running.incrementAndGet();
+			maxRunning.accumulateAndGet(current, Math::max);
+			Thread.sleep(20);
+			running.decrementAndGet();
+			String name = inv.getArgument(0);
+			if (name.startsWith("unknown")) {
+				return null;
+			}
+			User user = mock(User.class);
+			when(user.getName()).thenReturn(name);
+			return user;
+		});
+
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			names.add("user" + i);
+		}
+		names.add("unknown1");
+		names.add("user0");
+
+		UserResolver resolver = new UserResolver(new UserLookupCache(0, 0), CONCURRENCY, CONCURRENCY);
+		try {
+			Map<String, User> result = resolver.resolveUsers(users, names);
+			assertEquals(20, result.size());
+			assertEquals("user19", result.get("user19").getName());
+			assertFalse(result.containsKey("unknown1"));
+			assertTrue(maxRunning.get() > 1);
+			assertTrue(maxRunning.get() <= CONCURRENCY);
+		}
+		finally {
+			resolver.shutdown();
+		}
+	}
+
+	@Test
+	public void testInFlightLimitPerCall() throws Exception {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		UserDatabase users = mock(UserDatabase.class);
+		when(users.findUser(anyString())).thenAnswer(inv -> {
+			int current = running.incrementAndGet();
+			maxRunning.accumulateAndGet(current, Math::max);
+			Thread.sleep(5);
+			running.decrementAndGet();
+			User user = mock(User.class);
+			when(user.getName()).thenReturn(inv.getArgument(0));
+			return user;
+		});
+
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			names.add("user" + i);
+		}
+
+		UserResolver resolver = new UserResolver(new UserLookupCache(0, 0), 8, 2);
+		try {
+			Map<String, User> result = resolver.resolveUsers(users, names);
+			assertEquals(names, new ArrayList<>(result.keySet()));
+			assertTrue(maxRunning.get() <= 2);
+		}
+		finally {
+			resolver.shutdown();
+		}
+	}
+
+}
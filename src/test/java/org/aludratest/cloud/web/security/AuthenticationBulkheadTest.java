@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class AuthenticationBulkheadTest {
+
+	@Test
+	public void testRejectWhenSaturated() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		User user = mock(User.class);
+		UserDatabase users = mock(UserDatabase.class);
+		when(users.authenticate("user1", "secret")).then(inv -> {
+			started.countDown();
+			release.await();
+			return user;
+		});
+
+		AuthenticationBulkhead bulkhead = new AuthenticationBulkhead(1, 50, 5000);
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		try {
+			Future<User> first = caller.submit(() -> bulkhead.authenticate(users, "user1", "secret"));
+			assertEquals(true, started.await(5, TimeUnit.SECONDS));
+
+			try {
+				bulkhead.authenticate(users, "user1", "secret");
+				fail("Authentication has not been rejected");
+			}
+			catch (AuthenticationUnavailableException e) {
+				// expected
+			}
+
+			release.countDown();
+			assertSame(user, first.get(5, TimeUnit.SECONDS));
+			assertSame(user, bulkhead.authenticate(users, "user1", "secret"));
+
+			JSONObject stats = bulkhead.getStatistics();
+			assertEquals(2, stats.getLong("startedCalls"));
+			assertEquals(1, stats.getLong("rejectedCalls"));
+		}
+		finally {
+			caller.shutdownNow();
+			bulkhead.shutdown();
+		}
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		UserDatabase users = mock(UserDatabase.class);
+		when(users.authenticate("user1", "secret")).then(inv -> {
+			release.await();
+			return null;
+		});
+
+		AuthenticationBulkhead bulkhead = new AuthenticationBulkhead(2, 50, 50);
+		try {
+			bulkhead.authenticate(users, "user1", "secret");
+			fail("Authentication has not timed out");
+		}
+		catch (AuthenticationUnavailableException e) {
+			// expected
+		}
+		finally {
+			release.countDown();
+			bulkhead.shutdown();
+		}
+
+		assertEquals(1, bulkhead.getStatistics().getLong("timedOutCalls"));
+	}
+
+}
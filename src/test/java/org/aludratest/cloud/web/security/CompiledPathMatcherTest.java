@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+public class CompiledPathMatcherTest {
+
+	private static final List<String> PATTERNS = Arrays.asList("/api/login", "/static/**", "/api/*/info", "/docs/**/*.html");
+
+	private static final String[] PATHS = { "/api/login", "/api/login/", "/api/loginx", "/api/Login", "/static", "/static/",
+			"/static/js/app.js", "/staticx", "/api/users/info", "/api/users/x/info", "/docs/a/b/index.html", "/docs/index.txt",
+			"/", "" };
+
+	@Test
+	public void testSameResultsAsAntMatchers() {
+		CompiledPathMatcher matcher = new CompiledPathMatcher(PATTERNS);
+		for (String path : PATHS) {
+			boolean expected = PATTERNS.stream().anyMatch(p -> new AntPathRequestMatcher(p).matches(request(path, null)));
+			assertEquals(path, expected, matcher.matches(request(path, null)));
+		}
+	}
+
+	@Test
+	public void testPathInfo() {
+		CompiledPathMatcher matcher = new CompiledPathMatcher(PATTERNS);
+		assertEquals(true, matcher.matches(request("/api", "/login")));
+		assertEquals(true, matcher.matches(request("", "/static/x")));
+		assertEquals(false, matcher.matches(request("/api", "/users")));
+	}
+
+	@Test
+	public void testMatchAll() {
+		CompiledPathMatcher matcher = new CompiledPathMatcher(Arrays.asList("/**"));
+		for (String path : PATHS) {
+			assertEquals(path, true, matcher.matches(request(path, null)));
+		}
+	}
+
+	private static HttpServletRequest request(String servletPath, String pathInfo) {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getServletPath()).thenReturn(servletPath);
+		when(request.getPathInfo()).thenReturn(pathInfo);
+		return request;
+	}
+
+}
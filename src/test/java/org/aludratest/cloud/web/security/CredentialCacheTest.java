@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.user.admin.UserDatabaseRegistry;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+public class CredentialCacheTest {
+
+	@Test
+	public void testCachedAuthentication() throws Exception {
+		UserDatabase users = mock(UserDatabase.class);
+		User user = mock(User.class);
+		when(user.getName()).thenReturn("user1");
+		when(users.authenticate("user1", "secret")).thenReturn(user);
+
+		CredentialCache cache = new CredentialCache(10, 60);
+		CloudManagerAuthenticationProvider provider = createProvider(users, cache);
+
+		for (int i = 0; i < 3; i++) {
+			Authentication auth = provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "secret"));
+			assertSame(user, auth.getPrincipal());
+		}
+		verify(users, times(1)).authenticate("user1", "secret");
+
+		// wrong password must not be served from cache
+		try {
+			provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "wrong"));
+		}
+		catch (BadCredentialsException e) {
+			// expected
+		}
+		verify(users, times(1)).authenticate("user1", "wrong");
+
+		// after invalidation, user database must be queried again
+		cache.invalidate("user1");
+		provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "secret"));
+		verify(users, times(2)).authenticate("user1", "secret");
+	}
+
+	@Test
+	public void testConcurrentInvalidation() {
+		UserDatabase users = mock(UserDatabase.class);
+		User user = mock(User.class);
+		CredentialCache cache = new CredentialCache(10, 60);
+
+		// password is changed while authentication with the old password is in progress
+		CredentialCache.Ticket ticket = cache.createTicket(users, "user1", "old");
+		cache.invalidate("user1");
+		cache.put(ticket, user);
+		assertNull(cache.get(cache.createTicket(users, "user1", "old")));
+
+		ticket = cache.createTicket(users, "user1", "new");
+		cache.put(ticket, user);
+		assertSame(user, cache.get(cache.createTicket(users, "user1", "new")));
+		// different user database selected
+		assertNull(cache.get(cache.createTicket(mock(UserDatabase.class), "user1", "new")));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		UserDatabase users = mock(UserDatabase.class);
+		User user = mock(User.class);
+		when(users.authenticate("user1", "secret")).thenReturn(user);
+
+		CloudManagerAuthenticationProvider provider = createProvider(users, new CredentialCache(1000, 0));
+		provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "secret"));
+		provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "secret"));
+		verify(users, times(2)).authenticate("user1", "secret");
+	}
+
+	private static CloudManagerAuthenticationProvider createProvider(UserDatabase users, CredentialCache cache) {
+		UserDatabaseRegistry registry = mock(UserDatabaseRegistry.class);
+		when(registry.getSelectedUserDatabase()).thenReturn(users);
+		return new CloudManagerAuthenticationProvider(registry, cache, new AuthenticationBulkhead(0, 0, 0),
+				new RateLimiter(RateLimiter.API, null, null));
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.user.UserDatabase;
+import org.aludratest.cloud.user.admin.UserDatabaseRegistry;
+import org.aludratest.cloud.web.util.TokenBuckets;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+public class RateLimiterTest {
+
+	@Test
+	public void testResolveClientAddress() {
+		Set<String> proxies = new HashSet<>(Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+		// not from a trusted proxy; header must be ignored
+		assertEquals("192.168.1.5", RateLimiter.resolveClientAddress("192.168.1.5", "1.2.3.4", proxies));
+		assertEquals("10.0.0.1", RateLimiter.resolveClientAddress("10.0.0.1", null, proxies));
+		assertEquals("1.2.3.4", RateLimiter.resolveClientAddress("10.0.0.1", "1.2.3.4", proxies));
+		// proxy chain; forged entries left of the first untrusted address are ignored
+		assertEquals("1.2.3.4", RateLimiter.resolveClientAddress("10.0.0.1", "6.6.6.6, 1.2.3.4, 10.0.0.2", proxies));
+		assertEquals("10.0.0.2", RateLimiter.resolveClientAddress("10.0.0.1", "10.0.0.2", proxies));
+	}
+
+	@Test
+	public void testCachedAuthenticationsNotLimited() throws Exception {
+		UserDatabase users = mock(UserDatabase.class);
+		User user = mock(User.class);
+		when(users.authenticate("user1", "secret")).thenReturn(user);
+		UserDatabaseRegistry registry = mock(UserDatabaseRegistry.class);
+		when(registry.getSelectedUserDatabase()).thenReturn(users);
+
+		// one attempt per user, refilled only after 1000 seconds
+		RateLimiter rateLimiter = new RateLimiter(RateLimiter.API, new TokenBuckets(0.001, 1, 10, 64, () -> 0), null);
+		CloudManagerAuthenticationProvider provider = new CloudManagerAuthenticationProvider(registry,
+				new CredentialCache(10, 60), new AuthenticationBulkhead(0, 0, 0), rateLimiter);
+
+		for (int i = 0; i < 5; i++) {
+			assertSame(user, provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "secret"))
+					.getPrincipal());
+		}
+		verify(users, times(1)).authenticate("user1", "secret");
+
+		try {
+			provider.authenticate(new UsernamePasswordAuthenticationToken("user1", "wrong"));
+			fail("Expected rate limit to be exceeded");
+		}
+		catch (RateLimitExceededException e) {
+			assertEquals(1000, e.getRetryAfterSeconds());
+		}
+		verify(users, times(0)).authenticate("user1", "wrong");
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import static org.aludratest.cloud.web.security.jwt.JwtTestUtil.createAuthentication;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+public class FileJwtKeyringTest {
+
+	private Path file;
+
+	private long modificationTime = System.currentTimeMillis() - 60000;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("keyring", ".properties");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testRotation() throws IOException {
+		String key1 = randomKey();
+		String key2 = randomKey();
+		writeKeyring("current=k1\nkey.k1=" + key1 + "\n");
+
+		JwtTokenKey tokenKey = new JwtTokenKey(new FileJwtKeyring(file, 0));
+		JwtTokenValidator validator = createValidator(tokenKey);
+		JwtTokenGenerator generator = new JwtTokenGenerator(tokenKey);
+
+		String token1 = generator.generateToken(createAuthentication("user1"));
+		assertEquals("k1", validator.validateToken(token1).getKeyId());
+
+		// rotate: new key is current, old key still accepted
+		writeKeyring("current=k2\nkey.k1=" + key1 + "\nkey.k2=" + key2 + "\n");
+		String token2 = generator.generateToken(createAuthentication("user1"));
+		assertEquals("k2", validator.validateToken(token2).getKeyId());
+		assertEquals("k1", validator.validateToken(token1).getKeyId());
+		// tokens with kid header are handled by the fast path
+		assertEquals("k2", new Hs512TokenVerifier(tokenKey).verify(token2).getKeyId());
+
+		// another instance sharing the keyring accepts the tokens
+		JwtTokenKey otherKey = new JwtTokenKey(new FileJwtKeyring(file, 0));
+		assertEquals("k1", createValidator(otherKey).validateToken(token1).getKeyId());
+
+		// retire old key; also cached tokens must be rejected
+		writeKeyring("current=k2\nkey.k2=" + key2 + "\n");
+		validator.validateToken(token2);
+		try {
+			validator.validateToken(token1);
+			fail("Token signed with retired key has been accepted");
+		}
+		catch (BadCredentialsException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReplacedKey() throws IOException {
+		writeKeyring("current=k1\nkey.k1=" + randomKey() + "\n");
+		JwtTokenKey tokenKey = new JwtTokenKey(new FileJwtKeyring(file, 0));
+		JwtTokenValidator validator = createValidator(tokenKey);
+		String token = new JwtTokenGenerator(tokenKey).generateToken(createAuthentication("user1"));
+		validator.validateToken(token);
+
+		// replaced under the same key ID; the cached token must be rejected
+		writeKeyring("current=k1\nkey.k1=" + randomKey() + "\n");
+		try {
+			validator.validateToken(token);
+			fail("Token signed with replaced key has been accepted");
+		}
+		catch (BadCredentialsException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInvalidReloadKeepsKeys() throws IOException {
+		writeKeyring("current=k1\nkey.k1=" + randomKey() + "\n");
+		FileJwtKeyring keyring = new FileJwtKeyring(file, 0);
+		JwtSigningKey key = keyring.getCurrentKey();
+
+		writeKeyring("current=k3\nkey.k1=" + randomKey() + "\n");
+		assertEquals(key, keyring.getCurrentKey());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShortKey() throws IOException {
+		writeKeyring("current=k1\nkey.k1=" + Base64.getEncoder().encodeToString(new byte[16]) + "\n");
+		new FileJwtKeyring(file, 0);
+	}
+
+	private void writeKeyring(String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+		// make sure the modification is detected, regardless of the file system time resolution
+		modificationTime += 2000;
+		Files.setLastModifiedTime(file, FileTime.fromMillis(modificationTime));
+	}
+
+	private static String randomKey() {
+		byte[] key = new byte[64];
+		new Random().nextBytes(key);
+		return Base64.getEncoder().encodeToString(key);
+	}
+
+	private static JwtTokenValidator createValidator(JwtTokenKey tokenKey) {
+		JwtTimeService timeService = new JwtTimeService();
+		return new JwtTokenValidator(tokenKey, timeService, new JwtValidationCache(10, 3600, timeService),
+				new JwtRevocationList(timeService));
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.aludratest.cloud.web.security.jwt.Hs512TokenVerifier.VerifiedToken;
+import org.junit.Test;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+public class Hs512TokenVerifierTest {
+
+	private JwtTokenKey key = new JwtTokenKey();
+
+	private Hs512TokenVerifier verifier = new Hs512TokenVerifier(key);
+
+	@Test
+	public void testMatchesGenericParser() {
+		Date expiration = new Date((System.currentTimeMillis() / 1000 + 3600) * 1000);
+		String token = createToken("jürgen", expiration, SignatureAlgorithm.HS512);
+
+		VerifiedToken verified = verifier.verify(token);
+		assertNotNull(verified);
+		Claims claims = Jwts.parser().setSigningKey(key.getSigningKey()).parseClaimsJws(token).getBody();
+
+		assertEquals(claims.get(JwtTokenGenerator.CLAIM_KEY_USERNAME), verified.getUserName());
+		assertEquals(claims.get(JwtTokenGenerator.CLAIM_KEY_AUTHORIZATION), verified.getAuthorization());
+		assertEquals(claims.getExpiration().getTime(), verified.getExpirationMillis());
+		assertEquals(claims.getId(), verified.getTokenId());
+		assertEquals(claims.getIssuedAt().getTime(), verified.getIssuedAtMillis());
+	}
+
+	@Test
+	public void testInvalidSignature() {
+		String token = createToken("user1", new Date(System.currentTimeMillis() + 3600000), SignatureAlgorithm.HS512);
+		String otherToken = createToken("admin", new Date(System.currentTimeMillis() + 3600000), SignatureAlgorithm.HS512);
+
+		// combine payload of one token with signature of another
+		String forged = otherToken.substring(0, otherToken.lastIndexOf('.')) + token.substring(token.lastIndexOf('.'));
+		try {
+			verifier.verify(forged);
+			fail("Token with invalid signature has been accepted");
+		}
+		catch (JwtException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testUnsupportedFormat() {
+		Date expiration = new Date(System.currentTimeMillis() + 3600000);
+		assertNull(verifier.verify(createToken("user1", expiration, SignatureAlgorithm.HS256)));
+		// escaped strings are left to the generic parser
+		assertNull(verifier.verify(createToken("user \"1\"", expiration, SignatureAlgorithm.HS512)));
+		assertNull(verifier.verify("not a token"));
+	}
+
+	private String createToken(String userName, Date expiration, SignatureAlgorithm algorithm) {
+		Claims claims = Jwts.claims();
+		claims.setId("token-" + userName);
+		claims.setIssuedAt(new Date(expiration.getTime() - 3600000));
+		claims.setExpiration(expiration);
+		claims.put(JwtTokenGenerator.CLAIM_KEY_USERNAME, userName);
+		claims.put(JwtTokenGenerator.CLAIM_KEY_AUTHORIZATION, Arrays.asList("ROLE_USER", "ROLE_ADMIN"));
+		return Jwts.builder().setClaims(claims).signWith(algorithm, key.getSigningKey()).compact();
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import static org.aludratest.cloud.web.security.jwt.JwtTestUtil.createAuthentication;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.aludratest.cloud.user.User;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+public class JwtRevocationListTest {
+
+	private AtomicReference<LocalDateTime> now = new AtomicReference<>(LocalDateTime.now());
+
+	private JwtTimeService timeService = new JwtTimeService() {
+		@Override
+		public LocalDateTime now() {
+			return now.get();
+		}
+	};
+
+	@Test
+	public void testRevokeToken() {
+		JwtTokenKey key = new JwtTokenKey();
+		JwtRevocationList revocations = new JwtRevocationList(timeService);
+		JwtTokenValidator validator = new JwtTokenValidator(key, timeService, new JwtValidationCache(10, 3600, timeService),
+				revocations);
+		JwtTokenGenerator generator = new JwtTokenGenerator(key);
+
+		String token = generator.generateToken(createAuthentication("user1"));
+		String otherToken = generator.generateToken(createAuthentication("user1"));
+
+		// validate once, so the token is cached
+		JwtAuthenticationToken auth = validator.validateToken(token);
+		revocations.revokeToken(auth.getTokenId());
+
+		assertRejected(validator, token);
+		validator.validateToken(otherToken);
+		assertEquals(1, revocations.toJSON().getJSONArray("tokens").length());
+	}
+
+	@Test
+	public void testRevokeUser() {
+		JwtRevocationList revocations = new JwtRevocationList(timeService);
+		JwtAuthenticationToken before = createToken("user1", "t1", System.currentTimeMillis() - 60000);
+		JwtAuthenticationToken other = createToken("user2", "t2", System.currentTimeMillis() - 60000);
+		JwtAuthenticationToken noIssueDate = createToken("user1", "t3", -1);
+
+		revocations.revokeUser("user1");
+		assertTrue(revocations.isRevoked(before));
+		assertTrue(revocations.isRevoked(noIssueDate));
+		assertFalse(revocations.isRevoked(other));
+
+		// tokens issued after the revocation are valid
+		JwtAuthenticationToken after = createToken("user1", "t4", System.currentTimeMillis() + 2000);
+		assertFalse(revocations.isRevoked(after));
+
+		// revocations are removed when all affected tokens have expired
+		now.set(now.get().plusHours(9));
+		revocations.revokeToken("t5");
+		assertFalse(revocations.isRevoked(before));
+		assertFalse(revocations.toJSON().getJSONObject("users").has("user1"));
+	}
+
+	private static void assertRejected(JwtTokenValidator validator, String token) {
+		try {
+			validator.validateToken(token);
+			fail("Revoked token has been accepted");
+		}
+		catch (BadCredentialsException e) {
+			// expected
+		}
+	}
+
+	private static JwtAuthenticationToken createToken(String userName, String tokenId, long issuedAt) {
+		User user = mock(User.class);
+		when(user.getName()).thenReturn(userName);
+		JwtAuthenticationToken token = new JwtAuthenticationToken(user, "token", Collections.emptyList());
+		token.setTokenId(tokenId);
+		token.setIssuedAt(issuedAt < 0 ? null : new Date(issuedAt));
+		return token;
+	}
+
+}
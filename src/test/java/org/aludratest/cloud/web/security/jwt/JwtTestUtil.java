@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.aludratest.cloud.user.User;
+import org.aludratest.cloud.web.security.CloudManagerAuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+/**
+ * Helper methods for JWT tests.
+ *
+ * @author falbrech
+ *
+ */
+final class JwtTestUtil {
+
+	private JwtTestUtil() {
+	}
+
+	/**
+	 * Creates an authentication of a regular user, as passed to {@link JwtTokenGenerator#generateToken}.
+	 *
+	 * @param userName
+	 *            Name of the authenticated user.
+	 * @return The authentication.
+	 */
+	static UsernamePasswordAuthenticationToken createAuthentication(String userName) {
+		User user = mock(User.class);
+		when(user.getName()).thenReturn(userName);
+		return new UsernamePasswordAuthenticationToken(user, null,
+				Collections.singletonList(CloudManagerAuthenticationProvider.USER_AUTHORITY));
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.security.jwt;
+
+import static org.aludratest.cloud.web.security.jwt.JwtTestUtil.createAuthentication;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+public class JwtValidationCacheTest {
+
+	@Test
+	public void testCachedUntilExpiration() {
+		AtomicReference<LocalDateTime> now = new AtomicReference<>(LocalDateTime.now());
+		JwtTimeService timeService = new JwtTimeService() {
+			@Override
+			public LocalDateTime now() {
+				return now.get();
+			}
+		};
+
+		JwtTokenKey key = new JwtTokenKey();
+		JwtValidationCache cache = new JwtValidationCache(10, 86400, timeService);
+		JwtTokenValidator validator = new JwtTokenValidator(key, timeService, cache, new JwtRevocationList(timeService));
+
+		String token = new JwtTokenGenerator(key).generateToken(createAuthentication("user1"));
+
+		JwtAuthenticationToken first = validator.validateToken(token);
+		assertEquals("user1", first.getUser().getName());
+		assertSame(first, validator.validateToken(token));
+
+		JSONObject stats = cache.getCacheStatistics();
+		assertEquals(1, stats.getLong("hits"));
+		assertEquals(1, stats.getLong("misses"));
+
+		// after expiration, the cache must not return the token, and validation must fail
+		now.set(now.get().plusHours(9));
+		assertNull(cache.get(token));
+		try {
+			validator.validateToken(token);
+			fail("Expired token has been accepted");
+		}
+		catch (BadCredentialsException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInvalidTokenNotCached() {
+		JwtTimeService timeService = new JwtTimeService();
+		JwtTokenKey key = new JwtTokenKey();
+		JwtValidationCache cache = new JwtValidationCache(10, 86400, timeService);
+		JwtTokenValidator validator = new JwtTokenValidator(key, timeService, cache, new JwtRevocationList(timeService));
+
+		// signed with a different key
+		String token = new JwtTokenGenerator(new JwtTokenKey()).generateToken(createAuthentication("user1"));
+		for (int i = 0; i < 2; i++) {
+			try {
+				validator.validateToken(token);
+				fail("Token with invalid signature has been accepted");
+			}
+			catch (BadCredentialsException e) {
+				// expected
+			}
+		}
+		assertEquals(0, cache.getCacheStatistics().getInt("size"));
+	}
+
+}
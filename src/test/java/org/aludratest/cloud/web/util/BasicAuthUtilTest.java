@@ -18,18 +18,26 @@ package org.aludratest.cloud.web.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -115,6 +123,82 @@ public class BasicAuthUtilTest {
 		assertEquals(0, status.get());
 	}
 
+	@Test
+	public void testColonInPassword() throws Exception {
+		String authHeader = "Basic " + Base64.getEncoder().encodeToString("testuser:pa:ss".getBytes("UTF-8"));
+
+		UserDatabase userDb = mockUserDatabase();
+		User user = mock(User.class);
+		when(userDb.authenticate("testuser", "pa:ss")).thenReturn(user);
+		assertSame(user, BasicAuthUtil.authenticate(authHeader, userDb));
+	}
+
+	@Test
+	public void testInvalidHeaders() throws Exception {
+		UserDatabase userDb = mockUserDatabase();
+		for (String userPass : new String[] { "testuser", "testuser:", ":pä$$w0rd" }) {
+			String authHeader = "Basic " + Base64.getEncoder().encodeToString(userPass.getBytes("UTF-8"));
+			try {
+				BasicAuthUtil.authenticate(authHeader, userDb);
+				fail("authenticate should have failed with IllegalArgumentException for " + userPass);
+			}
+			catch (IllegalArgumentException e) {
+				// OK
+			}
+		}
+	}
+
+	@Test
+	public void testLargeBodyClosesConnection() throws Exception {
+		UserDatabase userDb = mockUserDatabase();
+		HttpServletResponse response = mock(HttpServletResponse.class);
+
+		ServletInputStream in = new TestInputStream(new ByteArrayInputStream(new byte[100]));
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getInputStream()).thenReturn(in);
+
+		assertNull(BasicAuthUtil.authenticate(request, response, userDb, 50));
+		verify(response).setHeader("Connection", "close");
+		verify(response).sendError(401);
+
+		// small bodies are drained completely
+		response = mock(HttpServletResponse.class);
+		in = new TestInputStream(new ByteArrayInputStream(new byte[100]));
+		when(request.getInputStream()).thenReturn(in);
+
+		assertNull(BasicAuthUtil.authenticate(request, response, userDb, 100));
+		assertEquals(-1, in.read());
+		verify(response, never()).setHeader("Connection", "close");
+	}
+
+	private static class TestInputStream extends ServletInputStream {
+
+		private InputStream in;
+
+		public TestInputStream(InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return in.read();
+		}
+
+		@Override
+		public boolean isFinished() {
+			return false;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+		}
+	}
+
 	private UserDatabase mockUserDatabase() throws Exception {
 		UserDatabase userDb = mock(UserDatabase.class);
 		User user = mock(User.class);
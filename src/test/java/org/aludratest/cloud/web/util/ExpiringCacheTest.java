@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+	@Test
+	public void testExpiration() {
+		AtomicLong now = new AtomicLong(1000);
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 100, now::get);
+
+		cache.put("a", "1");
+		cache.put("b", "2", 1050);
+		assertEquals("1", cache.get("a"));
+		assertEquals("2", cache.get("b"));
+
+		now.set(1050);
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+
+		now.set(1100);
+		assertNull(cache.get("a"));
+
+		JSONObject stats = cache.getStatistics();
+		assertEquals(3, stats.getLong("hits"));
+		assertEquals(2, stats.getLong("misses"));
+		assertEquals(0, stats.getInt("size"));
+	}
+
+	@Test
+	public void testBounded() {
+		AtomicLong now = new AtomicLong(1000);
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(5, 100, now::get);
+
+		for (int i = 0; i < 20; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i));
+		}
+		assertEquals(5, cache.size());
+		assertEquals(15, cache.getStatistics().getLong("evictions"));
+		assertEquals(Integer.valueOf(19), cache.get(Integer.valueOf(19)));
+
+		cache.invalidate(Integer.valueOf(19));
+		assertNull(cache.get(Integer.valueOf(19)));
+	}
+
+	@Test
+	public void testEvictsInBatches() {
+		AtomicLong now = new AtomicLong(1000);
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(100, 100, now::get);
+
+		for (int i = 0; i < 101; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i));
+		}
+		// evicted down to 90 entries before inserting the last one
+		assertEquals(91, cache.size());
+		assertEquals(10, cache.getStatistics().getLong("evictions"));
+
+		// no further eviction needed for the next inserts
+		for (int i = 101; i < 110; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i));
+		}
+		assertEquals(100, cache.size());
+		assertEquals(10, cache.getStatistics().getLong("evictions"));
+	}
+
+	@Test
+	public void testDisabled() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(0, 100);
+		cache.put("a", "1");
+		assertNull(cache.get("a"));
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.aludratest.cloud.web.rest.impl.MonitoringEndpoint;
+import org.aludratest.cloud.web.security.CredentialCache;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class StartupTimingReportTest {
+
+	@Test
+	public void testNestedBeansAreExclusive() throws Exception {
+		StartupTimingReport report = new StartupTimingReport();
+
+		report.postProcessBeforeInstantiation(MonitoringEndpoint.class, "monitoringEndpoint");
+		report.postProcessBeforeInstantiation(CredentialCache.class, "credentialCache");
+		Thread.sleep(50);
+		report.postProcessAfterInitialization(new Object(), "credentialCache");
+		report.postProcessAfterInitialization(new Object(), "monitoringEndpoint");
+
+		// beans outside of this module are not measured
+		report.postProcessBeforeInstantiation(String.class, "someString");
+		report.postProcessAfterInitialization("", "someString");
+
+		JSONArray beans = report.getReport().getJSONArray("beans");
+		assertEquals(2, beans.length());
+
+		JSONObject slowest = beans.getJSONObject(0);
+		assertEquals("credentialCache", slowest.getString("name"));
+		assertEquals("security", slowest.getString("category"));
+		assertTrue(slowest.getDouble("timeMs") >= 50);
+
+		JSONObject endpoint = beans.getJSONObject(1);
+		assertEquals("endpoints", endpoint.getString("category"));
+		assertTrue(endpoint.getDouble("timeMs") < 50);
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010-2015 AludraTest.org and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.cloud.web.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TokenBucketsTest {
+
+	private AtomicLong clock = new AtomicLong(System.nanoTime());
+
+	@Test
+	public void testBurstAndRefill() {
+		TokenBuckets buckets = new TokenBuckets(2, 3, 10, 64, clock::get);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, buckets.tryAcquire("user1"));
+		}
+		long wait = buckets.tryAcquire("user1");
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(500), wait);
+
+		// other keys are not affected
+		assertEquals(0, buckets.tryAcquire("user2"));
+
+		clock.addAndGet(wait);
+		assertEquals(0, buckets.tryAcquire("user1"));
+		assertTrue(buckets.tryAcquire("user1") > 0);
+	}
+
+	@Test
+	public void testSketch() {
+		TokenBuckets buckets = new TokenBuckets(1, 2, 0, 1024, clock::get);
+
+		assertEquals(0, buckets.tryAcquire("10.0.0.1"));
+		assertEquals(0, buckets.tryAcquire("10.0.0.1"));
+		assertTrue(buckets.tryAcquire("10.0.0.1") > 0);
+		assertEquals(0, buckets.getExactKeyCount());
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertEquals(0, buckets.tryAcquire("10.0.0.1"));
+		assertEquals(0, buckets.tryAcquire("10.0.0.1"));
+	}
+
+	@Test
+	public void testExactKeysBounded() {
+		TokenBuckets buckets = new TokenBuckets(1, 1, 2, 1024, clock::get);
+
+		assertEquals(0, buckets.tryAcquire("a"));
+		assertEquals(0, buckets.tryAcquire("b"));
+		// falls back to the sketch
+		assertEquals(0, buckets.tryAcquire("c"));
+		assertTrue(buckets.tryAcquire("c") > 0);
+		assertEquals(2, buckets.getExactKeyCount());
+
+		// full buckets are purged when space is needed
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertEquals(0, buckets.tryAcquire("d"));
+		assertEquals(1, buckets.getExactKeyCount());
+	}
+
+	@Test
+	public void testPurgeAtMostOncePerInterval() {
+		// a single sketch cell, so keys using the sketch are clearly distinguishable from keys with their own bucket
+		TokenBuckets buckets = new TokenBuckets(1, 1, 1, 1, clock::get);
+
+		assertEquals(0, buckets.tryAcquire("a"));
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		// purges without success, and uses the sketch
+		assertEquals(0, buckets.tryAcquire("b"));
+
+		// the bucket of "a" is full again, but the last purge was less than one interval ago
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(700));
+		assertTrue(buckets.tryAcquire("c") > 0);
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+		assertEquals(0, buckets.tryAcquire("d"));
+		assertEquals(1, buckets.getExactKeyCount());
+	}
+
+	@Test
+	public void testMurmur3() {
+		// reference values of MurmurHash3_x86_32
+		assertEquals(0, TokenBuckets.murmur3(new byte[0], 0));
+		assertEquals(0x514e28b7, TokenBuckets.murmur3(new byte[0], 1));
+		assertEquals(0x248bfa47, TokenBuckets.murmur3("hello".getBytes(StandardCharsets.UTF_8), 0));
+		assertEquals(0xfaf6cdb3, TokenBuckets.murmur3("Hello, world!".getBytes(StandardCharsets.UTF_8), 1234));
+	}
+
+}